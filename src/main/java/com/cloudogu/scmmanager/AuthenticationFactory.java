@@ -2,6 +2,7 @@ package com.cloudogu.scmmanager;
 
 import com.cloudbees.plugins.credentials.CredentialsProvider;
 import com.cloudbees.plugins.credentials.CredentialsUnavailableException;
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
 import com.cloudbees.plugins.credentials.common.StandardUsernameCredentials;
 import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
 import com.google.common.annotations.VisibleForTesting;
@@ -14,12 +15,23 @@ class AuthenticationFactory {
     @VisibleForTesting
     static final HttpAuthentication NOOP_HTTP_AUTHENTICATION = requestBuilder -> {};
 
+    private final CredentialsCache credentialsCache;
+
+    AuthenticationFactory() {
+        this(CredentialsCache.get());
+    }
+
+    @VisibleForTesting
+    AuthenticationFactory(CredentialsCache credentialsCache) {
+        this.credentialsCache = credentialsCache;
+    }
+
     HttpAuthentication createHttp(Run<?, ?> run, String credentialsId) {
         if (Strings.isNullOrEmpty(credentialsId)) {
             return NOOP_HTTP_AUTHENTICATION;
         }
-        StandardUsernamePasswordCredentials credentials = CredentialsProvider.findCredentialById(
-                credentialsId, StandardUsernamePasswordCredentials.class, run, Collections.emptyList());
+        StandardUsernamePasswordCredentials credentials =
+                findCredentials(run, credentialsId, StandardUsernamePasswordCredentials.class);
         if (credentials == null) {
             return NOOP_HTTP_AUTHENTICATION;
         }
@@ -32,12 +44,20 @@ class AuthenticationFactory {
             throw new CredentialsUnavailableException("could not found credentials for ssh authentication");
         }
 
-        StandardUsernameCredentials credentials = CredentialsProvider.findCredentialById(
-                credentialsId, StandardUsernameCredentials.class, run, Collections.emptyList());
+        StandardUsernameCredentials credentials =
+                findCredentials(run, credentialsId, StandardUsernameCredentials.class);
         if (credentials == null) {
             throw new CredentialsUnavailableException(
                     String.format("could not find credentials by id: %s", credentialsId));
         }
         return new SSHAuthentication(credentials);
     }
+
+    private <C extends StandardCredentials> C findCredentials(Run<?, ?> run, String credentialsId, Class<C> type) {
+        return credentialsCache.get(
+                run.getExternalizableId(),
+                credentialsId,
+                type,
+                () -> CredentialsProvider.findCredentialById(credentialsId, type, run, Collections.emptyList()));
+    }
 }
@@ -0,0 +1,94 @@
+package com.cloudogu.scmmanager;
+
+import com.google.common.annotations.VisibleForTesting;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import jenkins.util.SystemProperties;
+
+/**
+ * Keeps credentials, which were found for a build, for a short time. The notifications of a build (PENDING, the final
+ * status and retries) need the same credentials, which are looked up only once instead of searching all credential
+ * stores again. The cache is tuned with the following system properties:
+ *
+ * <ul>
+ *     <li>{@code com.cloudogu.scmmanager.CredentialsCache.ttlSeconds} (default 60, 0 disables the cache)</li>
+ *     <li>{@code com.cloudogu.scmmanager.CredentialsCache.maxEntries} (default 500)</li>
+ * </ul>
+ */
+final class CredentialsCache {
+
+    private static final String PROPERTY_PREFIX = CredentialsCache.class.getName() + ".";
+
+    private static final CredentialsCache INSTANCE = new CredentialsCache(
+            TimeUnit.SECONDS.toMillis(SystemProperties.getLong(PROPERTY_PREFIX + "ttlSeconds", 60L)),
+            SystemProperties.getInteger(PROPERTY_PREFIX + "maxEntries", 500),
+            System::currentTimeMillis);
+
+    private final Map<String, Entry> entries;
+    private final long ttl;
+    private final LongSupplier clock;
+
+    @VisibleForTesting
+    CredentialsCache(long ttl, int maxEntries, LongSupplier clock) {
+        this.ttl = ttl;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    static CredentialsCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the cached credentials of the context or calls the lookup. Credentials which could not be found are not
+     * cached, because they may be created at any time. Without a context the lookup is always called.
+     */
+    @CheckForNull
+    <C> C get(@CheckForNull String context, String credentialsId, Class<C> type, Supplier<C> lookup) {
+        if (context == null || ttl <= 0) {
+            return lookup.get();
+        }
+        String key = String.join("|", context, type.getName(), credentialsId);
+        long now = clock.getAsLong();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt > now) {
+                return type.cast(entry.credentials);
+            }
+        }
+        C credentials = lookup.get();
+        if (credentials != null) {
+            synchronized (entries) {
+                entries.put(key, new Entry(credentials, now + ttl));
+            }
+        }
+        return credentials;
+    }
+
+    @VisibleForTesting
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private static final class Entry {
+
+        private final Object credentials;
+        private final long expiresAt;
+
+        private Entry(Object credentials, long expiresAt) {
+            this.credentials = credentials;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.cloudogu.scmmanager;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.VisibleForTesting;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Remembers the SCM-Manager v2 urls of repositories, which were migrated from SCM-Manager v1. The urls are taken from
+ * the redirects of the v1 urls and kept for {@code com.cloudogu.scmmanager.MigratedRepositoryLocations.ttlHours}
+ * (default 24), so that build status notifications for a v1 url are sent to v2 without asking for the redirect
+ * first. The locations are written to {@code JENKINS_HOME/scm-manager/migrated-repositories.json}.
+ */
+final class MigratedRepositoryLocations {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MigratedRepositoryLocations.class);
+
+    private static final ObjectMapper MAPPER =
+            new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private static final TypeReference<HashMap<String, Location>> LOCATIONS_TYPE = new TypeReference<>() {};
+
+    private static final MigratedRepositoryLocations INSTANCE = new MigratedRepositoryLocations(
+            MigratedRepositoryLocations::defaultFile,
+            TimeUnit.HOURS.toMillis(
+                    SystemProperties.getLong(MigratedRepositoryLocations.class.getName() + ".ttlHours", 24L)),
+            System::currentTimeMillis);
+
+    @CheckForNull
+    private final Supplier<File> file;
+
+    private final long ttl;
+    private final LongSupplier clock;
+
+    private Map<String, Location> locations;
+
+    @VisibleForTesting
+    MigratedRepositoryLocations(@CheckForNull Supplier<File> file, long ttl, LongSupplier clock) {
+        this.file = file;
+        this.ttl = ttl;
+        this.clock = clock;
+    }
+
+    static MigratedRepositoryLocations get() {
+        return INSTANCE;
+    }
+
+    @CheckForNull
+    private static File defaultFile() {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins == null) {
+            return null;
+        }
+        return new File(jenkins.getRootDir(), "scm-manager/migrated-repositories.json");
+    }
+
+    /**
+     * Returns the v2 url of the v1 url, if it is known and has not expired.
+     */
+    synchronized Optional<String> get(String v1Url) {
+        Location location = locations().get(v1Url);
+        if (location == null || location.getExpiresAt() <= clock.getAsLong()) {
+            return Optional.empty();
+        }
+        return Optional.of(location.getUrl());
+    }
+
+    synchronized void put(String v1Url, String v2Url) {
+        Location location = new Location();
+        location.setUrl(v2Url);
+        location.setExpiresAt(clock.getAsLong() + ttl);
+        Location previous = locations().put(v1Url, location);
+        if (previous == null || !previous.getUrl().equals(v2Url)) {
+            LOG.debug("migrated repository {} is located at {}", v1Url, v2Url);
+        }
+        long now = clock.getAsLong();
+        locations().values().removeIf(l -> l.getExpiresAt() <= now);
+        save();
+    }
+
+    synchronized void invalidate(String v1Url) {
+        if (locations().remove(v1Url) != null) {
+            save();
+        }
+    }
+
+    @CheckForNull
+    private Path path() {
+        if (file == null) {
+            return null;
+        }
+        File locationsFile = file.get();
+        return locationsFile != null ? locationsFile.toPath() : null;
+    }
+
+    private Map<String, Location> locations() {
+        if (locations == null) {
+            locations = load();
+        }
+        return locations;
+    }
+
+    private Map<String, Location> load() {
+        Path path = path();
+        if (path == null || !Files.exists(path)) {
+            return new HashMap<>();
+        }
+        try {
+            return MAPPER.readValue(path.toFile(), LOCATIONS_TYPE);
+        } catch (IOException e) {
+            LOG.debug("failed to read locations of migrated repositories from {}", path, e);
+            return new HashMap<>();
+        }
+    }
+
+    private void save() {
+        Path path = path();
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(path.getParent());
+            Path tmp = Files.createTempFile(path.getParent(), "migrated-repositories", ".tmp");
+            MAPPER.writeValue(tmp.toFile(), locations);
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.debug("failed to write locations of migrated repositories to {}", path, e);
+        }
+    }
+
+    static class Location {
+
+        private String url;
+        private long expiresAt;
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        public void setExpiresAt(long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -3,12 +3,22 @@ package com.cloudogu.scmmanager;
 import com.cloudogu.scmmanager.info.JobInformation;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import hudson.model.Action;
+import hudson.model.Run;
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class NotificationAction implements Action {
 
     private final List<JobInformation> jobInformation;
 
+    private transient boolean pendingNotified;
+
+    // resolved on the first notification of the build and not persisted, because it may hold credentials
+    private transient Map<String, Binding> bindings;
+
     NotificationAction(List<JobInformation> jobInformation) {
         this.jobInformation = jobInformation;
     }
@@ -17,6 +27,67 @@ public class NotificationAction implements Action {
         return jobInformation;
     }
 
+    boolean isPendingNotified() {
+        return pendingNotified;
+    }
+
+    void setPendingNotified() {
+        this.pendingNotified = true;
+    }
+
+    /**
+     * Returns a key, which identifies the repository and revision of the job information.
+     */
+    static String key(JobInformation information) {
+        return String.join(
+                "|",
+                information.getUrl(),
+                String.valueOf(information.getRevision()),
+                String.valueOf(information.isPullRequest()));
+    }
+
+    boolean contains(JobInformation information) {
+        String key = key(information);
+        return jobInformation.stream().anyMatch(info -> key.equals(key(info)));
+    }
+
+    /**
+     * Returns the notifier for the job information. The provider, which resolved the notifier on the first call, is
+     * remembered and asked directly on subsequent calls. Reusable notifiers are remembered as well, together with
+     * their instance url, repository and credentials.
+     */
+    Optional<? extends Notifier> bind(
+            Run<?, ?> run, JobInformation information, Iterable<? extends NotifierProvider> providers)
+            throws IOException {
+        String key = key(information);
+        Binding binding = bindings().get(key);
+        if (binding != null) {
+            if (binding.notifier != null) {
+                return Optional.of(binding.notifier);
+            }
+            Optional<? extends Notifier> notifier = binding.provider.get(run, information);
+            if (notifier.isPresent()) {
+                return notifier;
+            }
+        }
+        for (NotifierProvider provider : providers) {
+            Optional<? extends Notifier> notifier = provider.get(run, information);
+            if (notifier.isPresent()) {
+                Notifier resolved = notifier.get();
+                bindings().put(key, new Binding(provider, resolved.isReusable() ? resolved : null));
+                return notifier;
+            }
+        }
+        return Optional.empty();
+    }
+
+    private synchronized Map<String, Binding> bindings() {
+        if (bindings == null) {
+            bindings = new ConcurrentHashMap<>();
+        }
+        return bindings;
+    }
+
     @Nullable
     @Override
     public String getIconFileName() {
@@ -34,4 +105,17 @@ public class NotificationAction implements Action {
     public String getUrlName() {
         return null;
     }
+
+    private static final class Binding {
+
+        private final NotifierProvider provider;
+
+        @Nullable
+        private final Notifier notifier;
+
+        private Binding(NotifierProvider provider, @Nullable Notifier notifier) {
+            this.provider = provider;
+            this.notifier = notifier;
+        }
+    }
 }
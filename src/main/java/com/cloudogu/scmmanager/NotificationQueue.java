@@ -0,0 +1,566 @@
+package com.cloudogu.scmmanager;
+
+import com.cloudogu.scmmanager.info.JobInformation;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.VisibleForTesting;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import hudson.model.Run;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Outbound queue for build status updates. {@link NotificationService} only adds the updates to the queue, they are
+ * sent by a dedicated thread, so that builds never wait for SCM-Manager. The queue is written to
+ * {@code JENKINS_HOME/scm-manager/notification-queue.json} and survives a restart of Jenkins.
+ *
+ * <p>An update supersedes a queued update for the same repository url, revision and status name, e.g. a queued
+ * PENDING is replaced by the SUCCESS of the same build and only SUCCESS is sent. Updates are sent in batches and
+ * failed updates are retried with exponential backoff. PENDING updates are held back for a short debounce window,
+ * so that the final status of a quick build replaces them before they are sent. The queue is tuned with the following
+ * system properties:</p>
+ *
+ * <ul>
+ *     <li>{@code com.cloudogu.scmmanager.NotificationQueue.debounceMillis} (default 2000)</li>
+ *     <li>{@code com.cloudogu.scmmanager.NotificationQueue.batchSize} (default 50)</li>
+ *     <li>{@code com.cloudogu.scmmanager.NotificationQueue.maxAttempts} (default 10)</li>
+ *     <li>{@code com.cloudogu.scmmanager.NotificationQueue.maxEntries} (default 1000)</li>
+ *     <li>{@code com.cloudogu.scmmanager.NotificationQueue.initialBackoffSeconds} (default 5)</li>
+ *     <li>{@code com.cloudogu.scmmanager.NotificationQueue.maxBackoffSeconds} (default 1800)</li>
+ *     <li>{@code com.cloudogu.scmmanager.NotificationQueue.timeoutSeconds} (default 60)</li>
+ * </ul>
+ */
+final class NotificationQueue {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NotificationQueue.class);
+
+    private static final String PROPERTY_PREFIX = NotificationQueue.class.getName() + ".";
+
+    private static final long INITIAL_BACKOFF =
+            TimeUnit.SECONDS.toMillis(SystemProperties.getLong(PROPERTY_PREFIX + "initialBackoffSeconds", 5L));
+    private static final long MAX_BACKOFF =
+            TimeUnit.SECONDS.toMillis(SystemProperties.getLong(PROPERTY_PREFIX + "maxBackoffSeconds", 1800L));
+    @VisibleForTesting
+    static final long DEBOUNCE = SystemProperties.getLong(PROPERTY_PREFIX + "debounceMillis", 2000L);
+
+    private static final long TIMEOUT = SystemProperties.getLong(PROPERTY_PREFIX + "timeoutSeconds", 60L);
+
+    private static final ObjectMapper MAPPER =
+            new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private static final TypeReference<List<Entry>> ENTRIES_TYPE = new TypeReference<>() {};
+
+    private static final NotificationQueue INSTANCE = new NotificationQueue(
+            NotificationQueue::defaultFile,
+            createScheduler(),
+            NotifierProvider::all,
+            SystemProperties.getInteger(PROPERTY_PREFIX + "batchSize", 50),
+            SystemProperties.getInteger(PROPERTY_PREFIX + "maxAttempts", 10),
+            SystemProperties.getInteger(PROPERTY_PREFIX + "maxEntries", 1000),
+            System::currentTimeMillis);
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    @CheckForNull
+    private final Supplier<File> file;
+
+    private final ScheduledExecutorService scheduler;
+    private final Supplier<? extends Iterable<NotifierProvider>> providers;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final int maxEntries;
+    private final LongSupplier clock;
+
+    private boolean loaded;
+
+    @CheckForNull
+    private ScheduledFuture<?> scheduled;
+
+    private long scheduledAt;
+
+    @VisibleForTesting
+    NotificationQueue(
+            @CheckForNull Supplier<File> file,
+            ScheduledExecutorService scheduler,
+            Supplier<? extends Iterable<NotifierProvider>> providers,
+            int batchSize,
+            int maxAttempts,
+            int maxEntries,
+            LongSupplier clock) {
+        this.file = file;
+        this.scheduler = scheduler;
+        this.providers = providers;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.maxEntries = Math.max(1, maxEntries);
+        this.clock = clock;
+    }
+
+    static NotificationQueue get() {
+        return INSTANCE;
+    }
+
+    private static ScheduledExecutorService createScheduler() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+                1, new NamingThreadFactory(new DaemonThreadFactory(), "scm-manager-notifications"));
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    @CheckForNull
+    private static File defaultFile() {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins == null) {
+            return null;
+        }
+        return new File(jenkins.getRootDir(), "scm-manager/notification-queue.json");
+    }
+
+    /**
+     * Adds the build status for every job information to the queue and schedules sending them, immediately for final
+     * states and after the debounce window for PENDING.
+     */
+    void enqueue(Run<?, ?> run, BuildStatus buildStatus, List<JobInformation> informationList) {
+        long due = clock.getAsLong();
+        if (buildStatus.getStatus() == BuildStatus.StatusType.PENDING) {
+            due += DEBOUNCE;
+        }
+        synchronized (this) {
+            load();
+            for (JobInformation information : informationList) {
+                Entry entry = new Entry(run, information, buildStatus);
+                entry.setNextAttempt(due);
+                // remove first, so that the superseding update moves to the end of the queue
+                Entry superseded = entries.remove(entry.getKey());
+                if (superseded != null) {
+                    LOG.debug(
+                            "{} of {} supersedes queued {}",
+                            buildStatus.getStatus(),
+                            entry,
+                            superseded.getBuildStatus().getStatus());
+                }
+                entries.put(entry.getKey(), entry);
+            }
+            dropOverflow();
+            save();
+        }
+        schedule(due);
+    }
+
+    private void dropOverflow() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            Entry dropped = iterator.next();
+            LOG.warn("notification queue is full, drop build status for {}", dropped);
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Loads the persisted updates, if this has not happened yet, and schedules sending them.
+     */
+    void resume() {
+        long next;
+        synchronized (this) {
+            load();
+            next = nextAttempt();
+        }
+        if (next >= 0) {
+            schedule(next);
+        }
+    }
+
+    private synchronized void schedule(long at) {
+        if (scheduled != null && !scheduled.isDone() && scheduledAt <= at) {
+            return;
+        }
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+        scheduledAt = at;
+        scheduled = scheduler.schedule(this::drainSafely, Math.max(0, at - clock.getAsLong()), TimeUnit.MILLISECONDS);
+    }
+
+    private void drainSafely() {
+        synchronized (this) {
+            // the running drain schedules the next one itself
+            scheduled = null;
+        }
+        // builds and credentials have to be resolved without the permissions of a user
+        try (ACLContext ignored = ACL.as2(ACL.SYSTEM2)) {
+            drain();
+        } catch (RuntimeException e) {
+            LOG.warn("failed to send queued build status updates", e);
+            schedule(clock.getAsLong() + INITIAL_BACKOFF);
+        }
+    }
+
+    /**
+     * Sends the next batch of due updates and waits until they are delivered or have failed. The lock of the queue is
+     * only held to take the due updates and to record the results, not while waiting. Afterwards the next batch is
+     * scheduled.
+     */
+    @VisibleForTesting
+    void drain() {
+        List<Entry> due = new ArrayList<>();
+        synchronized (this) {
+            load();
+            long now = clock.getAsLong();
+            for (Entry entry : entries.values()) {
+                if (entry.getNextAttempt() <= now) {
+                    due.add(entry);
+                    if (due.size() >= batchSize) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (!due.isEmpty()) {
+            Map<Entry, CompletableFuture<Void>> results = send(due);
+            // wait without holding the lock, so that builds are able to enqueue updates while slow servers are called
+            CompletableFuture.allOf(results.values().toArray(new CompletableFuture[0]))
+                    .handle((nothing, ex) -> null)
+                    .join();
+            synchronized (this) {
+                results.forEach(this::complete);
+                save();
+            }
+        }
+
+        long next;
+        synchronized (this) {
+            next = nextAttempt();
+        }
+        if (next >= 0) {
+            schedule(next);
+        }
+    }
+
+    private Map<Entry, CompletableFuture<Void>> send(List<Entry> due) {
+        Map<Entry, CompletableFuture<Void>> results = new LinkedHashMap<>();
+        // updates over ssh are collected per server and credentials, in order to send them over one session
+        Map<String, SshBuildStatusBatch> batches = new LinkedHashMap<>();
+        for (Entry entry : due) {
+            try {
+                Optional<? extends Notifier> notifier = resolve(entry);
+                if (notifier.isEmpty()) {
+                    results.put(entry, CompletableFuture.completedFuture(null));
+                } else if (SshBuildStatusBatch.ENABLED && notifier.get() instanceof ScmV2SshNotifier) {
+                    ScmV2SshNotifier sshNotifier = (ScmV2SshNotifier) notifier.get();
+                    results.put(
+                            entry,
+                            batches.computeIfAbsent(sshNotifier.getBatchKey(), SshBuildStatusBatch::new)
+                                    .add(sshNotifier, entry.getRevision(), entry.getBuildStatus()));
+                } else {
+                    results.put(entry, notifier.get().send(entry.getRevision(), entry.getBuildStatus()));
+                }
+            } catch (IOException | RuntimeException e) {
+                results.put(entry, CompletableFuture.failedFuture(e));
+            }
+        }
+
+        // every update of a batch is completed with its own result
+        batches.values().forEach(SshBuildStatusBatch::send);
+
+        for (CompletableFuture<Void> result : results.values()) {
+            result.orTimeout(TIMEOUT, TimeUnit.SECONDS);
+        }
+        return results;
+    }
+
+    private Optional<? extends Notifier> resolve(Entry entry) throws IOException {
+        Run<?, ?> run = entry.run();
+        if (run == null) {
+            LOG.info("build {} of queued build status does not exist anymore, drop it", entry.getRunId());
+            return Optional.empty();
+        }
+        JobInformation information = entry.information();
+        for (NotificationAction action : run.getActions(NotificationAction.class)) {
+            if (action.contains(information)) {
+                Optional<? extends Notifier> notifier = action.bind(run, information, providers.get());
+                if (notifier.isPresent()) {
+                    return notifier;
+                }
+            }
+        }
+        for (NotifierProvider provider : providers.get()) {
+            Optional<? extends Notifier> notifier = provider.get(run, information);
+            if (notifier.isPresent()) {
+                return notifier;
+            }
+        }
+        LOG.debug("no notifier found for {}, drop build status", entry);
+        return Optional.empty();
+    }
+
+    private void complete(Entry entry, CompletableFuture<Void> result) {
+        Throwable failure = null;
+        try {
+            result.join();
+        } catch (CompletionException | CancellationException e) {
+            failure = e.getCause() != null ? e.getCause() : e;
+        }
+
+        if (entries.get(entry.getKey()) != entry) {
+            // the update was superseded, while it was sent
+            return;
+        }
+        if (failure == null) {
+            entries.remove(entry.getKey());
+            return;
+        }
+
+        entry.setAttempts(entry.getAttempts() + 1);
+        if (entry.getAttempts() >= maxAttempts) {
+            LOG.warn("failed to send build status for {} after {} attempts, drop it", entry, entry.getAttempts());
+            entries.remove(entry.getKey());
+        } else {
+            long backoff = backoff(entry.getAttempts());
+            LOG.info(
+                    "failed to send build status for {}, retry in {} s: {}",
+                    entry,
+                    TimeUnit.MILLISECONDS.toSeconds(backoff),
+                    failure.getMessage());
+            entry.setNextAttempt(clock.getAsLong() + backoff);
+        }
+    }
+
+    @VisibleForTesting
+    static long backoff(int attempts) {
+        long backoff = INITIAL_BACKOFF;
+        for (int i = 1; i < attempts && backoff < MAX_BACKOFF; i++) {
+            backoff *= 2;
+        }
+        return Math.min(backoff, MAX_BACKOFF);
+    }
+
+    private long nextAttempt() {
+        long next = -1;
+        for (Entry entry : entries.values()) {
+            if (next < 0 || entry.getNextAttempt() < next) {
+                next = entry.getNextAttempt();
+            }
+        }
+        return next;
+    }
+
+    @VisibleForTesting
+    synchronized int size() {
+        load();
+        return entries.size();
+    }
+
+    @CheckForNull
+    private Path path() {
+        if (file == null) {
+            return null;
+        }
+        File queueFile = file.get();
+        return queueFile != null ? queueFile.toPath() : null;
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        Path path = path();
+        if (path == null || !Files.exists(path)) {
+            return;
+        }
+        try {
+            for (Entry entry : MAPPER.readValue(path.toFile(), ENTRIES_TYPE)) {
+                entries.putIfAbsent(entry.getKey(), entry);
+            }
+            LOG.info("loaded {} queued build status updates", entries.size());
+        } catch (IOException e) {
+            LOG.warn("failed to read queued build status updates from {}", path, e);
+        }
+    }
+
+    private void save() {
+        Path path = path();
+        if (path == null) {
+            return;
+        }
+        try {
+            if (entries.isEmpty()) {
+                Files.deleteIfExists(path);
+                return;
+            }
+            Files.createDirectories(path.getParent());
+            Path tmp = Files.createTempFile(path.getParent(), "notification-queue", ".tmp");
+            MAPPER.writeValue(tmp.toFile(), new ArrayList<>(entries.values()));
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("failed to write queued build status updates to {}", path, e);
+        }
+    }
+
+    /**
+     * A queued build status update. The build is kept in memory and resolved by its id, after the queue was loaded
+     * from disk.
+     */
+    static class Entry {
+
+        private String runId;
+        private String type;
+        private String url;
+        private String revision;
+        private String credentialsId;
+        private boolean pullRequest;
+        private String sourceBranch;
+        private BuildStatus buildStatus;
+        private int attempts;
+        private long nextAttempt;
+
+        private Run<?, ?> run;
+
+        Entry() {}
+
+        private Entry(Run<?, ?> run, JobInformation information, BuildStatus buildStatus) {
+            this.run = run;
+            this.runId = run.getExternalizableId();
+            this.type = information.getType();
+            this.url = information.getUrl();
+            this.revision = information.getRevision();
+            this.credentialsId = information.getCredentialsId();
+            this.pullRequest = information.isPullRequest();
+            this.sourceBranch = information.getSourceBranch();
+            this.buildStatus = buildStatus;
+        }
+
+        String getKey() {
+            return String.join("|", url, String.valueOf(revision), String.valueOf(pullRequest), buildStatus.getName());
+        }
+
+        @CheckForNull
+        private Run<?, ?> run() {
+            if (run == null && runId != null) {
+                try {
+                    run = Run.fromExternalizableId(runId);
+                } catch (IllegalArgumentException e) {
+                    LOG.debug("invalid build id {}", runId, e);
+                }
+            }
+            return run;
+        }
+
+        private JobInformation information() {
+            return new JobInformation(type, url, revision, credentialsId, pullRequest, sourceBranch);
+        }
+
+        public String getRunId() {
+            return runId;
+        }
+
+        public void setRunId(String runId) {
+            this.runId = runId;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public void setType(String type) {
+            this.type = type;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getRevision() {
+            return revision;
+        }
+
+        public void setRevision(String revision) {
+            this.revision = revision;
+        }
+
+        public String getCredentialsId() {
+            return credentialsId;
+        }
+
+        public void setCredentialsId(String credentialsId) {
+            this.credentialsId = credentialsId;
+        }
+
+        public boolean isPullRequest() {
+            return pullRequest;
+        }
+
+        public void setPullRequest(boolean pullRequest) {
+            this.pullRequest = pullRequest;
+        }
+
+        public String getSourceBranch() {
+            return sourceBranch;
+        }
+
+        public void setSourceBranch(String sourceBranch) {
+            this.sourceBranch = sourceBranch;
+        }
+
+        public BuildStatus getBuildStatus() {
+            return buildStatus;
+        }
+
+        public void setBuildStatus(BuildStatus buildStatus) {
+            this.buildStatus = buildStatus;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public void setAttempts(int attempts) {
+            this.attempts = attempts;
+        }
+
+        public long getNextAttempt() {
+            return nextAttempt;
+        }
+
+        public void setNextAttempt(long nextAttempt) {
+            this.nextAttempt = nextAttempt;
+        }
+
+        @Override
+        public String toString() {
+            return "rev " + revision + " of " + url;
+        }
+    }
+}
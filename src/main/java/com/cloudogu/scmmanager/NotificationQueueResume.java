@@ -0,0 +1,27 @@
+package com.cloudogu.scmmanager;
+
+import hudson.Extension;
+import hudson.model.PeriodicWork;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the {@link NotificationQueue} after a restart of Jenkins and makes sure that queued updates are sent.
+ */
+@Extension
+public class NotificationQueueResume extends PeriodicWork {
+
+    @Override
+    public long getRecurrencePeriod() {
+        return TimeUnit.MINUTES.toMillis(1);
+    }
+
+    @Override
+    public long getInitialDelay() {
+        return TimeUnit.SECONDS.toMillis(10);
+    }
+
+    @Override
+    protected void doRun() {
+        NotificationQueue.get().resume();
+    }
+}
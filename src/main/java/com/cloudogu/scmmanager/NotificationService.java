@@ -1,14 +1,14 @@
 package com.cloudogu.scmmanager;
 
 import com.cloudogu.scmmanager.info.JobInformation;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
 import hudson.model.Result;
 import hudson.model.Run;
-import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import javax.inject.Inject;
 import jenkins.model.Jenkins;
 import org.slf4j.Logger;
@@ -20,11 +20,18 @@ class NotificationService {
 
     private BuildStatusFactory buildStatusFactory;
 
+    private NotificationQueue queue = NotificationQueue.get();
+
     @Inject
     public void setBuildStatusFactory(BuildStatusFactory buildStatusFactory) {
         this.buildStatusFactory = buildStatusFactory;
     }
 
+    @VisibleForTesting
+    void setQueue(NotificationQueue queue) {
+        this.queue = queue;
+    }
+
     void notify(Run<?, ?> run, Result result) {
         String rootUrl = Jenkins.get().getRootUrl();
         if (Strings.isNullOrEmpty(rootUrl)) {
@@ -38,40 +45,51 @@ class NotificationService {
             return;
         }
 
-        List<JobInformation> informationList = actions.stream()
-                .map(NotificationAction::getJobInformation)
-                .flatMap(List::stream)
-                .collect(Collectors.toList());
-        if (informationList.isEmpty()) {
+        Map<String, JobInformation> information = collect(actions);
+        if (information.isEmpty()) {
             LOG.info("no scm information could be extracted from build {}", run);
             return;
         }
 
+        boolean pending = result == null;
+        if (pending) {
+            // a pipeline attaches an action for every checkout step, PENDING is sent only once for each repository
+            removePendingNotified(actions, information);
+            if (information.isEmpty()) {
+                LOG.debug("pending status of build {} was already sent", run);
+                return;
+            }
+        }
+
         BuildStatus buildStatus = buildStatusFactory.create(rootUrl, run, result);
         if (buildStatus == null) {
             LOG.warn("could not create build status from build {} with result {}", run, result);
             return;
         }
 
-        for (JobInformation info : informationList) {
-            try {
-                notify(run, buildStatus, info);
-            } catch (IOException ex) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("failed to send build status notification", ex);
-                } else {
-                    LOG.info("failed to send build status notification: {}", ex.getMessage());
-                }
+        queue.enqueue(run, buildStatus, new ArrayList<>(information.values()));
+        if (pending) {
+            actions.forEach(NotificationAction::setPendingNotified);
+        }
+    }
+
+    private static Map<String, JobInformation> collect(Collection<NotificationAction> actions) {
+        Map<String, JobInformation> information = new LinkedHashMap<>();
+        for (NotificationAction action : actions) {
+            for (JobInformation info : action.getJobInformation()) {
+                information.putIfAbsent(NotificationAction.key(info), info);
             }
         }
+        return information;
     }
 
-    private void notify(Run<?, ?> run, BuildStatus buildStatus, JobInformation info) throws IOException {
-        for (NotifierProvider provider : NotifierProvider.all()) {
-            Optional<? extends Notifier> notifier = provider.get(run, info);
-            if (notifier.isPresent()) {
-                notifier.get().notify(info.getRevision(), buildStatus);
-                break;
+    private static void removePendingNotified(
+            Collection<NotificationAction> actions, Map<String, JobInformation> information) {
+        for (NotificationAction action : actions) {
+            if (action.isPendingNotified()) {
+                for (JobInformation info : action.getJobInformation()) {
+                    information.remove(NotificationAction.key(info));
+                }
             }
         }
     }
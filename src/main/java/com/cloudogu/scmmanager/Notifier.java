@@ -1,8 +1,31 @@
 package com.cloudogu.scmmanager;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 public interface Notifier {
 
     void notify(String revision, BuildStatus buildStatus) throws IOException;
+
+    /**
+     * Sends the build status and returns a future, which fails if the status could not be delivered and should be
+     * sent again. The default implementation calls {@link #notify(String, BuildStatus)} and completes, as soon as
+     * it returns.
+     */
+    default CompletableFuture<Void> send(String revision, BuildStatus buildStatus) {
+        try {
+            notify(revision, buildStatus);
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Returns {@code true}, if the notifier can send several status updates. Reusable notifiers are kept for the
+     * following updates of a build, instead of being resolved again.
+     */
+    default boolean isReusable() {
+        return false;
+    }
 }
@@ -20,7 +20,15 @@ public final class OkHttpClientBuilder {
      * for proxy support and with an increased timeout of one minute.
      */
     public static OkHttpClient build() {
-        return JenkinsOkHttpClient.newClientBuilder(new OkHttpClient())
+        return build(new OkHttpClient());
+    }
+
+    /**
+     * Same as {@link #build()}, but derives the client from the given one, so that connection pool and dispatcher
+     * of the given client are shared.
+     */
+    public static OkHttpClient build(OkHttpClient base) {
+        return JenkinsOkHttpClient.newClientBuilder(base)
                 .readTimeout(1L, TimeUnit.MINUTES)
                 .eventListener(new EventListener() {
                     @Override
@@ -0,0 +1,179 @@
+package com.cloudogu.scmmanager;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import hudson.ProxyConfiguration;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hands out {@link OkHttpClient} instances for SCM-Manager servers. All clients share one {@link ConnectionPool}
+ * and one {@link Dispatcher}, so connections (and their TLS sessions) are reused across api clients and notifiers.
+ * Clients are keyed by the origin of the server url and the current proxy configuration of Jenkins.
+ *
+ * <p>The pool can be tuned with the following system properties:</p>
+ * <ul>
+ *     <li>{@code com.cloudogu.scmmanager.OkHttpClientRegistry.maxIdleConnections} (default 20)</li>
+ *     <li>{@code com.cloudogu.scmmanager.OkHttpClientRegistry.keepAliveSeconds} (default 300)</li>
+ *     <li>{@code com.cloudogu.scmmanager.OkHttpClientRegistry.maxRequestsPerHost} (default 10)</li>
+ * </ul>
+ */
+public final class OkHttpClientRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OkHttpClientRegistry.class);
+
+    private static final String PROPERTY_PREFIX = OkHttpClientRegistry.class.getName() + ".";
+
+    private static final OkHttpClientRegistry INSTANCE = new OkHttpClientRegistry(
+            new ConnectionPool(
+                    SystemProperties.getInteger(PROPERTY_PREFIX + "maxIdleConnections", 20),
+                    SystemProperties.getInteger(PROPERTY_PREFIX + "keepAliveSeconds", 300),
+                    TimeUnit.SECONDS),
+            createDispatcher(SystemProperties.getInteger(PROPERTY_PREFIX + "maxRequestsPerHost", 10)),
+            OkHttpClientBuilder::build);
+
+    private final Map<ClientKey, OkHttpClient> clients = new ConcurrentHashMap<>();
+    private final Map<ClientKey, OkHttpClient> clientsWithoutRedirects = new ConcurrentHashMap<>();
+
+    private final Map<String, Set<String>> usages = new HashMap<>();
+    private final Map<String, Integer> references = new HashMap<>();
+
+    private final OkHttpClient base;
+    private final UnaryOperator<OkHttpClient> customizer;
+
+    @VisibleForTesting
+    OkHttpClientRegistry(ConnectionPool connectionPool, Dispatcher dispatcher, UnaryOperator<OkHttpClient> customizer) {
+        this.base = new OkHttpClient.Builder()
+                .connectionPool(connectionPool)
+                .dispatcher(dispatcher)
+                .build();
+        this.customizer = customizer;
+    }
+
+    public static OkHttpClientRegistry get() {
+        return INSTANCE;
+    }
+
+    private static Dispatcher createDispatcher(int maxRequestsPerHost) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+        return dispatcher;
+    }
+
+    /**
+     * Returns the shared client for the given server url, creating it if required.
+     */
+    public OkHttpClient client(String serverUrl) {
+        ClientKey key = new ClientKey(normalize(serverUrl), proxyFingerprint());
+        return clients.computeIfAbsent(key, k -> {
+            LOG.debug("create http client for {}", k.origin());
+            return customizer.apply(base);
+        });
+    }
+
+    /**
+     * Returns a client for the given server url, which does not follow redirects. It shares the connections with
+     * the client of {@link #client(String)}.
+     */
+    public OkHttpClient clientWithoutRedirects(String serverUrl) {
+        ClientKey key = new ClientKey(normalize(serverUrl), proxyFingerprint());
+        return clientsWithoutRedirects.computeIfAbsent(key, k -> client(serverUrl)
+                .newBuilder()
+                .followRedirects(false)
+                .followSslRedirects(false)
+                .build());
+    }
+
+    /**
+     * Records the servers which are used by the given owner (e.g. the full name of a job) and replaces the servers
+     * recorded for it before. Clients of servers, which are no longer used by any owner, are dropped. Clients of
+     * servers which were never recorded (e.g. those of notifiers or ssh connections) are kept. Idle connections of
+     * dropped clients are closed by the connection pool after the keep alive time.
+     */
+    public synchronized void use(String owner, Collection<String> serverUrls) {
+        Set<String> origins =
+                serverUrls.stream().map(OkHttpClientRegistry::normalize).collect(Collectors.toSet());
+        Set<String> previous = origins.isEmpty() ? usages.remove(owner) : usages.put(owner, origins);
+        for (String origin : origins) {
+            references.merge(origin, 1, Integer::sum);
+        }
+        if (previous != null) {
+            previous.forEach(this::dereference);
+        }
+    }
+
+    /**
+     * Removes all servers recorded for the given owner, see {@link #use(String, Collection)}.
+     */
+    public void release(String owner) {
+        use(owner, Collections.emptySet());
+    }
+
+    private void dereference(String origin) {
+        if (references.merge(origin, -1, Integer::sum) <= 0) {
+            references.remove(origin);
+            LOG.debug("remove http clients of unused server {}", origin);
+            clients.keySet().removeIf(key -> key.origin().equals(origin));
+            clientsWithoutRedirects.keySet().removeIf(key -> key.origin().equals(origin));
+        }
+    }
+
+    @VisibleForTesting
+    int size() {
+        return clients.size();
+    }
+
+    @VisibleForTesting
+    static String normalize(String serverUrl) {
+        String trimmed = Strings.nullToEmpty(serverUrl).trim();
+        try {
+            URI uri = new URI(trimmed);
+            if (uri.getScheme() == null || uri.getHost() == null) {
+                return trimmed;
+            }
+            return String.format(
+                    "%s://%s:%d",
+                    uri.getScheme().toLowerCase(Locale.ENGLISH),
+                    uri.getHost().toLowerCase(Locale.ENGLISH),
+                    uri.getPort());
+        } catch (URISyntaxException e) {
+            return trimmed;
+        }
+    }
+
+    private static String proxyFingerprint() {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins == null) {
+            return "";
+        }
+        ProxyConfiguration proxy = jenkins.getProxy();
+        if (proxy == null) {
+            return "";
+        }
+        return String.join(
+                ":",
+                proxy.getName(),
+                String.valueOf(proxy.getPort()),
+                Strings.nullToEmpty(proxy.getUserName()),
+                Strings.nullToEmpty(proxy.getNoProxyHost()));
+    }
+
+    private record ClientKey(String origin, String proxy) {}
+}
@@ -1,10 +1,17 @@
 package com.cloudogu.scmmanager;
 
 import com.cloudbees.jenkins.plugins.sshcredentials.SSHAuthenticator;
+import com.cloudbees.jenkins.plugins.sshcredentials.SSHUserPrivateKey;
+import com.cloudbees.plugins.credentials.common.PasswordCredentials;
 import com.cloudbees.plugins.credentials.common.StandardUsernameCredentials;
+import com.google.common.base.Strings;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.trilead.ssh2.Connection;
 import hudson.util.LogTaskListener;
+import hudson.util.Secret;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -22,6 +29,28 @@ public class SSHAuthentication {
         return new SSHAuthentication(credentials);
     }
 
+    /**
+     * Returns a fingerprint of the credentials, which changes if the id, the username or the secret changes. The
+     * fingerprint can be used as cache key without exposing the secret.
+     */
+    public String getFingerprint() {
+        Hasher hasher = Hashing.sha256().newHasher();
+        put(hasher, credentials.getId());
+        put(hasher, credentials.getUsername());
+        if (credentials instanceof SSHUserPrivateKey) {
+            SSHUserPrivateKey privateKey = (SSHUserPrivateKey) credentials;
+            privateKey.getPrivateKeys().forEach(key -> put(hasher, key));
+            put(hasher, Secret.toString(privateKey.getPassphrase()));
+        } else if (credentials instanceof PasswordCredentials) {
+            put(hasher, Secret.toString(((PasswordCredentials) credentials).getPassword()));
+        }
+        return hasher.hash().toString();
+    }
+
+    private static void put(Hasher hasher, String value) {
+        hasher.putString(Strings.nullToEmpty(value), StandardCharsets.UTF_8).putByte((byte) 0);
+    }
+
     void authenticate(Connection connection) throws IOException {
         try {
             SSHAuthenticator<Connection, StandardUsernameCredentials> authenticator =
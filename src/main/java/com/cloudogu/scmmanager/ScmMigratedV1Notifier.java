@@ -4,9 +4,9 @@ import com.cloudogu.scmmanager.info.JobInformation;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
 import hudson.model.Run;
-import io.jenkins.plugins.okhttp.api.JenkinsOkHttpClient;
 import java.io.IOException;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import okhttp3.Call;
 import okhttp3.Callback;
 import okhttp3.OkHttpClient;
@@ -24,6 +24,7 @@ public class ScmMigratedV1Notifier implements Notifier {
 
     private OkHttpClient client;
     private ScmV2NotifierProvider v2NotifierProvider;
+    private MigratedRepositoryLocations locations = MigratedRepositoryLocations.get();
 
     ScmMigratedV1Notifier(AuthenticationFactory authenticationFactory, Run<?, ?> run, JobInformation information) {
         this.authenticationFactory = authenticationFactory;
@@ -36,13 +37,16 @@ public class ScmMigratedV1Notifier implements Notifier {
         this.client = client;
     }
 
-    private OkHttpClient getClient() {
+    private OkHttpClient getClient(String url) {
         if (client != null) {
             return client;
         }
-        return JenkinsOkHttpClient.newClientBuilder(
-                        new OkHttpClient.Builder().followRedirects(false).build())
-                .build();
+        return OkHttpClientRegistry.get().clientWithoutRedirects(url);
+    }
+
+    @VisibleForTesting
+    void setLocations(MigratedRepositoryLocations locations) {
+        this.locations = locations;
     }
 
     @VisibleForTesting
@@ -59,47 +63,103 @@ public class ScmMigratedV1Notifier implements Notifier {
 
     @Override
     public void notify(String revision, BuildStatus buildStatus) {
+        send(revision, buildStatus);
+    }
+
+    /**
+     * Sends the build status to the v2 url of the migrated repository. The v2 url is taken from the redirect of the v1
+     * url and remembered, so that following notifications are sent to v2 directly. Redirects of the v2 url are not
+     * followed. If the remembered url does not exist anymore or redirects again, it is resolved again.
+     */
+    @Override
+    public CompletableFuture<Void> send(String revision, BuildStatus buildStatus) {
+        String v1Url = information.getUrl();
+        Optional<String> cached = locations.get(v1Url);
+        if (cached.isEmpty()) {
+            return resolveAndNotify(revision, buildStatus);
+        }
+        LOG.debug("notify remembered v2 url {} of {}", cached.get(), v1Url);
+        return notifyV2(cached.get(), revision, buildStatus).thenCompose(code -> {
+            if (code == 404 || isRedirect(code)) {
+                LOG.info("v2 url {} of {} returned {}, resolve it again", cached.get(), v1Url, code);
+                locations.invalidate(v1Url);
+                return resolveAndNotify(revision, buildStatus);
+            }
+            return ScmV2Notifier.result(code);
+        });
+    }
+
+    private CompletableFuture<Void> resolveAndNotify(String revision, BuildStatus buildStatus) {
+        return resolveLocation().thenCompose(location -> {
+            if (location.isEmpty()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return notifyV2(location.get(), revision, buildStatus).thenCompose(code -> {
+                if (code != 404 && !isRedirect(code)) {
+                    locations.put(information.getUrl(), location.get());
+                }
+                return ScmV2Notifier.result(code);
+            });
+        });
+    }
+
+    private CompletableFuture<Optional<String>> resolveLocation() {
         Request.Builder request =
                 new Request.Builder().url(information.getUrl()).get();
         authenticationFactory.createHttp(run, information.getCredentialsId()).authenticate(request);
-        getClient().newCall(request.build()).enqueue(new Callback() {
+        CompletableFuture<Optional<String>> result = new CompletableFuture<>();
+        getClient(information.getUrl()).newCall(request.build()).enqueue(new Callback() {
 
             @Override
-            public void onResponse(Call call, Response response) throws IOException {
+            public void onResponse(Call call, Response response) {
                 try (response) {
+                    String location = null;
                     if (response.isRedirect()) {
-                        String location = response.header("Location");
-                        if (!Strings.isNullOrEmpty(location)) {
-                            notifyV2(location, revision, buildStatus);
-                        } else {
+                        location = response.header("Location");
+                        if (Strings.isNullOrEmpty(location)) {
                             LOG.warn("server returned redirect without location header");
                         }
                     } else {
                         LOG.debug("expected redirect, but server returned status code {}", response.code());
                     }
+                    result.complete(Optional.ofNullable(Strings.emptyToNull(location)));
                 }
             }
 
             @Override
             public void onFailure(Call call, IOException e) {
                 LOG.warn("failed to get redirect uri from migrated repository", e);
+                result.completeExceptionally(e);
             }
         });
+        return result;
     }
 
-    private void notifyV2(String location, String revision, BuildStatus buildStatus) throws IOException {
+    private CompletableFuture<Integer> notifyV2(String location, String revision, BuildStatus buildStatus) {
         ScmV2NotifierProvider provider = getV2NotifierProvider();
         provider.setAuthenticationFactory(authenticationFactory);
 
         JobInformation redirectedInformation =
                 new JobInformation(information.getType(), location, revision, information.getCredentialsId(), false);
 
-        Optional<ScmV2Notifier> scmV2Notifier = provider.get(run, redirectedInformation);
+        Optional<ScmV2Notifier> scmV2Notifier;
+        try {
+            scmV2Notifier = provider.get(run, redirectedInformation);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
         if (scmV2Notifier.isPresent()) {
             LOG.debug("notify v2 url {}", location);
-            scmV2Notifier.get().notify(revision, buildStatus);
-        } else {
-            LOG.debug("redirect uri {} does not look like a scm v2 repo url", location);
+            // a redirect of the v2 url has to be seen, a followed redirect would turn the put into a get
+            scmV2Notifier.get().setClient(getClient(location));
+            return scmV2Notifier.get().sendAndGetStatusCode(revision, buildStatus);
         }
+        LOG.debug("redirect uri {} does not look like a scm v2 repo url", location);
+        // nothing is sent, the status code only keeps the location from being remembered
+        return CompletableFuture.completedFuture(404);
+    }
+
+    private static boolean isRedirect(int code) {
+        return code >= 300 && code < 400;
     }
 }
@@ -6,6 +6,7 @@ import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 import net.sf.json.JSONObject;
 import okhttp3.Call;
@@ -66,7 +67,6 @@ public class ScmV2Notifier implements Notifier {
         return sourceBranch;
     }
 
-    @VisibleForTesting
     void setClient(OkHttpClient client) {
         this.client = client;
     }
@@ -78,13 +78,50 @@ public class ScmV2Notifier implements Notifier {
 
     private OkHttpClient getClient() {
         if (client == null) {
-            return OkHttpClientBuilder.build();
+            return OkHttpClientRegistry.get().client(instance.toExternalForm());
         }
         return client;
     }
 
     @Override
     public void notify(String revision, BuildStatus buildStatus) throws IOException {
+        put(revision, buildStatus);
+    }
+
+    /**
+     * Sends the build status and completes the returned future, after SCM-Manager has accepted it. The future fails,
+     * if the server could not be reached or answered with a server error, so that the update can be retried. Client
+     * errors other than timeouts and rate limits complete the future as well, because a retry would be rejected
+     * again.
+     */
+    @Override
+    public CompletableFuture<Void> send(String revision, BuildStatus buildStatus) {
+        return sendAndGetStatusCode(revision, buildStatus).thenCompose(ScmV2Notifier::result);
+    }
+
+    /**
+     * Sends the build status and completes the returned future with the status code of the response.
+     */
+    CompletableFuture<Integer> sendAndGetStatusCode(String revision, BuildStatus buildStatus) {
+        try {
+            return put(revision, buildStatus);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Returns a failed future for status codes, which are worth a retry, and a completed future for all others.
+     */
+    static CompletableFuture<Void> result(int code) {
+        if (code >= 500 || code == 408 || code == 429) {
+            return CompletableFuture.failedFuture(
+                    new IOException("scm-manager returned status code " + code + " for build status"));
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private CompletableFuture<Integer> put(String revision, BuildStatus buildStatus) throws IOException {
         LOG.info("set rev {} of {} to {}", revision, namespaceAndName, buildStatus.getStatus());
 
         String url = createUrl(revision, buildStatus);
@@ -95,10 +132,12 @@ public class ScmV2Notifier implements Notifier {
 
         put.header("Content-Type", "application/vnd.scmm-cistatus+json;v=2")
                 .put(RequestBody.create(createRequestBody(buildStatus)));
+        CompletableFuture<Integer> result = new CompletableFuture<>();
         getClient().newCall(put.build()).enqueue(new Callback() {
             @Override
             public void onFailure(Call call, IOException e) {
                 LOG.warn("failed to notify scm-manager", e);
+                result.completeExceptionally(e);
             }
 
             @Override
@@ -110,9 +149,16 @@ public class ScmV2Notifier implements Notifier {
                             revision,
                             response.code());
                     completionListener.accept(response);
+                    result.complete(response.code());
                 }
             }
         });
+        return result;
+    }
+
+    @Override
+    public boolean isReusable() {
+        return true;
     }
 
     private byte[] createRequestBody(BuildStatus buildStatus) {
@@ -12,10 +12,17 @@ public class ScmV2SshNotifier implements Notifier {
 
     private final SshConnection connection;
     private final SSHAuthentication authentication;
+    private final SshConnectionPool pool;
 
     ScmV2SshNotifier(SshConnection connection, SSHAuthentication authentication) {
+        this(connection, authentication, SshConnectionPool.get());
+    }
+
+    @VisibleForTesting
+    ScmV2SshNotifier(SshConnection connection, SSHAuthentication authentication, SshConnectionPool pool) {
         this.connection = connection;
         this.authentication = authentication;
+        this.pool = pool;
     }
 
     @VisibleForTesting
@@ -23,30 +30,39 @@ public class ScmV2SshNotifier implements Notifier {
         return connection;
     }
 
+    SSHAuthentication getAuthentication() {
+        return authentication;
+    }
+
+    SshConnectionPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Returns the key of the batch, to which status updates of this notifier can be added. Notifiers with the same
+     * key connect to the same server with the same credentials.
+     */
+    String getBatchKey() {
+        return SshConnectionPool.key(connection, authentication);
+    }
+
     @Override
     public void notify(String revision, BuildStatus buildStatus) throws IOException {
         NamespaceAndName repository = connection.mustGetRepository();
         LOG.info("set rev {} of {} to {}", revision, repository, buildStatus.getStatus());
-        try {
-            connection.connect(authentication);
-            executeStatusUpdateCommand(repository, revision, buildStatus);
-        } finally {
-            connection.close();
-        }
-    }
-
-    private void executeStatusUpdateCommand(NamespaceAndName repository, String revision, BuildStatus buildStatus)
-            throws IOException {
         String cmd = createCommand(repository, revision);
         setBuildStatusTypeIfNull(buildStatus);
-        connection.command(cmd).withInput(buildStatus).xml().exec();
+        pool.execute(connection, authentication, pooled -> {
+            pooled.command(cmd).withInput(buildStatus).xml().exec();
+            return null;
+        });
     }
 
     private String createCommand(NamespaceAndName repository, String revision) {
         return String.format(SSH_COMMAND, repository.getNamespace(), repository.getName(), revision);
     }
 
-    private void setBuildStatusTypeIfNull(BuildStatus buildStatus) {
+    static void setBuildStatusTypeIfNull(BuildStatus buildStatus) {
         if (buildStatus.getType() == null) {
             buildStatus.setType("jenkins");
         }
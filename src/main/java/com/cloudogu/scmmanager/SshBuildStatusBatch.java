@@ -0,0 +1,274 @@
+package com.cloudogu.scmmanager;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.VisibleForTesting;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import jenkins.util.SystemProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends many build status updates for one SCM-Manager server over a single ssh session. The updates are written as
+ * newline delimited json to the {@code scm-ci-update --batch} command, which acknowledges every record with a line of
+ * json ({@code {"id":0,"ok":true}}). Updates which are not acknowledged are sent again one by one with
+ * {@code scm-ci-update}, updates which are rejected by the server fail like a rejected single update. If the batch
+ * command exits with an error before it acknowledges any record, it is assumed that the server does not support it
+ * and all further updates for this server are sent one by one.
+ *
+ * <p>The batch protocol is not part of released SCM-Manager versions, the server has to provide it (e.g. with a
+ * plugin). Therefore batches are disabled by default and have to be enabled with
+ * {@code com.cloudogu.scmmanager.SshBuildStatusBatch.enabled=true}. The whole conversation is bound by the timeout of
+ * {@link SshCommandExecutor}.</p>
+ */
+class SshBuildStatusBatch {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SshBuildStatusBatch.class);
+
+    static final boolean ENABLED =
+            SystemProperties.getBoolean(SshBuildStatusBatch.class.getName() + ".enabled", false);
+
+    @VisibleForTesting
+    static final String BATCH_COMMAND = "scm-ci-update --batch";
+
+    private static final ObjectMapper MAPPER =
+            new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private static final Set<String> UNSUPPORTED = ConcurrentHashMap.newKeySet();
+
+    private final String key;
+    private final List<Update> updates = new ArrayList<>();
+
+    SshBuildStatusBatch(String key) {
+        this.key = key;
+    }
+
+    /**
+     * Adds the update to the batch. The returned future is completed with the result of this update, once the batch
+     * is sent.
+     */
+    CompletableFuture<Void> add(ScmV2SshNotifier notifier, String revision, BuildStatus buildStatus) {
+        Update update = new Update(notifier, revision, buildStatus);
+        updates.add(update);
+        return update.result;
+    }
+
+    /**
+     * Sends all updates of the batch and completes the future of every update with its own result. Updates which
+     * fail or are rejected do not stop the remaining updates.
+     */
+    void send() {
+        if (updates.size() == 1 || UNSUPPORTED.contains(key)) {
+            sendOneByOne(updates);
+            return;
+        }
+
+        SshConnection.Streamed<Map<Integer, Ack>> result;
+        try {
+            result = sendBatch();
+        } catch (IOException | RuntimeException e) {
+            LOG.debug("batched build status update failed, send updates one by one", e);
+            sendOneByOne(updates);
+            return;
+        }
+        Map<Integer, Ack> acks = result.getValue();
+        if (acks.isEmpty()) {
+            Integer exitStatus = result.getExitStatus();
+            if (exitStatus != null && exitStatus != 0) {
+                LOG.info(
+                        "ssh server of {} does not support batched build status updates (exit status {}), "
+                                + "send them one by one",
+                        key,
+                        exitStatus);
+                UNSUPPORTED.add(key);
+            } else {
+                LOG.debug("batched build status update of {} was not acknowledged, send updates one by one", key);
+            }
+            sendOneByOne(updates);
+            return;
+        }
+
+        List<Update> unacknowledged = new ArrayList<>();
+        for (int id = 0; id < updates.size(); id++) {
+            Update update = updates.get(id);
+            Ack ack = acks.get(id);
+            if (ack == null) {
+                unacknowledged.add(update);
+            } else if (ack.isOk()) {
+                update.result.complete(null);
+            } else {
+                update.result.completeExceptionally(new IOException(String.format(
+                        "server rejected build status for rev %s of %s: %s",
+                        update.revision,
+                        update.repository(),
+                        ack.getMessage())));
+            }
+        }
+        sendOneByOne(unacknowledged);
+    }
+
+    private SshConnection.Streamed<Map<Integer, Ack>> sendBatch() throws IOException {
+        Update first = updates.get(0);
+        LOG.info("send {} build status updates over one ssh session", updates.size());
+        return first.notifier
+                .getPool()
+                .execute(first.notifier.getConnection(), first.notifier.getAuthentication(), connection -> connection
+                        .command(BATCH_COMMAND)
+                        .stream(this::converse));
+    }
+
+    private Map<Integer, Ack> converse(OutputStream stdin, InputStream stdout) throws IOException {
+        try (OutputStream out = stdin) {
+            for (int id = 0; id < updates.size(); id++) {
+                out.write(MAPPER.writeValueAsBytes(updates.get(id).record(id)));
+                out.write('\n');
+            }
+        }
+
+        Map<Integer, Ack> acks = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stdout, StandardCharsets.UTF_8))) {
+            String line;
+            while (acks.size() < updates.size() && (line = reader.readLine()) != null) {
+                readAck(line, acks);
+            }
+        }
+        return acks;
+    }
+
+    private static void readAck(String line, Map<Integer, Ack> acks) {
+        if (line.isBlank()) {
+            return;
+        }
+        try {
+            Ack ack = MAPPER.readValue(line, Ack.class);
+            acks.put(ack.getId(), ack);
+        } catch (IOException e) {
+            LOG.debug("could not parse acknowledgement: {}", line, e);
+        }
+    }
+
+    private static void sendOneByOne(List<Update> updates) {
+        for (Update update : updates) {
+            try {
+                update.notifier.notify(update.revision, update.buildStatus);
+                update.result.complete(null);
+            } catch (IOException | RuntimeException e) {
+                update.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    @VisibleForTesting
+    static boolean isUnsupported(String key) {
+        return UNSUPPORTED.contains(key);
+    }
+
+    @VisibleForTesting
+    static void resetUnsupported() {
+        UNSUPPORTED.clear();
+    }
+
+    private static final class Update {
+
+        private final ScmV2SshNotifier notifier;
+        private final String revision;
+        private final BuildStatus buildStatus;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        private Update(ScmV2SshNotifier notifier, String revision, BuildStatus buildStatus) {
+            this.notifier = notifier;
+            this.revision = revision;
+            this.buildStatus = buildStatus;
+        }
+
+        NamespaceAndName repository() {
+            return notifier.getConnection().mustGetRepository();
+        }
+
+        Record record(int id) {
+            ScmV2SshNotifier.setBuildStatusTypeIfNull(buildStatus);
+            NamespaceAndName repository = repository();
+            return new Record(id, repository.getNamespace(), repository.getName(), revision, buildStatus);
+        }
+    }
+
+    static class Record {
+
+        private final int id;
+        private final String namespace;
+        private final String name;
+        private final String revision;
+        private final BuildStatus status;
+
+        Record(int id, String namespace, String name, String revision, BuildStatus status) {
+            this.id = id;
+            this.namespace = namespace;
+            this.name = name;
+            this.revision = revision;
+            this.status = status;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getNamespace() {
+            return namespace;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getRevision() {
+            return revision;
+        }
+
+        public BuildStatus getStatus() {
+            return status;
+        }
+    }
+
+    static class Ack {
+
+        private int id;
+        private boolean ok;
+        private String message;
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public boolean isOk() {
+            return ok;
+        }
+
+        public void setOk(boolean ok) {
+            this.ok = ok;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public void setMessage(String message) {
+            this.message = message;
+        }
+    }
+}
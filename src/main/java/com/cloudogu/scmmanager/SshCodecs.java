@@ -0,0 +1,139 @@
+package com.cloudogu.scmmanager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.beans.Introspector;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.namespace.QName;
+import javax.xml.transform.stream.StreamSource;
+
+/**
+ * Encodes and decodes the input and output of ssh commands. The {@link JAXBContext} of each type is created only
+ * once and the marshallers, which are not thread safe, are pooled per type. The json path reuses the readers and
+ * writers of one shared {@link ObjectMapper}. The produced documents are the same as those of
+ * {@link javax.xml.bind.JAXB} and {@link ObjectMapper}.
+ */
+final class SshCodecs {
+
+    private static final int MAX_POOLED = 8;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final ClassValue<XmlCodec> XML = new ClassValue<>() {
+        @Override
+        protected XmlCodec computeValue(Class<?> type) {
+            return new XmlCodec(type);
+        }
+    };
+
+    private static final ClassValue<ObjectReader> READERS = new ClassValue<>() {
+        @Override
+        protected ObjectReader computeValue(Class<?> type) {
+            return MAPPER.readerFor(type);
+        }
+    };
+
+    private static final ClassValue<ObjectWriter> WRITERS = new ClassValue<>() {
+        @Override
+        protected ObjectWriter computeValue(Class<?> type) {
+            return MAPPER.writerFor(type);
+        }
+    };
+
+    private SshCodecs() {}
+
+    static void writeJson(OutputStream out, Object object) throws IOException {
+        WRITERS.get(object.getClass()).writeValue(out, object);
+    }
+
+    static <T> T readJson(InputStream in, Class<T> type) throws IOException {
+        return READERS.get(type).readValue(in);
+    }
+
+    static void writeXml(OutputStream out, Object object) throws IOException {
+        XML.get(object.getClass()).marshal(out, object);
+    }
+
+    static <T> T readXml(InputStream in, Class<T> type) throws IOException {
+        return type.cast(XML.get(type).unmarshal(in));
+    }
+
+    private static final class XmlCodec {
+
+        private final Class<?> type;
+        private final boolean rootElement;
+        private final Queue<Marshaller> marshallers = new ConcurrentLinkedQueue<>();
+        private final Queue<Unmarshaller> unmarshallers = new ConcurrentLinkedQueue<>();
+
+        private volatile JAXBContext context;
+
+        private XmlCodec(Class<?> type) {
+            this.type = type;
+            this.rootElement = type.isAnnotationPresent(XmlRootElement.class);
+        }
+
+        private JAXBContext context() throws JAXBException {
+            if (context == null) {
+                synchronized (this) {
+                    if (context == null) {
+                        context = JAXBContext.newInstance(type);
+                    }
+                }
+            }
+            return context;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        void marshal(OutputStream out, Object object) throws IOException {
+            try {
+                Marshaller marshaller = marshallers.poll();
+                if (marshaller == null) {
+                    marshaller = context().createMarshaller();
+                    marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+                }
+                if (rootElement) {
+                    marshaller.marshal(object, out);
+                } else {
+                    // same as JAXB.marshal for types without root element
+                    QName name = new QName(Introspector.decapitalize(type.getSimpleName()));
+                    marshaller.marshal(new JAXBElement(name, type, object), out);
+                }
+                release(marshallers, marshaller);
+            } catch (JAXBException e) {
+                throw new IOException("failed to marshal " + type.getName(), e);
+            }
+        }
+
+        Object unmarshal(InputStream in) throws IOException {
+            try {
+                Unmarshaller unmarshaller = unmarshallers.poll();
+                if (unmarshaller == null) {
+                    unmarshaller = context().createUnmarshaller();
+                }
+                Object value = unmarshaller.unmarshal(new StreamSource(in), type).getValue();
+                release(unmarshallers, unmarshaller);
+                return value;
+            } catch (JAXBException e) {
+                throw new IOException("failed to unmarshal " + type.getName(), e);
+            }
+        }
+
+        private static <M> void release(Queue<M> pool, M instance) {
+            // size of a concurrent queue is not exact, but good enough to bound the pool
+            if (pool.size() < MAX_POOLED) {
+                pool.offer(instance);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.cloudogu.scmmanager;
+
+import com.google.common.annotations.VisibleForTesting;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import jenkins.util.SystemProperties;
+
+/**
+ * Runs blocking ssh work (handshakes and remote commands) on a dedicated, bounded thread pool, so that ssh does not
+ * block threads of the common fork join pool or of the http clients. The pool is tuned with the following system
+ * properties:
+ *
+ * <ul>
+ *     <li>{@code com.cloudogu.scmmanager.SshCommandExecutor.threads} (default 8)</li>
+ *     <li>{@code com.cloudogu.scmmanager.SshCommandExecutor.maxQueued} (default 256)</li>
+ *     <li>{@code com.cloudogu.scmmanager.SshCommandExecutor.timeoutSeconds} (default 60, 0 disables the timeout)</li>
+ * </ul>
+ */
+final class SshCommandExecutor {
+
+    private static final String PROPERTY_PREFIX = SshCommandExecutor.class.getName() + ".";
+
+    private static final SshCommandExecutor INSTANCE = new SshCommandExecutor(
+            SystemProperties.getInteger(PROPERTY_PREFIX + "threads", 8),
+            SystemProperties.getInteger(PROPERTY_PREFIX + "maxQueued", 256),
+            TimeUnit.SECONDS.toMillis(SystemProperties.getLong(PROPERTY_PREFIX + "timeoutSeconds", 60L)));
+
+    private final ThreadPoolExecutor executor;
+    private final long defaultTimeout;
+
+    @VisibleForTesting
+    SshCommandExecutor(int threads, int maxQueued, long defaultTimeout) {
+        int poolSize = Math.max(1, threads);
+        this.executor = new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                60L,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, maxQueued)),
+                new NamingThreadFactory(new DaemonThreadFactory(), "scm-manager-ssh"));
+        this.executor.allowCoreThreadTimeOut(true);
+        this.defaultTimeout = defaultTimeout;
+    }
+
+    static SshCommandExecutor get() {
+        return INSTANCE;
+    }
+
+    long getDefaultTimeout() {
+        return defaultTimeout;
+    }
+
+    /**
+     * Runs the task on the pool. If the task does not finish within the timeout or if the returned future is
+     * cancelled, the abort action is called and the worker thread is interrupted. Blocked ssh reads are released by
+     * the abort action, which should close the session or connection. If the pool is saturated, the returned future
+     * fails with a {@link RejectedExecutionException}.
+     */
+    <T> CompletableFuture<T> submit(Callable<T> task, long timeoutMillis, Runnable abort) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicBoolean running = new AtomicBoolean(true);
+        Future<?> worker;
+        try {
+            worker = executor.submit(() -> {
+                try {
+                    T value = task.call();
+                    running.set(false);
+                    result.complete(value);
+                } catch (Exception | LinkageError e) {
+                    running.set(false);
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (timeoutMillis > 0) {
+            result.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        result.whenComplete((value, ex) -> {
+            if (ex != null && running.getAndSet(false)) {
+                abort.run();
+                worker.cancel(true);
+            }
+        });
+        return result;
+    }
+}
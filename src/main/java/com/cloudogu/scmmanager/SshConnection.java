@@ -1,18 +1,23 @@
 package com.cloudogu.scmmanager;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.VisibleForTesting;
+import com.trilead.ssh2.ChannelCondition;
 import com.trilead.ssh2.Connection;
 import com.trilead.ssh2.Session;
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
-import javax.xml.bind.JAXB;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 public class SshConnection implements AutoCloseable {
 
-    private static final ObjectMapper mapper = new ObjectMapper();
-
     private final Connection connection;
     private final NamespaceAndName repository;
 
@@ -37,15 +42,37 @@ public class SshConnection implements AutoCloseable {
     }
 
     public void connect(SSHAuthentication authentication) {
+        connect(authentication, SshKnownHosts.get());
+    }
+
+    @VisibleForTesting
+    void connect(SSHAuthentication authentication, SshKnownHosts knownHosts) {
         try {
-            // accept any host
-            connection.connect((s, i, s1, bytes) -> true);
+            knownHosts.prepare(connection);
+            long start = System.nanoTime();
+            connection.connect(knownHosts);
+            knownHosts.connected(connection, System.nanoTime() - start);
             authentication.authenticate(connection);
         } catch (IOException ex) {
             throw new SshConnectionFailedException("ssh connection failed", ex);
         }
     }
 
+    /**
+     * Connects and authenticates on the ssh executor. The connection is closed, if the returned future is cancelled
+     * or the handshake does not finish within the default timeout of {@link SshCommandExecutor}.
+     */
+    public CompletableFuture<Void> connectAsync(SSHAuthentication authentication) {
+        SshCommandExecutor executor = SshCommandExecutor.get();
+        return executor.submit(
+                () -> {
+                    connect(authentication);
+                    return null;
+                },
+                executor.getDefaultTimeout(),
+                connection::close);
+    }
+
     public Command command(String command) {
         return new Command(connection, command);
     }
@@ -57,9 +84,12 @@ public class SshConnection implements AutoCloseable {
 
     public static class Command {
 
+        private static final long EXIT_STATUS_WAIT = 1000L;
+
         private final Connection connection;
         private final String command;
         private Input input;
+        private long timeout = -1;
 
         private Command(Connection connection, String command) {
             this.connection = connection;
@@ -75,14 +105,112 @@ public class SshConnection implements AutoCloseable {
             return new Output<>(this, type);
         }
 
+        /**
+         * Sets the timeout for the asynchronous execution of the command. Without a timeout, the default of
+         * {@link SshCommandExecutor} is used.
+         */
+        public Command withTimeout(long duration, TimeUnit unit) {
+            timeout = unit.toMillis(duration);
+            return this;
+        }
+
         public void exec() throws IOException {
             exec(null);
         }
 
+        /**
+         * Executes the command on the ssh executor, without blocking the calling thread. If the returned future is
+         * cancelled or the timeout elapses, the session is closed.
+         */
+        public CompletableFuture<Void> execAsync() {
+            return submit(null);
+        }
+
+        /**
+         * Executes the command on the ssh executor and passes every line of the output to the consumer, as soon as it
+         * is received.
+         */
+        public CompletableFuture<Void> execAsync(Consumer<String> lines) {
+            return submit(stdout -> {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(stdout, StandardCharsets.UTF_8));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lines.accept(line);
+                }
+                return null;
+            });
+        }
+
+        private <T> CompletableFuture<T> submit(Unmarshaller<T> unmarshaller) {
+            SshCommandExecutor executor = SshCommandExecutor.get();
+            AtomicReference<Session> session = new AtomicReference<>();
+            return executor.submit(
+                    () -> exec(unmarshaller, session::set),
+                    timeout >= 0 ? timeout : executor.getDefaultTimeout(),
+                    () -> {
+                        Session running = session.get();
+                        if (running != null) {
+                            running.close();
+                        }
+                    });
+        }
+
+        /**
+         * Executes the command and passes stdin and stdout of the session to the conversation. This allows to write
+         * and read several records, while the command is running. If the conversation does not finish within the
+         * timeout, the session is closed, which releases blocked reads, and an {@link IOException} is thrown. Without
+         * a timeout, the default of {@link SshCommandExecutor} is used.
+         */
+        public <T> Streamed<T> stream(Conversation<T> conversation) throws IOException {
+            long deadline = timeout >= 0 ? timeout : SshCommandExecutor.get().getDefaultTimeout();
+            CompletableFuture<Void> watchdog = new CompletableFuture<>();
+            Session session = null;
+            try {
+                session = connection.openSession();
+                if (deadline > 0) {
+                    Session opened = session;
+                    watchdog.orTimeout(deadline, TimeUnit.MILLISECONDS).whenComplete((nothing, ex) -> {
+                        if (ex != null) {
+                            opened.close();
+                        }
+                    });
+                }
+                session.execCommand(command);
+                T value;
+                try {
+                    value = conversation.converse(session.getStdin(), session.getStdout());
+                } catch (IOException ex) {
+                    if (!watchdog.complete(null)) {
+                        throw new IOException(timeoutMessage(deadline), ex);
+                    }
+                    throw ex;
+                }
+                if (!watchdog.complete(null)) {
+                    throw new IOException(timeoutMessage(deadline));
+                }
+                session.waitForCondition(ChannelCondition.EXIT_STATUS, EXIT_STATUS_WAIT);
+                return new Streamed<>(value, session.getExitStatus());
+            } finally {
+                watchdog.complete(null);
+                if (session != null) {
+                    session.close();
+                }
+            }
+        }
+
+        private String timeoutMessage(long deadline) {
+            return "command " + command + " did not finish within " + deadline + "ms";
+        }
+
         private <T> T exec(Unmarshaller<T> unmarshaller) throws IOException {
+            return exec(unmarshaller, session -> {});
+        }
+
+        private <T> T exec(Unmarshaller<T> unmarshaller, Consumer<Session> opened) throws IOException {
             Session session = null;
             try {
                 session = connection.openSession();
+                opened.accept(session);
                 session.execCommand(command);
 
                 if (input != null) {
@@ -117,12 +245,12 @@ public class SshConnection implements AutoCloseable {
         }
 
         public Command json() {
-            marshaller = (out -> mapper.writeValue(out, object));
+            marshaller = (out -> SshCodecs.writeJson(out, object));
             return command;
         }
 
         public Command xml() {
-            marshaller = (out -> JAXB.marshal(object, out));
+            marshaller = (out -> SshCodecs.writeXml(out, object));
             return command;
         }
 
@@ -144,14 +272,53 @@ public class SshConnection implements AutoCloseable {
         }
 
         public T json() throws IOException {
-            return command.exec(stdout -> mapper.readValue(stdout, type));
+            return command.exec(stdout -> SshCodecs.readJson(stdout, type));
         }
 
         public T xml() throws IOException {
-            return command.exec(stdout -> JAXB.unmarshal(stdout, type));
+            return command.exec(stdout -> SshCodecs.readXml(stdout, type));
+        }
+
+        public CompletableFuture<T> jsonAsync() {
+            return command.submit(stdout -> SshCodecs.readJson(stdout, type));
+        }
+
+        public CompletableFuture<T> xmlAsync() {
+            return command.submit(stdout -> SshCodecs.readXml(stdout, type));
         }
     }
 
+    /**
+     * Result of {@link Command#stream(Conversation)}.
+     */
+    public static class Streamed<T> {
+
+        private final T value;
+        private final Integer exitStatus;
+
+        Streamed(T value, Integer exitStatus) {
+            this.value = value;
+            this.exitStatus = exitStatus;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        /**
+         * Returns the exit status of the command or {@code null}, if the server did not send one, e.g. because the
+         * session was dropped.
+         */
+        public Integer getExitStatus() {
+            return exitStatus;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Conversation<T> {
+        T converse(OutputStream stdin, InputStream stdout) throws IOException;
+    }
+
     @FunctionalInterface
     private interface Marshaller {
         void marshal(OutputStream out) throws IOException;
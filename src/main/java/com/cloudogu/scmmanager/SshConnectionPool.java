@@ -0,0 +1,238 @@
+package com.cloudogu.scmmanager;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.trilead.ssh2.Connection;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import jenkins.util.SystemProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps authenticated ssh connections to SCM-Manager open, so that subsequent commands do not need a new handshake.
+ * Connections are pooled by host, port and credentials. Each connection is shared by up to
+ * {@code com.cloudogu.scmmanager.SshConnectionPool.maxSessions} (default 8) concurrent sessions, before another
+ * connection is opened.
+ *
+ * <p>Connections which are idle for longer than {@code com.cloudogu.scmmanager.SshConnectionPool.idleTimeoutSeconds}
+ * (default 120) are closed by {@link SshConnectionPoolCleanup}. A connection which was idle for longer than
+ * {@code com.cloudogu.scmmanager.SshConnectionPool.healthCheckSeconds} (default 10) is checked before it is used
+ * again. If a command fails on a pooled connection, the connection is discarded and the command is retried once on a
+ * new connection.</p>
+ */
+public class SshConnectionPool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SshConnectionPool.class);
+
+    private static final String PROPERTY_PREFIX = SshConnectionPool.class.getName() + ".";
+
+    private static final SshConnectionPool INSTANCE = new SshConnectionPool(
+            SystemProperties.getInteger(PROPERTY_PREFIX + "maxSessions", 8),
+            TimeUnit.SECONDS.toMillis(SystemProperties.getLong(PROPERTY_PREFIX + "idleTimeoutSeconds", 120L)),
+            TimeUnit.SECONDS.toMillis(SystemProperties.getLong(PROPERTY_PREFIX + "healthCheckSeconds", 10L)),
+            System::currentTimeMillis);
+
+    private final Map<String, List<PooledConnection>> pools = new HashMap<>();
+
+    private final int maxSessions;
+    private final long idleTimeout;
+    private final long healthCheckInterval;
+    private final LongSupplier clock;
+
+    @VisibleForTesting
+    SshConnectionPool(int maxSessions, long idleTimeout, long healthCheckInterval, LongSupplier clock) {
+        this.maxSessions = Math.max(1, maxSessions);
+        this.idleTimeout = idleTimeout;
+        this.healthCheckInterval = healthCheckInterval;
+        this.clock = clock;
+    }
+
+    public static SshConnectionPool get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Executes the action with an authenticated connection to the server of the given connection. A pooled
+     * connection is used if there is one with a free session, otherwise the given connection is connected and added
+     * to the pool. The action must not close the connection, which is passed to it.
+     */
+    public <T> T execute(SshConnection connection, SSHAuthentication authentication, Action<T> action)
+            throws IOException {
+        String key = key(connection, authentication);
+        PooledConnection pooled = acquire(key);
+        if (pooled == null) {
+            return executeOnNewConnection(key, connection, authentication, action);
+        }
+        try {
+            return action.execute(new SshConnection(pooled.connection, connection.getRepository().orElse(null)));
+        } catch (IOException e) {
+            LOG.debug("command failed on pooled ssh connection to {}, retry with new connection", pooled.host, e);
+            discard(pooled);
+            return executeOnNewConnection(key, connection, authentication, action);
+        } finally {
+            release(pooled);
+        }
+    }
+
+    private <T> T executeOnNewConnection(
+            String key, SshConnection connection, SSHAuthentication authentication, Action<T> action)
+            throws IOException {
+        PooledConnection pooled = open(key, connection, authentication);
+        try {
+            return action.execute(connection);
+        } catch (IOException | RuntimeException e) {
+            discard(pooled);
+            throw e;
+        } finally {
+            release(pooled);
+        }
+    }
+
+    private PooledConnection open(String key, SshConnection connection, SSHAuthentication authentication) {
+        try {
+            connection.connect(authentication);
+        } catch (RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+        PooledConnection pooled = new PooledConnection(key, connection.getConnection());
+        connection.getConnection().addConnectionMonitor(reason -> pooled.lost = true);
+        synchronized (pools) {
+            pools.computeIfAbsent(key, k -> new ArrayList<>()).add(pooled);
+        }
+        return pooled;
+    }
+
+    private PooledConnection acquire(String key) {
+        while (true) {
+            PooledConnection pooled = reserve(key);
+            if (pooled == null || !requiresHealthCheck(pooled) || isHealthy(pooled)) {
+                return pooled;
+            }
+            discard(pooled);
+            release(pooled);
+        }
+    }
+
+    private PooledConnection reserve(String key) {
+        synchronized (pools) {
+            List<PooledConnection> connections = pools.get(key);
+            if (connections == null) {
+                return null;
+            }
+            PooledConnection leastUsed = null;
+            for (PooledConnection pooled : connections) {
+                if (!pooled.lost
+                        && pooled.sessions < maxSessions
+                        && (leastUsed == null || pooled.sessions < leastUsed.sessions)) {
+                    leastUsed = pooled;
+                }
+            }
+            if (leastUsed != null) {
+                leastUsed.sessions++;
+            }
+            return leastUsed;
+        }
+    }
+
+    private boolean requiresHealthCheck(PooledConnection pooled) {
+        synchronized (pools) {
+            return pooled.sessions == 1 && clock.getAsLong() - pooled.lastUsed >= healthCheckInterval;
+        }
+    }
+
+    private boolean isHealthy(PooledConnection pooled) {
+        try {
+            pooled.connection.sendIgnorePacket();
+            return !pooled.lost;
+        } catch (IOException | IllegalStateException e) {
+            LOG.debug("pooled ssh connection to {} is broken", pooled.host, e);
+            return false;
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        synchronized (pools) {
+            pooled.sessions--;
+            pooled.lastUsed = clock.getAsLong();
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        synchronized (pools) {
+            pooled.lost = true;
+            remove(pooled);
+        }
+        pooled.connection.close();
+    }
+
+    private void remove(PooledConnection pooled) {
+        List<PooledConnection> connections = pools.get(pooled.key);
+        if (connections != null) {
+            connections.remove(pooled);
+            if (connections.isEmpty()) {
+                pools.remove(pooled.key);
+            }
+        }
+    }
+
+    /**
+     * Closes all connections, which are not in use and were idle for longer than the idle timeout or are lost.
+     */
+    public void evictIdle() {
+        List<PooledConnection> evicted = new ArrayList<>();
+        synchronized (pools) {
+            long now = clock.getAsLong();
+            for (List<PooledConnection> connections : pools.values()) {
+                for (PooledConnection pooled : connections) {
+                    if (pooled.sessions == 0 && (pooled.lost || now - pooled.lastUsed >= idleTimeout)) {
+                        evicted.add(pooled);
+                    }
+                }
+            }
+            evicted.forEach(this::remove);
+        }
+        for (PooledConnection pooled : evicted) {
+            LOG.debug("close idle ssh connection to {}", pooled.host);
+            pooled.connection.close();
+        }
+    }
+
+    public int size() {
+        synchronized (pools) {
+            return pools.values().stream().mapToInt(List::size).sum();
+        }
+    }
+
+    static String key(SshConnection connection, SSHAuthentication authentication) {
+        Connection sshConnection = connection.getConnection();
+        return sshConnection.getHostname() + ":" + sshConnection.getPort() + "|" + authentication.getFingerprint();
+    }
+
+    @FunctionalInterface
+    public interface Action<T> {
+        T execute(SshConnection connection) throws IOException;
+    }
+
+    private static final class PooledConnection {
+
+        private final String key;
+        private final String host;
+        private final Connection connection;
+
+        private int sessions = 1;
+        private long lastUsed;
+        private volatile boolean lost;
+
+        private PooledConnection(String key, Connection connection) {
+            this.key = key;
+            this.host = connection.getHostname() + ":" + connection.getPort();
+            this.connection = connection;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.cloudogu.scmmanager;
+
+import hudson.Extension;
+import hudson.model.PeriodicWork;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closes idle connections of the {@link SshConnectionPool}.
+ */
+@Extension
+public class SshConnectionPoolCleanup extends PeriodicWork {
+
+    @Override
+    public long getRecurrencePeriod() {
+        return TimeUnit.MINUTES.toMillis(1);
+    }
+
+    @Override
+    protected void doRun() {
+        SshConnectionPool.get().evictIdle();
+    }
+}
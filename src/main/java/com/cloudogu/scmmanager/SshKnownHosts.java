@@ -0,0 +1,206 @@
+package com.cloudogu.scmmanager;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.trilead.ssh2.Connection;
+import com.trilead.ssh2.KnownHosts;
+import com.trilead.ssh2.ServerHostKeyVerifier;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Verifies the host keys of SCM-Manager ssh servers. The key of a server is pinned, the first time it is seen, and
+ * written to {@code JENKINS_HOME/scm-manager/known_hosts}. Connections to a server which presents another key are
+ * refused. Verification can be disabled with {@code com.cloudogu.scmmanager.SshKnownHosts.verify=false}.
+ *
+ * <p>The key types which are pinned for a server are preferred on every connection, so that the server is asked for the
+ * pinned key type, even after a restart of Jenkins. The duration of the handshakes is recorded per server and
+ * available for administrators with the metrics of {@code /scm-manager-hook/metrics}.</p>
+ */
+public class SshKnownHosts implements ServerHostKeyVerifier {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SshKnownHosts.class);
+
+    private static final SshKnownHosts INSTANCE = new SshKnownHosts(
+            SystemProperties.getBoolean(SshKnownHosts.class.getName() + ".verify", true),
+            SshKnownHosts::defaultFile);
+
+    private final Map<String, HandshakeTimings> timings = new ConcurrentHashMap<>();
+
+    private final boolean verify;
+    private final Supplier<File> file;
+
+    private KnownHosts knownHosts;
+
+    @VisibleForTesting
+    SshKnownHosts(boolean verify, Supplier<File> file) {
+        this.verify = verify;
+        this.file = file;
+    }
+
+    public static SshKnownHosts get() {
+        return INSTANCE;
+    }
+
+    @CheckForNull
+    private static File defaultFile() {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins == null) {
+            return null;
+        }
+        return new File(jenkins.getRootDir(), "scm-manager/known_hosts");
+    }
+
+    /**
+     * Returns the name of the host in the known hosts file, which contains the port if it is not the default one.
+     */
+    static String hostName(String hostname, int port) {
+        if (port == 22) {
+            return hostname;
+        }
+        return "[" + hostname + "]:" + port;
+    }
+
+    @Override
+    public synchronized boolean verifyServerHostKey(
+            String hostname, int port, String serverHostKeyAlgorithm, byte[] serverHostKey) throws IOException {
+        if (!verify) {
+            return true;
+        }
+        String host = hostName(hostname, port);
+        KnownHosts hosts = knownHosts();
+        int result = hosts.verifyHostkey(host, serverHostKeyAlgorithm, serverHostKey);
+        if (result == KnownHosts.HOSTKEY_IS_OK) {
+            return true;
+        } else if (result == KnownHosts.HOSTKEY_IS_NEW) {
+            pin(hosts, host, serverHostKeyAlgorithm, serverHostKey);
+            return true;
+        }
+        LOG.warn(
+                "host key of {} has changed, connection refused. Remove the entry from {}, if the change is expected",
+                host,
+                file.get());
+        return false;
+    }
+
+    private void pin(KnownHosts hosts, String host, String algorithm, byte[] key) throws IOException {
+        LOG.info("pin {} host key of {}", algorithm, host);
+        String[] hostnames = {host};
+        hosts.addHostkey(hostnames, algorithm, key);
+        File knownHostsFile = file.get();
+        if (knownHostsFile != null) {
+            Files.createDirectories(knownHostsFile.getParentFile().toPath());
+            KnownHosts.addHostkeyToFile(knownHostsFile, hostnames, algorithm, key);
+        }
+    }
+
+    private KnownHosts knownHosts() throws IOException {
+        if (knownHosts == null) {
+            File knownHostsFile = file.get();
+            if (knownHostsFile != null && knownHostsFile.exists()) {
+                knownHosts = new KnownHosts(knownHostsFile);
+            } else {
+                knownHosts = new KnownHosts();
+            }
+        }
+        return knownHosts;
+    }
+
+    /**
+     * Prefers the key types which are pinned for the server of the connection.
+     */
+    void prepare(Connection connection) {
+        String host = hostName(connection.getHostname(), connection.getPort());
+        String[] pinned = pinnedHostKeyAlgorithms(host);
+        if (pinned != null) {
+            connection.setServerHostKeyAlgorithms(prefer(pinned, Connection.getAvailableServerHostKeyAlgorithms()));
+        }
+    }
+
+    @CheckForNull
+    private synchronized String[] pinnedHostKeyAlgorithms(String host) {
+        if (!verify) {
+            return null;
+        }
+        try {
+            return knownHosts().getPreferredServerHostkeyAlgorithmOrder(host);
+        } catch (IOException e) {
+            LOG.debug("could not read pinned host key algorithms of {}", host, e);
+            return null;
+        }
+    }
+
+    private static String[] prefer(String[] preferred, String[] available) {
+        List<String> availableList = Arrays.asList(available);
+        Set<String> algorithms = new LinkedHashSet<>(available.length);
+        for (String algorithm : preferred) {
+            if (availableList.contains(algorithm)) {
+                algorithms.add(algorithm);
+            }
+        }
+        if (algorithms.isEmpty()) {
+            return available;
+        }
+        algorithms.addAll(availableList);
+        return algorithms.toArray(new String[0]);
+    }
+
+    /**
+     * Records the duration of the handshake with the server of the connection.
+     */
+    void connected(Connection connection, long nanos) {
+        String host = hostName(connection.getHostname(), connection.getPort());
+        timings.computeIfAbsent(host, h -> new HandshakeTimings()).record(nanos);
+        LOG.debug("ssh handshake with {} took {} ms", host, TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+
+    /**
+     * Returns the durations of the handshakes by the name of the server in the known hosts file.
+     */
+    public Map<String, HandshakeTimings> getHandshakeTimings() {
+        return Collections.unmodifiableMap(new TreeMap<>(timings));
+    }
+
+    /**
+     * Durations of the ssh handshakes with one server.
+     */
+    public static final class HandshakeTimings {
+
+        private long count;
+        private long totalNanos;
+        private long lastNanos;
+
+        private synchronized void record(long nanos) {
+            count++;
+            totalNanos += nanos;
+            lastNanos = nanos;
+        }
+
+        public synchronized long getCount() {
+            return count;
+        }
+
+        public synchronized long getAverageMillis() {
+            return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos / count);
+        }
+
+        public synchronized long getLastMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(lastNanos);
+        }
+    }
+}
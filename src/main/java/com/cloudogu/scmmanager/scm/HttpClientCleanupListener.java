@@ -0,0 +1,84 @@
+package com.cloudogu.scmmanager.scm;
+
+import com.cloudogu.scmmanager.OkHttpClientRegistry;
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.listeners.ItemListener;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import java.util.HashSet;
+import java.util.Set;
+import jenkins.model.Jenkins;
+import jenkins.scm.api.SCMNavigator;
+import jenkins.scm.api.SCMNavigatorOwner;
+import jenkins.scm.api.SCMSource;
+import jenkins.scm.api.SCMSourceOwner;
+
+/**
+ * Records which SCM-Manager servers are used by sources and navigators, so that the shared http clients of servers
+ * which are no longer used by any of them are released. Only the changed item is inspected, all items are scanned
+ * once after Jenkins has loaded them.
+ */
+@Extension
+public class HttpClientCleanupListener extends ItemListener {
+
+    @Override
+    public void onLoaded() {
+        try (ACLContext ignored = ACL.as2(ACL.SYSTEM2)) {
+            Jenkins jenkins = Jenkins.get();
+            jenkins.getAllItems(SCMSourceOwner.class).forEach(HttpClientCleanupListener::recordUsage);
+            jenkins.getAllItems(SCMNavigatorOwner.class).forEach(HttpClientCleanupListener::recordUsage);
+        }
+    }
+
+    @Override
+    public void onCreated(Item item) {
+        recordUsage(item);
+    }
+
+    @Override
+    public void onCopied(Item src, Item item) {
+        recordUsage(item);
+    }
+
+    @Override
+    public void onUpdated(Item item) {
+        recordUsage(item);
+    }
+
+    @Override
+    public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+        OkHttpClientRegistry.get().release(oldFullName);
+        recordUsage(item);
+    }
+
+    @Override
+    public void onDeleted(Item item) {
+        OkHttpClientRegistry.get().release(item.getFullName());
+    }
+
+    private static void recordUsage(Item item) {
+        if (item instanceof SCMSourceOwner || item instanceof SCMNavigatorOwner) {
+            OkHttpClientRegistry.get().use(item.getFullName(), collectServerUrls(item));
+        }
+    }
+
+    private static Set<String> collectServerUrls(Item item) {
+        Set<String> serverUrls = new HashSet<>();
+        if (item instanceof SCMSourceOwner) {
+            for (SCMSource source : ((SCMSourceOwner) item).getSCMSources()) {
+                if (source instanceof ScmManagerSource) {
+                    serverUrls.add(((ScmManagerSource) source).getServerUrl());
+                }
+            }
+        }
+        if (item instanceof SCMNavigatorOwner) {
+            for (SCMNavigator navigator : ((SCMNavigatorOwner) item).getSCMNavigators()) {
+                if (navigator instanceof ScmManagerNavigator) {
+                    serverUrls.add(((ScmManagerNavigator) navigator).getServerUrl());
+                }
+            }
+        }
+        return serverUrls;
+    }
+}
@@ -19,10 +19,8 @@ import org.kohsuke.stapler.Stapler;
 
 abstract class ScmManagerHeadEvent extends SCMHeadEvent<ScmManagerHeadEvent.TriggerPayload> {
 
-    private final String namespace;
-    private final String name;
-    private final String type;
     private final ServerIdentification identification;
+    private final RepositoryRepresentation repository;
 
     ScmManagerHeadEvent(Type changeType, JSONObject form) {
         this(
@@ -36,10 +34,8 @@ abstract class ScmManagerHeadEvent extends SCMHeadEvent<ScmManagerHeadEvent.Trig
     ScmManagerHeadEvent(
             Type changeType, String namespace, String name, String type, ServerIdentification identification) {
         super(changeType, new TriggerPayload(namespace, name), SCMEvent.originOf(Stapler.getCurrentRequest()));
-        this.namespace = namespace;
-        this.name = name;
-        this.type = type;
         this.identification = identification;
+        this.repository = new RepositoryRepresentation(namespace, name, type);
     }
 
     @Override
@@ -74,8 +70,8 @@ abstract class ScmManagerHeadEvent extends SCMHeadEvent<ScmManagerHeadEvent.Trig
     }
 
     private boolean isMatch(@NonNull ScmManagerSource source) {
-        return RepositoryRepresentationUtil.parse(source.getRepository())
-                        .equals(new RepositoryRepresentation(namespace, name, type))
+        return ScmManagerSourceIndex.get().mayMatch(repository, source)
+                && RepositoryRepresentationUtil.parse(source.getRepository()).equals(repository)
                 && identification.matches(source.getServerUrl());
     }
 
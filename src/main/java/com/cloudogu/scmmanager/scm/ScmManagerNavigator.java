@@ -7,6 +7,7 @@ import com.cloudbees.plugins.credentials.CredentialsUnavailableException;
 import com.cloudogu.scmmanager.scm.api.ExecutionExceptions;
 import com.cloudogu.scmmanager.scm.api.Namespace;
 import com.cloudogu.scmmanager.scm.api.Repository;
+import com.cloudogu.scmmanager.scm.api.RepositoryPages;
 import com.cloudogu.scmmanager.scm.api.ScmManagerApi;
 import com.cloudogu.scmmanager.scm.api.ScmManagerApiFactory;
 import com.google.common.base.Joiner;
@@ -22,7 +23,6 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -43,6 +43,7 @@ import jenkins.scm.api.trait.SCMTraitDescriptor;
 import jenkins.scm.impl.UncategorizedSCMSourceCategory;
 import jenkins.scm.impl.form.NamedArrayList;
 import jenkins.util.NonLocalizable;
+import jenkins.util.SystemProperties;
 import org.jenkinsci.Symbol;
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
@@ -53,6 +54,13 @@ public class ScmManagerNavigator extends SCMNavigator {
 
     public static final String ALL_NAMESPACES_LABEL = "--all--";
 
+    /**
+     * Number of repositories which are worked on concurrently during a scan. The repositories are still passed to
+     * the observer one after another, but the data of the upcoming repositories is prefetched in the background.
+     */
+    private static final int PARALLELISM =
+            SystemProperties.getInteger(ScmManagerNavigator.class.getName() + ".parallelism", 4);
+
     private static final Predicate<String> DEFAULT_DEPENDENCY_CHECKER =
             plugin -> Jenkins.get().getPlugin(plugin) != null;
 
@@ -127,30 +135,25 @@ public class ScmManagerNavigator extends SCMNavigator {
                 new ScmManagerNavigatorContext().withTraits(traits).newRequest(this, observer)) {
 
             ScmManagerApi api = apiFactory.create(observer.getContext(), serverUrl, credentialsId);
-            try {
-                CompletableFuture<List<Repository>> repositoryRequest;
-                if (isForAllNamespaces()) {
-                    repositoryRequest = api.getRepositories();
-                } else {
-                    repositoryRequest = api.getRepositories(namespace);
-                }
-                List<Repository> repositories = repositoryRequest.get().stream()
-                        .filter(filterUnsupportedRepositories())
-                        .collect(Collectors.toList());
-                for (Repository repository : repositories) {
-                    final String subProjectName;
-                    if (isForAllNamespaces()) {
-                        subProjectName = repository.getNamespace() + "/" + repository.getName();
-                    } else {
-                        subProjectName = repository.getName();
-                    }
-                    if (request.process(
-                            subProjectName,
-                            new ScmManagerSourceFactory(request, repository),
-                            null,
-                            new NavigatorWitness(listener))) {
-                        // the observer has seen enough and doesn't want to see anymore
-                        return;
+            Predicate<Repository> supportedRepositories = filterUnsupportedRepositories();
+            try (RepositoryPages pages =
+                    isForAllNamespaces() ? api.getRepositoryPages() : api.getRepositoryPages(namespace)) {
+                // pages are processed as soon as they arrive, while the following pages are loaded in the background
+                while (pages.hasNext()) {
+                    List<Repository> repositories = pages.next().stream()
+                            .filter(supportedRepositories)
+                            .collect(Collectors.toList());
+                    for (int i = 0; i < repositories.size(); i++) {
+                        prefetchUpcoming(request, api, repositories, i);
+                        Repository repository = repositories.get(i);
+                        if (request.process(
+                                subProjectName(repository),
+                                new ScmManagerSourceFactory(request, repository),
+                                null,
+                                new NavigatorWitness(listener))) {
+                            // the observer has seen enough and doesn't want to see anymore
+                            return;
+                        }
                     }
                 }
             } catch (ExecutionException e) {
@@ -173,6 +176,41 @@ public class ScmManagerNavigator extends SCMNavigator {
         }
     }
 
+    /**
+     * Prefetches the repositories following the current one, so that {@link #PARALLELISM} repositories are in work.
+     */
+    private void prefetchUpcoming(
+            ScmManagerNavigatorRequest request, ScmManagerApi api, List<Repository> repositories, int current) {
+        if (PARALLELISM <= 1) {
+            return;
+        }
+        boolean branches =
+                isTraitEnabled(ScmManagerBranchDiscoveryTrait.class) || isTraitEnabled(BranchDiscoveryTrait.class);
+        boolean tags = isTraitEnabled(TagDiscoveryTrait.class);
+        boolean pullRequests = isTraitEnabled(PullRequestDiscoveryTrait.class);
+
+        int from = current == 0 ? 1 : current + PARALLELISM - 1;
+        int to = Math.min(repositories.size(), current + PARALLELISM);
+        for (int i = from; i < to; i++) {
+            Repository repository = repositories.get(i);
+            // subversion sources do not use the api of SCM-Manager
+            if (!"svn".equals(repository.getType()) && !request.isExcluded(subProjectName(repository))) {
+                api.prefetch(repository, branches, tags, pullRequests);
+            }
+        }
+    }
+
+    private String subProjectName(Repository repository) {
+        if (isForAllNamespaces()) {
+            return repository.getNamespace() + "/" + repository.getName();
+        }
+        return repository.getName();
+    }
+
+    private boolean isTraitEnabled(Class<?> traitType) {
+        return getTraits().stream().anyMatch(traitType::isInstance);
+    }
+
     private Predicate<Repository> filterUnsupportedRepositories() {
         List<String> supportedTypes = supportedTypes();
         return repository -> supportedTypes.contains(repository.getType());
@@ -18,6 +18,7 @@ import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
@@ -149,9 +150,13 @@ public class ScmManagerSource extends SCMSource {
 
         ScmManagerSourceRetriever handler = ScmManagerSourceRetriever.create(createApi(), namespace, name, traits);
 
-        // for now we trigger a full scan for deletions
-        // TODO improve handling of deletions
-        if (event == null || event.getType() != SCMEvent.Type.REMOVED) {
+        if (event != null && event.getType() == SCMEvent.Type.REMOVED) {
+            // only the removed heads are looked up, those which are no longer found are reported as deleted
+            Set<SCMHead> removed = removedHeads(observer, event);
+            if (removed != null) {
+                candidates = handler.getExistingCandidatesFromSourceControl(request, removed);
+            }
+        } else {
             Set<SCMHead> includes = observer.getIncludes();
             if (includes != null && includes.size() == 1) {
                 candidates = handler.getSpecificCandidatesFromSourceControl(
@@ -170,6 +175,22 @@ public class ScmManagerSource extends SCMSource {
         }
     }
 
+    /**
+     * Returns the heads of the event, which the observer is interested in, or {@code null} if the event has no heads.
+     */
+    @CheckForNull
+    private Set<SCMHead> removedHeads(SCMHeadObserver observer, SCMHeadEvent<?> event) {
+        Set<SCMHead> heads = new HashSet<>(event.heads(this).keySet());
+        if (heads.isEmpty()) {
+            return null;
+        }
+        Set<SCMHead> includes = observer.getIncludes();
+        if (includes != null) {
+            heads.retainAll(includes);
+        }
+        return heads;
+    }
+
     @NonNull
     @Override
     protected SCMProbe createProbe(@NonNull SCMHead head, @CheckForNull SCMRevision revision) {
@@ -1,7 +1,5 @@
 package com.cloudogu.scmmanager.scm;
 
-import static java.util.Collections.emptyList;
-
 import com.cloudogu.scmmanager.scm.api.Repository;
 import com.cloudogu.scmmanager.scm.api.ScmManagerApi;
 import com.cloudogu.scmmanager.scm.api.ScmManagerApiFactory;
@@ -10,6 +8,8 @@ import com.google.common.base.Strings;
 import hudson.util.ComboBoxModel;
 import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.function.Predicate;
@@ -107,16 +107,18 @@ public class ScmManagerSourceDescriptor extends SCMSourceDescriptor {
         Predicate<Repository> protocolPredicate =
                 repository -> repository.getUrl(api.getProtocol()).isPresent();
         Predicate<Repository> predicate = protocolPredicate.and(repositoryPredicate);
-        List<Repository> repositories =
-                api.getRepositories().exceptionally(e -> emptyList()).get();
-        for (Repository repository : repositories) {
-            if (predicate.test(repository)) {
-                String option = createRepositoryOption(repository);
-                if (option != null) {
-                    model.add(option);
-                }
-            }
-        }
+        List<String> options = Collections.synchronizedList(new ArrayList<>());
+        api.forEachRepository(repository -> {
+                    if (predicate.test(repository)) {
+                        String option = createRepositoryOption(repository);
+                        if (option != null) {
+                            options.add(option);
+                        }
+                    }
+                })
+                .exceptionally(e -> null)
+                .get();
+        model.addAll(options);
         return model;
     }
 
@@ -0,0 +1,229 @@
+package com.cloudogu.scmmanager.scm;
+
+import com.cloudogu.scmmanager.scm.RepositoryRepresentationUtil.RepositoryRepresentation;
+import com.google.common.annotations.VisibleForTesting;
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.Saveable;
+import hudson.model.listeners.ItemListener;
+import hudson.model.listeners.SaveableListener;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import jenkins.model.Jenkins;
+import jenkins.scm.api.SCMSource;
+import jenkins.scm.api.SCMSourceOwner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index from repositories to the owners of the {@link ScmManagerSource}s for them. Head events ask the index first, so
+ * that only the sources of the owners for the repository of the event have to be parsed and matched against the
+ * server. The index is built once all items are loaded and is kept up to date, when owners are created, saved,
+ * renamed or deleted. Until it is built, or for owners which are not indexed, every source is matched as before.
+ */
+final class ScmManagerSourceIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ScmManagerSourceIndex.class);
+
+    private static final ScmManagerSourceIndex INSTANCE = new ScmManagerSourceIndex();
+
+    private final Map<String, Set<RepositoryRepresentation>> repositoriesByOwner = new HashMap<>();
+    private final Map<RepositoryRepresentation, Set<String>> ownersByRepository = new HashMap<>();
+
+    // head events of all servers read the index concurrently, it is only written when owners change
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile boolean ready;
+
+    @VisibleForTesting
+    ScmManagerSourceIndex() {}
+
+    static ScmManagerSourceIndex get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns {@code false}, if the owner of the source is known to have no source for the repository. In all other
+     * cases the source has to be matched completely.
+     */
+    boolean mayMatch(RepositoryRepresentation repository, SCMSource source) {
+        if (!ready) {
+            return true;
+        }
+        SCMSourceOwner owner = source.getOwner();
+        if (owner == null) {
+            return true;
+        }
+        String fullName = owner.getFullName();
+        lock.readLock().lock();
+        try {
+            if (!repositoriesByOwner.containsKey(fullName)) {
+                return true;
+            }
+            return ownersByRepository
+                    .getOrDefault(repository, Collections.emptySet())
+                    .contains(fullName);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void rebuild(Iterable<? extends SCMSourceOwner> owners) {
+        Map<String, Set<RepositoryRepresentation>> collected = new HashMap<>();
+        for (SCMSourceOwner owner : owners) {
+            collected.put(owner.getFullName(), collect(owner));
+        }
+        lock.writeLock().lock();
+        try {
+            repositoriesByOwner.clear();
+            ownersByRepository.clear();
+            collected.forEach(this::put);
+            ready = true;
+            LOG.debug("indexed {} owners of scm-manager sources", repositoriesByOwner.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void index(SCMSourceOwner owner) {
+        String fullName = owner.getFullName();
+        // the sources are collected without the lock, so that readers do not wait for them
+        Set<RepositoryRepresentation> repositories = collect(owner);
+        lock.writeLock().lock();
+        try {
+            removeOwner(fullName);
+            put(fullName, repositories);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static Set<RepositoryRepresentation> collect(SCMSourceOwner owner) {
+        Set<RepositoryRepresentation> repositories = new HashSet<>();
+        for (SCMSource source : owner.getSCMSources()) {
+            if (source instanceof ScmManagerSource) {
+                String repository = ((ScmManagerSource) source).getRepository();
+                try {
+                    repositories.add(RepositoryRepresentationUtil.parse(repository));
+                } catch (IllegalArgumentException e) {
+                    LOG.debug("could not index source of {} with repository {}", owner.getFullName(), repository);
+                }
+            }
+        }
+        return repositories;
+    }
+
+    private void put(String fullName, Set<RepositoryRepresentation> repositories) {
+        if (repositories.isEmpty()) {
+            return;
+        }
+        repositoriesByOwner.put(fullName, repositories);
+        for (RepositoryRepresentation repository : repositories) {
+            ownersByRepository.computeIfAbsent(repository, r -> new HashSet<>()).add(fullName);
+        }
+    }
+
+    void remove(String fullName) {
+        lock.writeLock().lock();
+        try {
+            removeOwner(fullName);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeOwner(String fullName) {
+        Set<RepositoryRepresentation> repositories = repositoriesByOwner.remove(fullName);
+        if (repositories == null) {
+            return;
+        }
+        for (RepositoryRepresentation repository : repositories) {
+            Set<String> owners = ownersByRepository.get(repository);
+            if (owners != null) {
+                owners.remove(fullName);
+                if (owners.isEmpty()) {
+                    ownersByRepository.remove(repository);
+                }
+            }
+        }
+    }
+
+    void removeDescendants(String fullName) {
+        String prefix = fullName + "/";
+        lock.writeLock().lock();
+        try {
+            for (String owner : new HashSet<>(repositoriesByOwner.keySet())) {
+                if (owner.startsWith(prefix)) {
+                    removeOwner(owner);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Extension
+    public static class Listener extends ItemListener {
+
+        @Override
+        public void onLoaded() {
+            try (ACLContext ignored = ACL.as2(ACL.SYSTEM2)) {
+                get().rebuild(Jenkins.get().getAllItems(SCMSourceOwner.class));
+            }
+        }
+
+        @Override
+        public void onCreated(Item item) {
+            if (item instanceof SCMSourceOwner) {
+                get().index((SCMSourceOwner) item);
+            }
+        }
+
+        @Override
+        public void onUpdated(Item item) {
+            onCreated(item);
+        }
+
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            // descendants of renamed folders are notified one by one
+            ScmManagerSourceIndex index = get();
+            index.remove(oldFullName);
+            if (item instanceof SCMSourceOwner) {
+                index.index((SCMSourceOwner) item);
+            }
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            ScmManagerSourceIndex index = get();
+            index.remove(item.getFullName());
+            if (item instanceof ItemGroup) {
+                index.removeDescendants(item.getFullName());
+            }
+        }
+    }
+
+    /**
+     * Owners created by navigators are updated by saving them, without an update event for the item.
+     */
+    @Extension
+    public static class SaveListener extends SaveableListener {
+
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof SCMSourceOwner) {
+                get().index((SCMSourceOwner) o);
+            }
+        }
+    }
+}
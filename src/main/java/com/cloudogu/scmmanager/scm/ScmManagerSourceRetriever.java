@@ -3,6 +3,7 @@ package com.cloudogu.scmmanager.scm;
 import com.cloudogu.scmmanager.scm.api.Branch;
 import com.cloudogu.scmmanager.scm.api.ExecutionExceptions;
 import com.cloudogu.scmmanager.scm.api.Futures;
+import com.cloudogu.scmmanager.scm.api.IllegalReturnStatusException;
 import com.cloudogu.scmmanager.scm.api.PullRequest;
 import com.cloudogu.scmmanager.scm.api.Repository;
 import com.cloudogu.scmmanager.scm.api.ScmManagerApi;
@@ -18,9 +19,11 @@ import edu.umd.cs.findbugs.annotations.NonNull;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import jenkins.scm.api.SCMHead;
 import jenkins.scm.api.SCMRevision;
@@ -44,7 +47,10 @@ public class ScmManagerSourceRetriever {
             CompletableFuture<? extends ScmManagerObservable> candidate =
                     getSpecificCandidateFromSourceControl(request, head);
             if (candidate != null) {
-                return Collections.singleton(candidate.get());
+                ScmManagerObservable observable = candidate.get();
+                if (observable != null) {
+                    return Collections.singleton(observable);
+                }
             }
         } catch (ExecutionException e) {
             ExecutionExceptions.log(e);
@@ -54,6 +60,55 @@ public class ScmManagerSourceRetriever {
         return Collections.emptySet();
     }
 
+    /**
+     * Returns the candidates for the heads, which still exist. Heads which are no longer found in SCM-Manager are
+     * left out, so that the observer learns about their deletion without a scan of all branches, tags and pull
+     * requests.
+     */
+    public Iterable<ScmManagerObservable> getExistingCandidatesFromSourceControl(
+            ScmManagerSourceRequest request, Collection<SCMHead> heads) throws InterruptedException {
+        List<CompletableFuture<? extends ScmManagerObservable>> candidates = new ArrayList<>();
+        for (SCMHead head : heads) {
+            CompletableFuture<? extends ScmManagerObservable> candidate =
+                    getSpecificCandidateFromSourceControl(request, head);
+            if (candidate != null) {
+                candidates.add(nullIfNotFound(candidate));
+            }
+        }
+
+        List<ScmManagerObservable> existing = new ArrayList<>();
+        try {
+            for (CompletableFuture<? extends ScmManagerObservable> candidate : candidates) {
+                ScmManagerObservable observable = candidate.get();
+                if (observable != null) {
+                    existing.add(observable);
+                }
+            }
+        } catch (ExecutionException e) {
+            ExecutionExceptions.log(e);
+            throw new UncheckedIOException(new IOException("failed to load repository"));
+        }
+        return existing;
+    }
+
+    private static <T> CompletableFuture<T> nullIfNotFound(CompletableFuture<T> candidate) {
+        return candidate.exceptionally(ex -> {
+            if (isNotFound(ex)) {
+                return null;
+            }
+            throw ex instanceof CompletionException ? (CompletionException) ex : new CompletionException(ex);
+        });
+    }
+
+    private static boolean isNotFound(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IllegalReturnStatusException) {
+                return ((IllegalReturnStatusException) cause).getStatusCode() == 404;
+            }
+        }
+        return false;
+    }
+
     private CompletableFuture<? extends ScmManagerObservable> getSpecificCandidateFromSourceControl(
             ScmManagerSourceRequest request, SCMHead head) {
         if (head instanceof ScmManagerTag) {
@@ -62,11 +117,22 @@ public class ScmManagerSourceRetriever {
             }
         } else if (head instanceof ScmManagerPullRequestHead) {
             if (request.isFetchPullRequests()) {
-                return api.getPullRequest(repository, ((ScmManagerPullRequestHead) head).getId());
+                CompletableFuture<PullRequest> pullRequest =
+                        api.getPullRequest(repository, ((ScmManagerPullRequestHead) head).getId());
+                // SCM-Manager still finds merged and rejected pull requests, but they are gone for jenkins
+                if (pullRequest != null) {
+                    return pullRequest.thenApply(pr -> pr != null && pr.isOpen() ? pr : null);
+                }
             }
         } else if (head instanceof ScmManagerHead && request.isFetchBranches()) {
-            if (shouldIgnoreBranchBecauseRelatedPullRequestExists(head.getName())) {
-                return null;
+            if (isExcludeBranchesWithPullRequests()) {
+                return api.getPullRequests(repository).thenCompose(pullRequests -> {
+                    CompletableFuture<Branch> branch = null;
+                    if (pullRequests.stream().noneMatch(p -> p.getSource().equals(head.getName()))) {
+                        branch = api.getBranch(repository, head.getName());
+                    }
+                    return branch != null ? branch : CompletableFuture.completedFuture(null);
+                });
             }
             return api.getBranch(repository, head.getName());
         }
@@ -74,14 +140,10 @@ public class ScmManagerSourceRetriever {
         return null;
     }
 
-    private boolean shouldIgnoreBranchBecauseRelatedPullRequestExists(String branchName) {
-        if (traits.stream()
+    private boolean isExcludeBranchesWithPullRequests() {
+        return traits.stream()
                 .anyMatch(t -> t instanceof PullRequestDiscoveryTrait
-                        && ((PullRequestDiscoveryTrait) t).isExcludeBranchesWithPRs())) {
-            CompletableFuture<List<PullRequest>> pullRequests = api.getPullRequests(repository);
-            return pullRequests.join().stream().anyMatch(p -> p.getSource().equals(branchName));
-        }
-        return false;
+                        && ((PullRequestDiscoveryTrait) t).isExcludeBranchesWithPRs());
     }
 
     public Iterable<ScmManagerObservable> getAllCandidatesFromSourceControl(ScmManagerSourceRequest request)
@@ -129,6 +191,7 @@ public class ScmManagerSourceRetriever {
 
     static ScmManagerSourceRetriever create(
             ScmManagerApi api, String namespace, String name, List<SCMSourceTrait> traits) {
-        return new ScmManagerSourceRetriever(api, Futures.resolveUnchecked(api.getRepository(namespace, name)), traits);
+        Repository repository = Futures.resolveUnchecked(api.getRepository(namespace, name));
+        return new ScmManagerSourceRetriever(api, repository.compact(), traits);
     }
 }
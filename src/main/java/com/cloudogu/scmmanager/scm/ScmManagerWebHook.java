@@ -3,6 +3,7 @@ package com.cloudogu.scmmanager.scm;
 import static jenkins.scm.api.SCMEvent.Type.REMOVED;
 import static jenkins.scm.api.SCMEvent.Type.UPDATED;
 
+import com.cloudogu.scmmanager.SshKnownHosts;
 import com.google.common.annotations.VisibleForTesting;
 import hudson.Extension;
 import hudson.model.UnprotectedRootAction;
@@ -10,15 +11,15 @@ import hudson.security.csrf.CrumbExclusion;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.List;
-import java.util.function.Function;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import jenkins.model.Jenkins;
 import jenkins.scm.api.SCMHeadEvent;
 import jenkins.scm.api.SCMSourceEvent;
+import jenkins.util.SystemProperties;
 import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
 import org.kohsuke.stapler.HttpResponse;
@@ -26,11 +27,46 @@ import org.kohsuke.stapler.HttpResponses;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.interceptor.RequirePOST;
 
+/**
+ * Receives the hooks of SCM-Manager and fires the matching scm events. By default the events are fired on the request
+ * thread. With {@code com.cloudogu.scmmanager.scm.ScmManagerWebHook.async=true} the hook is answered with 202 right
+ * away and the events are fired by the workers of a {@link WebHookQueue}. If the queue is full, the hook is answered
+ * with 503, so that SCM-Manager sends it again later. The metrics of the queue and the ssh handshake durations of
+ * {@link SshKnownHosts} are available for administrators at {@code /scm-manager-hook/metrics}. Hooks for the same repository may be merged into one event by a
+ * {@link WebHookDebouncer}.
+ */
 @Extension
 public class ScmManagerWebHook implements UnprotectedRootAction {
     public static final String URL_NAME = "scm-manager-hook";
     public static final String ENDPOINT = "notify";
 
+    private static final String RETRY_AFTER_SECONDS = "30";
+
+    private static final WebHookDebouncer.EventFactory BRANCHES_REMOVED =
+            (form, branches) -> new ScmManagerBranchEvent(REMOVED, form, branches);
+    private static final WebHookDebouncer.EventFactory BRANCHES_UPDATED =
+            (form, branches) -> new ScmManagerBranchEvent(UPDATED, form, branches);
+    private static final WebHookDebouncer.EventFactory TAGS_REMOVED =
+            (form, tags) -> new ScmManagerTagEvent(REMOVED, form, tags);
+    private static final WebHookDebouncer.EventFactory TAGS_UPDATED =
+            (form, tags) -> new ScmManagerTagEvent(UPDATED, form, tags);
+    private static final WebHookDebouncer.EventFactory PULL_REQUESTS_REMOVED =
+            (form, pullRequests) -> new ScmManagerPullRequestEvent(REMOVED, form, pullRequests);
+    private static final WebHookDebouncer.EventFactory PULL_REQUESTS_UPDATED =
+            (form, pullRequests) -> new ScmManagerPullRequestEvent(UPDATED, form, pullRequests);
+    private static final WebHookDebouncer.EventFactory BRANCHES_FROM_PULL_REQUESTS_REMOVED =
+            (form, pullRequests) -> new ScmManagerBranchEventFromPullRequest(REMOVED, form, pullRequests);
+    private static final WebHookDebouncer.EventFactory BRANCHES_FROM_PULL_REQUESTS_UPDATED =
+            (form, pullRequests) -> new ScmManagerBranchEventFromPullRequest(UPDATED, form, pullRequests);
+
+    private static final boolean ASYNC = SystemProperties.getBoolean(ScmManagerWebHook.class.getName() + ".async");
+
+    private boolean async = ASYNC;
+
+    private WebHookQueue queue;
+
+    private WebHookDebouncer debouncer;
+
     @Override
     public String getIconFileName() {
         return null;
@@ -46,39 +82,95 @@ public class ScmManagerWebHook implements UnprotectedRootAction {
         return URL_NAME;
     }
 
+    @VisibleForTesting
+    void setAsync(boolean async) {
+        this.async = async;
+    }
+
+    @VisibleForTesting
+    synchronized WebHookQueue getQueue() {
+        if (queue == null) {
+            queue = new WebHookQueue(this::dispatch);
+        }
+        return queue;
+    }
+
+    @VisibleForTesting
+    synchronized WebHookDebouncer getDebouncer() {
+        if (debouncer == null) {
+            debouncer = new WebHookDebouncer(this::fireNow);
+        }
+        return debouncer;
+    }
+
+    @VisibleForTesting
+    synchronized void setDebouncer(WebHookDebouncer debouncer) {
+        this.debouncer = debouncer;
+    }
+
     @RequirePOST
     public HttpResponse doNotify(StaplerRequest request) throws ServletException {
         JSONObject form = request.getSubmittedForm();
         if (!verifyParameters(form, "server")) {
             return HttpResponses.errorWithoutStack(400, "requires values for 'server'");
         }
+        if (!isNavigatorEvent(form) && !verifyParameters(form, "namespace", "name", "type")) {
+            return HttpResponses.errorWithoutStack(400, "requires values for 'namespace', 'name', 'type'");
+        }
+        if (!async) {
+            dispatch(form);
+            return HttpResponses.ok();
+        }
+        if (getQueue().offer(form)) {
+            return HttpResponses.status(202);
+        }
+        return (req, rsp, node) -> {
+            rsp.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+            rsp.sendError(503, "too many queued hooks, try again later");
+        };
+    }
+
+    public HttpResponse doMetrics() {
+        Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+        WebHookQueue webHookQueue = getQueue();
+        JSONObject metrics = new JSONObject();
+        metrics.put("async", async);
+        metrics.put("depth", webHookQueue.getDepth());
+        metrics.put("lagMillis", webHookQueue.getLagMillis());
+        metrics.put("lastLagMillis", webHookQueue.getLastLagMillis());
+        metrics.put("rejected", webHookQueue.getRejected());
+        metrics.put("droppedDuplicates", webHookQueue.getDroppedDuplicates());
+        metrics.put("dispatched", webHookQueue.getDispatched());
+        metrics.put("failed", webHookQueue.getFailed());
+        metrics.put("debouncePending", getDebouncer().getPending());
+        metrics.put("debounceMerged", getDebouncer().getMerged());
+        JSONObject handshakes = new JSONObject();
+        SshKnownHosts.get().getHandshakeTimings().forEach((host, timings) -> {
+            JSONObject handshake = new JSONObject();
+            handshake.put("count", timings.getCount());
+            handshake.put("averageMillis", timings.getAverageMillis());
+            handshake.put("lastMillis", timings.getLastMillis());
+            handshakes.put(host, handshake);
+        });
+        metrics.put("sshHandshakes", handshakes);
+        return (req, rsp, node) -> {
+            rsp.setContentType("application/json;charset=UTF-8");
+            rsp.getWriter().write(metrics.toString());
+        };
+    }
+
+    private void dispatch(JSONObject form) {
         if (isNavigatorEvent(form)) {
             fireSourceEvent(form);
         } else {
-            if (!verifyParameters(form, "namespace", "name", "type")) {
-                return HttpResponses.errorWithoutStack(400, "requires values for 'namespace', 'name', 'type'");
-            }
-            fireIfPresent(form, "deletedBranches", branches -> new ScmManagerBranchEvent(REMOVED, form, branches));
-            fireIfPresent(
-                    form, "createdOrModifiedBranches", branches -> new ScmManagerBranchEvent(UPDATED, form, branches));
-            fireIfPresent(form, "deletedTags", tags -> new ScmManagerTagEvent(REMOVED, form, tags));
-            fireIfPresent(form, "createOrModifiedTags", tags -> new ScmManagerTagEvent(UPDATED, form, tags));
-            fireIfPresent(
-                    form,
-                    "deletedPullRequests",
-                    pullRequests -> new ScmManagerPullRequestEvent(REMOVED, form, pullRequests));
-            fireIfPresent(
-                    form,
-                    "deletedPullRequests",
-                    pullRequests -> new ScmManagerBranchEventFromPullRequest(REMOVED, form, pullRequests));
-            fireIfPresent(
-                    form,
-                    "createOrModifiedPullRequests",
-                    pullRequests -> new ScmManagerPullRequestEvent(UPDATED, form, pullRequests));
-            fireIfPresent(
-                    form,
-                    "createOrModifiedPullRequests",
-                    pullRequests -> new ScmManagerBranchEventFromPullRequest(UPDATED, form, pullRequests));
+            fireIfPresent(form, "deletedBranches", BRANCHES_REMOVED);
+            fireIfPresent(form, "createdOrModifiedBranches", BRANCHES_UPDATED);
+            fireIfPresent(form, "deletedTags", TAGS_REMOVED);
+            fireIfPresent(form, "createOrModifiedTags", TAGS_UPDATED);
+            fireIfPresent(form, "deletedPullRequests", PULL_REQUESTS_REMOVED);
+            fireIfPresent(form, "deletedPullRequests", BRANCHES_FROM_PULL_REQUESTS_REMOVED);
+            fireIfPresent(form, "createOrModifiedPullRequests", PULL_REQUESTS_UPDATED);
+            fireIfPresent(form, "createOrModifiedPullRequests", BRANCHES_FROM_PULL_REQUESTS_UPDATED);
 
             if (form.containsKey("createdOrModifiedBranches")) {
                 // the creation or the change of a branch can also lead to a new source for navigators
@@ -86,7 +178,6 @@ public class ScmManagerWebHook implements UnprotectedRootAction {
                 fireSourceEvent(form);
             }
         }
-        return HttpResponses.ok();
     }
 
     private boolean isNavigatorEvent(JSONObject form) {
@@ -97,8 +188,7 @@ public class ScmManagerWebHook implements UnprotectedRootAction {
         ScmManagerSourceEvent.from(form).forEach(this::fireNow);
     }
 
-    void fireIfPresent(
-            JSONObject form, String arrayName, Function<Collection<JSONObject>, ScmManagerHeadEvent> eventProvider) {
+    void fireIfPresent(JSONObject form, String arrayName, WebHookDebouncer.EventFactory eventFactory) {
         if (form.containsKey(arrayName)) {
             JSONArray array =
                     form.optJSONArray(arrayName); // we have to use optJSONArray, because we can have null values
@@ -107,7 +197,7 @@ public class ScmManagerWebHook implements UnprotectedRootAction {
                 for (int i = 0; i < array.size(); ++i) {
                     objects.add(array.getJSONObject(i));
                 }
-                fireNow(eventProvider.apply(objects));
+                getDebouncer().submit(form, arrayName, objects, eventFactory);
             }
         }
     }
@@ -2,18 +2,36 @@ package com.cloudogu.scmmanager.scm;
 
 import static java.util.Collections.emptySet;
 
+import com.google.common.annotations.VisibleForTesting;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import net.sf.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Identifies the SCM-Manager server of a hook by its url and the additional identifications (like ssh urls) sent with
+ * the hook. An identification is created once per event and asked for every source, so the result is remembered for
+ * every distinct server url of the sources. Hooks with many identifications are compiled into a
+ * {@link SubstringMatcher}; for a few identifications a plain scan is cheaper than building the automaton (see
+ * {@code SubstringMatcherBenchmark}).
+ */
 class ServerIdentification {
 
     private static final Logger LOG = LoggerFactory.getLogger(ServerIdentification.class);
 
+    @VisibleForTesting
+    static final int MATCHER_THRESHOLD = 32;
+
     private final String serverUrl;
-    private final Collection<Identification> identifications;
+    private final Map<String, String> identificationNames = new HashMap<>();
+    @CheckForNull
+    private final SubstringMatcher matcher;
+    private final Map<String, Boolean> matchesByServerUrl = new ConcurrentHashMap<>();
 
     public ServerIdentification(JSONObject form) {
         this(form.getString("server"), readIdentifications(form));
@@ -34,20 +52,54 @@ class ServerIdentification {
 
     ServerIdentification(String serverUrl, Collection<Identification> identifications) {
         this.serverUrl = serverUrl;
-        this.identifications = identifications;
+        if (identifications != null) {
+            for (Identification identification : identifications) {
+                identificationNames.putIfAbsent(identification.value, identification.name);
+            }
+        }
+        this.matcher = identificationNames.size() > MATCHER_THRESHOLD
+                ? new SubstringMatcher(identificationNames.keySet())
+                : null;
     }
 
     boolean matches(String serverUrl) {
-        return serverUrl != null
-                && (serverUrl.startsWith(this.serverUrl)
-                        || identifications.stream().anyMatch(i -> i.matches(serverUrl)));
+        return serverUrl != null && matchesByServerUrl.computeIfAbsent(serverUrl, this::computeMatches);
+    }
+
+    private boolean computeMatches(String serverUrl) {
+        if (this.serverUrl != null && serverUrl.startsWith(this.serverUrl)) {
+            return true;
+        }
+        String value = find(serverUrl);
+        if (value != null) {
+            LOG.debug(
+                    "found matching server url {} in hook by identification {} with value {}",
+                    serverUrl,
+                    identificationNames.get(value),
+                    value);
+            return true;
+        }
+        return false;
+    }
+
+    @CheckForNull
+    private String find(String serverUrl) {
+        if (matcher != null) {
+            return matcher.find(serverUrl);
+        }
+        for (String value : identificationNames.keySet()) {
+            if (serverUrl.contains(value)) {
+                return value;
+            }
+        }
+        return null;
     }
 
     String getServerUrl() {
         return serverUrl;
     }
 
-    private static class Identification {
+    static class Identification {
         private final String name;
         private final String value;
 
@@ -55,21 +107,10 @@ class ServerIdentification {
             this(object.getString("name"), object.getString("value"));
         }
 
-        private Identification(String name, String value) {
+        @VisibleForTesting
+        Identification(String name, String value) {
             this.name = name;
             this.value = value;
         }
-
-        public boolean matches(String serverUrl) {
-            boolean contains = serverUrl.contains(value);
-            if (contains) {
-                LOG.debug(
-                        "found matching server url {} in hook by identification {} with value {}",
-                        serverUrl,
-                        name,
-                        value);
-            }
-            return contains;
-        }
     }
 }
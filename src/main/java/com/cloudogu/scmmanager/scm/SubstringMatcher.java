@@ -0,0 +1,102 @@
+package com.cloudogu.scmmanager.scm;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Aho-Corasick automaton, which finds any of a fixed set of values in a text with a single pass over the text. The
+ * time to search does not depend on the number of values.
+ */
+final class SubstringMatcher {
+
+    private final List<Map<Character, Integer>> transitions = new ArrayList<>();
+    private final List<Integer> failures = new ArrayList<>();
+    private final List<String> outputs = new ArrayList<>();
+
+    private final String emptyValue;
+
+    SubstringMatcher(Iterable<String> values) {
+        String empty = null;
+        addNode();
+        for (String value : values) {
+            if (value.isEmpty()) {
+                empty = value;
+            } else {
+                add(value);
+            }
+        }
+        this.emptyValue = empty;
+        computeFailures();
+    }
+
+    private int addNode() {
+        transitions.add(new HashMap<>());
+        failures.add(0);
+        outputs.add(null);
+        return transitions.size() - 1;
+    }
+
+    private void add(String value) {
+        int state = 0;
+        for (int i = 0; i < value.length(); i++) {
+            Integer next = transitions.get(state).get(value.charAt(i));
+            if (next == null) {
+                next = addNode();
+                transitions.get(state).put(value.charAt(i), next);
+            }
+            state = next;
+        }
+        if (outputs.get(state) == null) {
+            outputs.set(state, value);
+        }
+    }
+
+    private void computeFailures() {
+        Queue<Integer> queue = new ArrayDeque<>(transitions.get(0).values());
+        while (!queue.isEmpty()) {
+            int state = queue.remove();
+            for (Map.Entry<Character, Integer> transition : transitions.get(state).entrySet()) {
+                int next = transition.getValue();
+                int failure = failures.get(state);
+                while (failure != 0 && !transitions.get(failure).containsKey(transition.getKey())) {
+                    failure = failures.get(failure);
+                }
+                Integer target = transitions.get(failure).get(transition.getKey());
+                failures.set(next, target != null && target != next ? target : 0);
+                // a state matches the values of its longest suffix, too
+                if (outputs.get(next) == null) {
+                    outputs.set(next, outputs.get(failures.get(next)));
+                }
+                queue.add(next);
+            }
+        }
+    }
+
+    /**
+     * Returns one of the values, which is contained in the text, or {@code null} if there is none.
+     */
+    @CheckForNull
+    String find(String text) {
+        if (emptyValue != null) {
+            return emptyValue;
+        }
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            while (state != 0 && !transitions.get(state).containsKey(c)) {
+                state = failures.get(state);
+            }
+            state = transitions.get(state).getOrDefault(c, 0);
+            String output = outputs.get(state);
+            if (output != null) {
+                return output;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,168 @@
+package com.cloudogu.scmmanager.scm;
+
+import com.google.common.annotations.VisibleForTesting;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import jenkins.util.SystemProperties;
+import net.sf.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Merges the branches, tags and pull requests of hooks for the same repository and change, which arrive within a
+ * quiet window, into one event. The window starts with the first hook of a repository and change, so that bursts of
+ * pushes trigger one indexing of the repository instead of one for every hook. The window is configured with
+ * {@code com.cloudogu.scmmanager.scm.WebHookDebouncer.quietMillis} (default 0, which fires every hook immediately).
+ */
+final class WebHookDebouncer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WebHookDebouncer.class);
+
+    static final long QUIET_MILLIS = SystemProperties.getLong(WebHookDebouncer.class.getName() + ".quietMillis", 0L);
+
+    /**
+     * Creates the event for the merged objects of a hook array.
+     */
+    @FunctionalInterface
+    interface EventFactory {
+        ScmManagerHeadEvent create(JSONObject form, Collection<JSONObject> objects);
+    }
+
+    private final Map<String, Pending> pending = new HashMap<>();
+
+    private final AtomicLong merged = new AtomicLong();
+
+    private final long quietMillis;
+    private final ScheduledExecutorService scheduler;
+    private final Consumer<ScmManagerHeadEvent> fire;
+
+    WebHookDebouncer(Consumer<ScmManagerHeadEvent> fire) {
+        this(QUIET_MILLIS, createScheduler(QUIET_MILLIS), fire);
+    }
+
+    @VisibleForTesting
+    WebHookDebouncer(long quietMillis, ScheduledExecutorService scheduler, Consumer<ScmManagerHeadEvent> fire) {
+        this.quietMillis = quietMillis;
+        this.scheduler = scheduler;
+        this.fire = fire;
+    }
+
+    private static ScheduledExecutorService createScheduler(long quietMillis) {
+        if (quietMillis <= 0) {
+            return null;
+        }
+        return Executors.newSingleThreadScheduledExecutor(
+                new NamingThreadFactory(new DaemonThreadFactory(), "scm-manager-webhook-debouncer"));
+    }
+
+    /**
+     * Fires the event for the objects of the hook array, or merges the objects with those of other hooks for the same
+     * repository and array, which arrived within the quiet window.
+     */
+    void submit(JSONObject form, String arrayName, Collection<JSONObject> objects, EventFactory factory) {
+        if (quietMillis <= 0) {
+            fire.accept(factory.create(form, objects));
+            return;
+        }
+        String key = key(form, arrayName);
+        synchronized (pending) {
+            Pending existing = pending.get(key);
+            if (existing != null) {
+                if (existing.form != form) {
+                    merged.incrementAndGet();
+                }
+                existing.merge(form, objects, factory);
+                return;
+            }
+            Pending created = new Pending(form);
+            created.merge(form, objects, factory);
+            pending.put(key, created);
+        }
+        scheduler.schedule(() -> flush(key), quietMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static String key(JSONObject form, String arrayName) {
+        return String.join(
+                "|",
+                form.getString("server"),
+                form.getString("namespace"),
+                form.getString("name"),
+                form.getString("type"),
+                arrayName);
+    }
+
+    private void flush(String key) {
+        Pending flushed;
+        synchronized (pending) {
+            flushed = pending.remove(key);
+        }
+        if (flushed == null) {
+            return;
+        }
+        List<JSONObject> objects = new ArrayList<>(flushed.objects.values());
+        for (EventFactory factory : flushed.factories) {
+            try {
+                fire.accept(factory.create(flushed.form, objects));
+            } catch (RuntimeException e) {
+                LOG.warn("failed to fire merged event for {}", key, e);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of hooks, which were merged into the pending event of a previous hook.
+     */
+    long getMerged() {
+        return merged.get();
+    }
+
+    int getPending() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    private static String identity(JSONObject object) {
+        // pull requests are identified by their id, branches and tags by their name
+        if (object.has("id")) {
+            return object.getString("id");
+        }
+        return object.optString("name", object.toString());
+    }
+
+    private static final class Pending {
+
+        private final Map<String, JSONObject> objects = new LinkedHashMap<>();
+        private final Set<EventFactory> factories = new LinkedHashSet<>();
+
+        private JSONObject form;
+
+        private Pending(JSONObject form) {
+            this.form = form;
+        }
+
+        private void merge(JSONObject form, Collection<JSONObject> objects, EventFactory factory) {
+            this.form = form;
+            for (JSONObject object : objects) {
+                // the latest state of a branch, tag or pull request wins
+                String identity = identity(object);
+                this.objects.remove(identity);
+                this.objects.put(identity, object);
+            }
+            factories.add(factory);
+        }
+    }
+}
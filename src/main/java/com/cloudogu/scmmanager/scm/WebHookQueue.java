@@ -0,0 +1,176 @@
+package com.cloudogu.scmmanager.scm;
+
+import com.google.common.annotations.VisibleForTesting;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import jenkins.util.SystemProperties;
+import net.sf.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded queue for webhook payloads, which are dispatched by a dedicated pool of worker threads. A payload which is
+ * equal to a queued one drops the older one and is queued at the end, so that retried or repeated hooks are
+ * dispatched only once. If the queue is full, new payloads are rejected and the sender has to try again later. The
+ * queue is tuned with the following system properties:
+ *
+ * <ul>
+ *     <li>{@code com.cloudogu.scmmanager.scm.WebHookQueue.capacity} (default 1000)</li>
+ *     <li>{@code com.cloudogu.scmmanager.scm.WebHookQueue.threads} (default 2)</li>
+ * </ul>
+ */
+final class WebHookQueue {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WebHookQueue.class);
+
+    private static final String PROPERTY_PREFIX = WebHookQueue.class.getName() + ".";
+
+    private final Map<String, Payload> queued = new LinkedHashMap<>();
+
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong droppedDuplicates = new AtomicLong();
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private final int capacity;
+    private final Executor executor;
+    private final Consumer<JSONObject> dispatcher;
+    private final LongSupplier clock;
+
+    private volatile long lastLag;
+
+    WebHookQueue(Consumer<JSONObject> dispatcher) {
+        this(
+                SystemProperties.getInteger(PROPERTY_PREFIX + "capacity", 1000),
+                createExecutor(SystemProperties.getInteger(PROPERTY_PREFIX + "threads", 2)),
+                dispatcher,
+                System::currentTimeMillis);
+    }
+
+    @VisibleForTesting
+    WebHookQueue(int capacity, Executor executor, Consumer<JSONObject> dispatcher, LongSupplier clock) {
+        this.capacity = Math.max(1, capacity);
+        this.executor = executor;
+        this.dispatcher = dispatcher;
+        this.clock = clock;
+    }
+
+    private static Executor createExecutor(int threads) {
+        int poolSize = Math.max(1, threads);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                poolSize,
+                poolSize,
+                60L,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new NamingThreadFactory(new DaemonThreadFactory(), "scm-manager-webhook"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Adds the payload to the queue. Returns {@code false}, if the queue is full and the payload was rejected.
+     */
+    boolean offer(JSONObject form) {
+        String key = form.toString();
+        synchronized (queued) {
+            // the older duplicate is dropped and the payload is queued again at the end
+            if (queued.remove(key) != null) {
+                droppedDuplicates.incrementAndGet();
+                queued.put(key, new Payload(form, clock.getAsLong()));
+                return true;
+            }
+            if (queued.size() >= capacity) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            queued.put(key, new Payload(form, clock.getAsLong()));
+        }
+        // every queued payload gets its own task, duplicates are dispatched by the task of the replaced payload
+        executor.execute(this::dispatchNext);
+        return true;
+    }
+
+    private void dispatchNext() {
+        Payload payload;
+        synchronized (queued) {
+            Iterator<Payload> iterator = queued.values().iterator();
+            if (!iterator.hasNext()) {
+                return;
+            }
+            payload = iterator.next();
+            iterator.remove();
+        }
+        lastLag = clock.getAsLong() - payload.queuedAt;
+        try {
+            dispatcher.accept(payload.form);
+            dispatched.incrementAndGet();
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            LOG.warn("failed to dispatch webhook", e);
+        }
+    }
+
+    /**
+     * Returns the number of queued payloads.
+     */
+    int getDepth() {
+        synchronized (queued) {
+            return queued.size();
+        }
+    }
+
+    /**
+     * Returns the time in milliseconds, the oldest queued payload is waiting.
+     */
+    long getLagMillis() {
+        synchronized (queued) {
+            Iterator<Payload> iterator = queued.values().iterator();
+            return iterator.hasNext() ? clock.getAsLong() - iterator.next().queuedAt : 0;
+        }
+    }
+
+    /**
+     * Returns the time in milliseconds, the last dispatched payload was waiting in the queue.
+     */
+    long getLastLagMillis() {
+        return lastLag;
+    }
+
+    long getRejected() {
+        return rejected.get();
+    }
+
+    long getDroppedDuplicates() {
+        return droppedDuplicates.get();
+    }
+
+    long getDispatched() {
+        return dispatched.get();
+    }
+
+    long getFailed() {
+        return failed.get();
+    }
+
+    private static final class Payload {
+
+        private final JSONObject form;
+        private final long queuedAt;
+
+        private Payload(JSONObject form, long queuedAt) {
+            this.form = form;
+            this.queuedAt = queuedAt;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.cloudogu.scmmanager.scm.api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import jenkins.util.SystemProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process wide cache for the access tokens, which are fetched over ssh. Tokens are cached by ssh url and credential
+ * fingerprint, so that all {@link SshApiClient}s for the same server and credentials share one token and only one
+ * ssh connection is opened to fetch it.
+ *
+ * <p>The expiry is read from the {@code exp} claim of the token. If the token does not contain one, it is kept for
+ * {@code com.cloudogu.scmmanager.scm.api.AccessTokenCache.defaultLifetimeSeconds} (default 600). A new token is
+ * fetched in the background, as soon as the token expires within
+ * {@code com.cloudogu.scmmanager.scm.api.AccessTokenCache.refreshAheadSeconds} (default 60). Until the new token has
+ * arrived, the current token is used.</p>
+ */
+final class AccessTokenCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AccessTokenCache.class);
+
+    private static final String PROPERTY_PREFIX = AccessTokenCache.class.getName() + ".";
+
+    private static final AccessTokenCache INSTANCE = new AccessTokenCache(
+            TimeUnit.SECONDS.toMillis(SystemProperties.getLong(PROPERTY_PREFIX + "refreshAheadSeconds", 60L)),
+            TimeUnit.SECONDS.toMillis(SystemProperties.getLong(PROPERTY_PREFIX + "defaultLifetimeSeconds", 600L)),
+            System::currentTimeMillis);
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final long refreshAhead;
+    private final long defaultLifetime;
+    private final LongSupplier clock;
+
+    @VisibleForTesting
+    AccessTokenCache(long refreshAhead, long defaultLifetime, LongSupplier clock) {
+        this.refreshAhead = refreshAhead;
+        this.defaultLifetime = defaultLifetime;
+        this.clock = clock;
+    }
+
+    static AccessTokenCache get() {
+        return INSTANCE;
+    }
+
+    static String key(String sshUrl, String fingerprint) {
+        return sshUrl + "|" + Strings.nullToEmpty(fingerprint);
+    }
+
+    /**
+     * Returns the cached token for the key. If there is no usable token, a new one is fetched with the given
+     * function. Callers which ask for the same key while a token is fetched, share the result.
+     */
+    CompletableFuture<SshApiClient.AccessToken> get(
+            String key, Supplier<CompletableFuture<SshApiClient.AccessToken>> fetcher) {
+        long now = clock.getAsLong();
+        Entry entry = entries.compute(key, (k, current) -> {
+            if (current != null && current.isUsable(now)) {
+                return current;
+            }
+            return new Entry(fetch(fetcher));
+        });
+        if (entry.shouldRefresh(now, refreshAhead) && entry.refreshing.compareAndSet(false, true)) {
+            refresh(key, entry, fetcher);
+        }
+        return entry.future.thenApply(CachedToken::getToken);
+    }
+
+    private void refresh(String key, Entry entry, Supplier<CompletableFuture<SshApiClient.AccessToken>> fetcher) {
+        LOG.debug("access token for {} expires soon, fetch a new one", key);
+        fetch(fetcher).whenComplete((token, ex) -> {
+            if (ex != null) {
+                LOG.debug("failed to refresh access token, keep the current one", ex);
+                entry.refreshing.set(false);
+            } else {
+                entries.replace(key, entry, new Entry(CompletableFuture.completedFuture(token)));
+            }
+        });
+    }
+
+    private CompletableFuture<CachedToken> fetch(Supplier<CompletableFuture<SshApiClient.AccessToken>> fetcher) {
+        return fetcher.get().thenApply(token -> new CachedToken(token, expiresAt(token)));
+    }
+
+    /**
+     * Removes the token from the cache, e.g. because the server has rejected it. A newer token, which was fetched in
+     * the meantime, is kept.
+     */
+    void invalidate(String key, SshApiClient.AccessToken token) {
+        entries.computeIfPresent(key, (k, entry) -> entry.holds(token) ? null : entry);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private long expiresAt(SshApiClient.AccessToken token) {
+        long expiresAt = clock.getAsLong() + defaultLifetime;
+        String accessToken = Strings.nullToEmpty(token.getAccessToken());
+        String[] parts = accessToken.split("\\.");
+        if (parts.length != 3) {
+            return expiresAt;
+        }
+        try {
+            JsonNode claims = ApiClient.MAPPER.readTree(Base64.getUrlDecoder().decode(parts[1]));
+            JsonNode exp = claims.get("exp");
+            if (exp != null && exp.canConvertToLong()) {
+                return TimeUnit.SECONDS.toMillis(exp.asLong());
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            LOG.debug(
+                    "could not read expiry of access token {}",
+                    Hashing.sha256().hashString(accessToken, StandardCharsets.UTF_8),
+                    e);
+        }
+        return expiresAt;
+    }
+
+    private static final class Entry {
+
+        private final CompletableFuture<CachedToken> future;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private Entry(CompletableFuture<CachedToken> future) {
+            this.future = future;
+        }
+
+        /**
+         * Returns {@code true} if the token is still fetched or not yet expired.
+         */
+        boolean isUsable(long now) {
+            if (!future.isDone()) {
+                return true;
+            }
+            if (future.isCompletedExceptionally()) {
+                return false;
+            }
+            return future.join().expiresAt > now;
+        }
+
+        boolean shouldRefresh(long now, long refreshAhead) {
+            if (!future.isDone() || future.isCompletedExceptionally()) {
+                return false;
+            }
+            return future.join().expiresAt - refreshAhead <= now;
+        }
+
+        boolean holds(SshApiClient.AccessToken token) {
+            if (!future.isDone() || future.isCompletedExceptionally()) {
+                return false;
+            }
+            return future.join().token == token;
+        }
+    }
+
+    private static final class CachedToken {
+
+        private final SshApiClient.AccessToken token;
+        private final long expiresAt;
+
+        private CachedToken(SshApiClient.AccessToken token, long expiresAt) {
+            this.token = token;
+            this.expiresAt = expiresAt;
+        }
+
+        SshApiClient.AccessToken getToken() {
+            return token;
+        }
+    }
+}
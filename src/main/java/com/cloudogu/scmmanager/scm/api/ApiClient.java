@@ -1,9 +1,16 @@
 package com.cloudogu.scmmanager.scm.api;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.VisibleForTesting;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import jenkins.util.SystemProperties;
 import okhttp3.Call;
 import okhttp3.Callback;
 import okhttp3.OkHttpClient;
@@ -13,26 +20,143 @@ import okhttp3.ResponseBody;
 
 public abstract class ApiClient {
 
-    private final ObjectMapper objectMapper;
+    static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .configure(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY, true);
+
+    private static final SingleFlight IN_FLIGHT = new SingleFlight();
+
+    private static final Prefetches PREFETCHES = new Prefetches(
+            SystemProperties.getInteger(Prefetches.class.getName() + ".maxEntries", 512),
+            SystemProperties.getLong(Prefetches.class.getName() + ".ttlSeconds", 120L),
+            TimeUnit.SECONDS);
 
     private final String protocol;
 
+    private ResponseCache cache = ResponseCache.get();
+
     protected ApiClient(String protocol) {
         this.protocol = protocol;
-        objectMapper = new ObjectMapper();
-        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-        objectMapper.configure(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY, true);
     }
 
     public String getProtocol() {
         return protocol;
     }
 
+    @VisibleForTesting
+    void setResponseCache(ResponseCache cache) {
+        this.cache = cache;
+    }
+
     public abstract <T> CompletableFuture<T> get(String url, String contentType, Class<T> type);
 
+    /**
+     * Starts the request in the background. The result is kept for a short time and is used by the next regular
+     * request with the same url, media type, result type and authorization.
+     */
+    public abstract <T> void prefetch(String url, String contentType, Class<T> type);
+
+    /**
+     * Requests the url and passes the response body to the decoder, without reading the whole body into memory.
+     * Streamed responses are neither cached nor shared with other callers.
+     */
+    protected abstract <T> CompletableFuture<T> stream(String url, String contentType, Decoder<T> decoder);
+
     public abstract String getBaseUrl();
 
+    /**
+     * Requests a HAL collection and passes every item of the embedded collection with the given name to the
+     * consumer, as soon as it is parsed. The full list of items is never built. The consumer is called on the thread
+     * which receives the response.
+     */
+    public <T> CompletableFuture<StreamedCollection> getEach(
+            String url, String contentType, String collection, Class<T> itemType, Consumer<? super T> consumer) {
+        return stream(url, contentType, input -> readCollection(input, collection, itemType, consumer));
+    }
+
+    @VisibleForTesting
+    static <T> StreamedCollection readCollection(
+            InputStream input, String collection, Class<T> itemType, Consumer<? super T> consumer)
+            throws IOException {
+        StreamedCollection result = new StreamedCollection();
+        try (JsonParser parser = MAPPER.getFactory().createParser(input)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("expected json object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if ("pageTotal".equals(field) && token == JsonToken.VALUE_NUMBER_INT) {
+                    result.pageTotal = parser.getIntValue();
+                } else if ("_embedded".equals(field) && token == JsonToken.START_OBJECT) {
+                    readEmbedded(parser, collection, itemType, consumer, result);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return result;
+    }
+
+    private static <T> void readEmbedded(
+            JsonParser parser,
+            String collection,
+            Class<T> itemType,
+            Consumer<? super T> consumer,
+            StreamedCollection result)
+            throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (collection.equals(field) && token == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    consumer.accept(MAPPER.readValue(parser, itemType));
+                    result.size++;
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Executes the request. Identical requests (same url, media type, result type and authorization), which are
+     * executed concurrently, are sent only once and share the result. A {@link #prefetch prefetched} result of the
+     * same request is used, if there is one. The number of requests in flight per server is bound by
+     * {@link ServerExecutors}.
+     */
     protected <T> CompletableFuture<T> execute(OkHttpClient client, Request.Builder requestBuilder, Class<T> type) {
+        Request request = requestBuilder.build();
+        String cacheKey = ResponseCache.key(request, type);
+        CompletableFuture<T> prefetched = PREFETCHES.take(cacheKey);
+        if (prefetched != null) {
+            // a failed prefetch should not fail the regular request, so we try again
+            return prefetched.exceptionallyCompose(ex -> dispatch(client, request, requestBuilder, type, cacheKey));
+        }
+        return dispatch(client, request, requestBuilder, type, cacheKey);
+    }
+
+    private <T> CompletableFuture<T> dispatch(
+            OkHttpClient client, Request request, Request.Builder requestBuilder, Class<T> type, String cacheKey) {
+        ServerExecutors.ServerExecutor executor =
+                ServerExecutors.get().forServer(request.url().toString());
+        return IN_FLIGHT.execute(
+                cacheKey, () -> executor.submit(() -> send(client, requestBuilder, type, cacheKey)));
+    }
+
+    protected <T> void prefetch(OkHttpClient client, Request.Builder requestBuilder, Class<T> type) {
+        Request request = requestBuilder.build();
+        String cacheKey = ResponseCache.key(request, type);
+        PREFETCHES.put(cacheKey, dispatch(client, request, requestBuilder, type, cacheKey));
+    }
+
+    private <T> CompletableFuture<T> send(
+            OkHttpClient client, Request.Builder requestBuilder, Class<T> type, String cacheKey) {
+        ResponseCache.Entry cached = cache.lookup(cacheKey);
+        if (cached != null) {
+            cached.addValidators(requestBuilder);
+        }
+
         CompletableFuture<T> future = new CompletableFuture<>();
         client.newCall(requestBuilder.build()).enqueue(new Callback() {
             @Override
@@ -43,24 +167,109 @@ public abstract class ApiClient {
             @Override
             public void onResponse(Call call, Response response) {
                 try (response) {
-                    if (response.code() == 200) {
+                    if (response.code() == 304 && cached != null) {
+                        cache.hit();
+                        future.complete(cached.value(type));
+                    } else if (response.code() == 200) {
+                        cache.miss();
                         try (ResponseBody body = response.body()) {
                             if (body == null) {
                                 future.complete(null);
+                            } else if (cache.requiresBody(response)) {
+                                byte[] bytes = body.bytes();
+                                T t = MAPPER.readValue(bytes, type);
+                                cache.store(cacheKey, response, bytes, t);
+                                future.complete(t);
                             } else {
-                                T t = objectMapper.readValue(body.bytes(), type);
+                                // parse directly from the stream, to avoid a copy of the whole response
+                                T t = MAPPER.readValue(body.byteStream(), type);
+                                cache.store(cacheKey, response, null, t);
                                 future.complete(t);
                             }
-                        } catch (Exception ex) {
-                            future.completeExceptionally(ex);
                         }
                     } else {
+                        cache.miss();
+                        if (cached != null) {
+                            cache.invalidate(cacheKey);
+                        }
                         future.completeExceptionally(new IllegalReturnStatusException(response.code()));
                     }
+                } catch (Exception ex) {
+                    future.completeExceptionally(ex);
                 }
             }
         });
 
         return future;
     }
+
+    /**
+     * Executes the request and passes the response body as stream to the decoder. The number of requests in flight
+     * per server is bound by {@link ServerExecutors}.
+     */
+    protected <T> CompletableFuture<T> executeStreaming(
+            OkHttpClient client, Request.Builder requestBuilder, Decoder<T> decoder) {
+        Request request = requestBuilder.build();
+        return ServerExecutors.get()
+                .forServer(request.url().toString())
+                .submit(() -> sendStreaming(client, request, decoder));
+    }
+
+    private <T> CompletableFuture<T> sendStreaming(OkHttpClient client, Request request, Decoder<T> decoder) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException ex) {
+                future.completeExceptionally(ex);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    if (response.code() != 200) {
+                        future.completeExceptionally(new IllegalReturnStatusException(response.code()));
+                        return;
+                    }
+                    try (ResponseBody body = response.body()) {
+                        if (body == null) {
+                            future.complete(null);
+                        } else {
+                            future.complete(decoder.decode(body.byteStream()));
+                        }
+                    }
+                } catch (Exception ex) {
+                    future.completeExceptionally(ex);
+                }
+            }
+        });
+        return future;
+    }
+
+    @FunctionalInterface
+    protected interface Decoder<T> {
+        T decode(InputStream input) throws IOException;
+    }
+
+    /**
+     * Summary of a streamed collection.
+     */
+    public static final class StreamedCollection {
+
+        private int pageTotal;
+        private int size;
+
+        /**
+         * Returns the total number of pages, or {@code 0} if the collection is not paged.
+         */
+        public int getPageTotal() {
+            return pageTotal;
+        }
+
+        /**
+         * Returns the number of items which were passed to the consumer.
+         */
+        public int getSize() {
+            return size;
+        }
+    }
 }
@@ -19,10 +19,21 @@ public class Branch extends HalRepresentation implements ScmManagerObservable {
         this.revision = revision;
     }
 
-    void setCloneInformation(CloneInformation cloneInformation) {
+    private Branch(Branch branch, CloneInformation cloneInformation) {
+        super(branch.getLinks());
+        this.name = branch.name;
+        this.revision = branch.revision;
         this.cloneInformation = cloneInformation;
     }
 
+    /**
+     * Returns a copy of the branch with the given clone information. Branches are shared by the response cache, so
+     * they are never modified after parsing.
+     */
+    Branch withCloneInformation(CloneInformation cloneInformation) {
+        return new Branch(this, cloneInformation);
+    }
+
     public String getName() {
         return name;
     }
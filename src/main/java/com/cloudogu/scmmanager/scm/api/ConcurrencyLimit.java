@@ -0,0 +1,113 @@
+package com.cloudogu.scmmanager.scm.api;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Limits the number of asynchronous calls which are in flight at the same time. Calls above the limit are queued and
+ * started as soon as a running call has completed. No thread is blocked while waiting. If the queue is full, further
+ * calls are rejected with a {@link RejectedExecutionException}, which pushes back on the caller.
+ */
+final class ConcurrencyLimit {
+
+    /**
+     * Calls which are handed off by {@link #release()} on the current thread. Queued calls which complete
+     * synchronously release the limit again while they are started, so they are started in a loop instead of
+     * recursively, which could overflow the stack with a long queue.
+     */
+    private static final ThreadLocal<Queue<Runnable>> HAND_OFF = new ThreadLocal<>();
+
+    private final Queue<Runnable> queue = new ArrayDeque<>();
+    private final int maxInFlight;
+    private final int maxQueued;
+
+    private int inFlight;
+
+    ConcurrencyLimit(int maxInFlight) {
+        this(maxInFlight, Integer.MAX_VALUE);
+    }
+
+    ConcurrencyLimit(int maxInFlight, int maxQueued) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.maxQueued = Math.max(0, maxQueued);
+    }
+
+    <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable task = () -> start(call, result);
+        boolean startNow;
+        synchronized (this) {
+            startNow = inFlight < maxInFlight;
+            if (startNow) {
+                inFlight++;
+            } else if (queue.size() < maxQueued) {
+                queue.add(task);
+            } else {
+                return CompletableFuture.failedFuture(new RejectedExecutionException(
+                        "too many pending requests, limit of " + maxQueued + " queued requests reached"));
+            }
+        }
+        if (startNow) {
+            task.run();
+        }
+        return result;
+    }
+
+    private <T> void start(Supplier<CompletableFuture<T>> call, CompletableFuture<T> result) {
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException ex) {
+            future = CompletableFuture.failedFuture(ex);
+        }
+        future.whenComplete((value, ex) -> {
+            release();
+            if (ex != null) {
+                result.completeExceptionally(ex);
+            } else {
+                result.complete(value);
+            }
+        });
+    }
+
+    private void release() {
+        Runnable next;
+        synchronized (this) {
+            next = queue.poll();
+            if (next == null) {
+                inFlight--;
+            }
+        }
+        if (next != null) {
+            handOff(next);
+        }
+    }
+
+    private static void handOff(Runnable task) {
+        Queue<Runnable> pending = HAND_OFF.get();
+        if (pending != null) {
+            pending.add(task);
+            return;
+        }
+        pending = new ArrayDeque<>();
+        HAND_OFF.set(pending);
+        try {
+            for (Runnable current = task; current != null; current = pending.poll()) {
+                current.run();
+            }
+        } finally {
+            HAND_OFF.remove();
+        }
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    synchronized int getQueued() {
+        return queue.size();
+    }
+}
@@ -1,7 +1,7 @@
 package com.cloudogu.scmmanager.scm.api;
 
 import com.cloudogu.scmmanager.HttpAuthentication;
-import com.cloudogu.scmmanager.OkHttpClientBuilder;
+import com.cloudogu.scmmanager.OkHttpClientRegistry;
 import com.google.common.annotations.VisibleForTesting;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.UnaryOperator;
@@ -19,7 +19,7 @@ public class HttpApiClient extends ApiClient {
     private final UnaryOperator<String> urlModifier;
 
     public HttpApiClient(String serverUrl, HttpAuthentication authentication) {
-        this(OkHttpClientBuilder.build(), serverUrl, authentication);
+        this(OkHttpClientRegistry.get().client(serverUrl), serverUrl, authentication);
     }
 
     public HttpApiClient(OkHttpClient client, String serverUrl, HttpAuthentication authentication) {
@@ -53,11 +53,27 @@ public class HttpApiClient extends ApiClient {
 
     public <T> CompletableFuture<T> get(String url, String contentType, Class<T> type) {
         LOG.info("get {} from {}", type.getName(), url);
+        return execute(client, createRequest(url, contentType), type);
+    }
+
+    @Override
+    public <T> void prefetch(String url, String contentType, Class<T> type) {
+        LOG.debug("prefetch {} from {}", type.getName(), url);
+        prefetch(client, createRequest(url, contentType), type);
+    }
+
+    @Override
+    protected <T> CompletableFuture<T> stream(String url, String contentType, Decoder<T> decoder) {
+        LOG.info("stream {}", url);
+        return executeStreaming(client, createRequest(url, contentType), decoder);
+    }
+
+    private Request.Builder createRequest(String url, String contentType) {
         Request.Builder requestBuilder =
                 new Request.Builder().url(urlModifier.apply(url)).get();
         authentication.authenticate(requestBuilder);
         requestBuilder.addHeader("Accept", contentType);
-        return execute(client, requestBuilder, type);
+        return requestBuilder;
     }
 
     @Override
@@ -0,0 +1,83 @@
+package com.cloudogu.scmmanager.scm.api;
+
+import com.google.common.annotations.VisibleForTesting;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps the futures of prefetched requests, until they are taken by the first regular request for the same key or
+ * until they expire. Each prefetched future is handed out only once.
+ */
+final class Prefetches {
+
+    private final Map<String, Prefetch> prefetches = new ConcurrentHashMap<>();
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+
+    Prefetches(int maxEntries, long ttl, TimeUnit unit) {
+        this(maxEntries, ttl, unit, System::nanoTime);
+    }
+
+    @VisibleForTesting
+    Prefetches(int maxEntries, long ttl, TimeUnit unit, LongSupplier clock) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.clock = clock;
+    }
+
+    /**
+     * Stores the future of a prefetched request. If the store is full, the future is not stored.
+     */
+    void put(String key, CompletableFuture<?> future) {
+        if (prefetches.size() >= maxEntries) {
+            evictExpired();
+            if (prefetches.size() >= maxEntries) {
+                return;
+            }
+        }
+        prefetches.put(key, new Prefetch(future, clock.getAsLong() + ttlNanos));
+    }
+
+    /**
+     * Removes and returns the prefetched future for the key, if there is one which is not yet expired.
+     */
+    @CheckForNull
+    @SuppressWarnings("unchecked")
+    <T> CompletableFuture<T> take(String key) {
+        Prefetch prefetch = prefetches.remove(key);
+        if (prefetch == null || prefetch.isExpired(clock.getAsLong())) {
+            return null;
+        }
+        return (CompletableFuture<T>) prefetch.future;
+    }
+
+    int size() {
+        return prefetches.size();
+    }
+
+    private void evictExpired() {
+        long now = clock.getAsLong();
+        prefetches.values().removeIf(prefetch -> prefetch.isExpired(now));
+    }
+
+    private static final class Prefetch {
+
+        private final CompletableFuture<?> future;
+        private final long expiresAt;
+
+        private Prefetch(CompletableFuture<?> future, long expiresAt) {
+            this.future = future;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now - expiresAt > 0;
+        }
+    }
+}
@@ -6,6 +6,9 @@ import java.util.Objects;
 
 public class PullRequest extends HalRepresentation implements ScmManagerObservable {
 
+    private static final String STATUS_OPEN = "OPEN";
+    private static final String STATUS_DRAFT = "DRAFT";
+
     @SuppressFBWarnings("UWF_UNWRITTEN_FIELD")
     private String id;
 
@@ -15,6 +18,9 @@ public class PullRequest extends HalRepresentation implements ScmManagerObservab
     @SuppressFBWarnings("UWF_UNWRITTEN_FIELD")
     private String target;
 
+    @SuppressFBWarnings("UWF_UNWRITTEN_FIELD")
+    private String status;
+
     private CloneInformation cloneInformation;
 
     private Branch sourceBranch;
@@ -25,7 +31,13 @@ public class PullRequest extends HalRepresentation implements ScmManagerObservab
     PullRequest() {}
 
     public PullRequest(String id, Branch targetBranch, Branch sourceBranch, CloneInformation cloneInformation) {
+        this(id, STATUS_OPEN, targetBranch, sourceBranch, cloneInformation);
+    }
+
+    public PullRequest(
+            String id, String status, Branch targetBranch, Branch sourceBranch, CloneInformation cloneInformation) {
         this.id = id;
+        this.status = status;
         this.targetBranch = targetBranch;
         this.target = targetBranch.getName();
         this.sourceBranch = sourceBranch;
@@ -33,16 +45,24 @@ public class PullRequest extends HalRepresentation implements ScmManagerObservab
         this.cloneInformation = cloneInformation;
     }
 
-    void setCloneInformation(CloneInformation cloneInformation) {
+    private PullRequest(
+            PullRequest pullRequest, CloneInformation cloneInformation, Branch sourceBranch, Branch targetBranch) {
+        super(pullRequest.getLinks());
+        this.id = pullRequest.id;
+        this.source = pullRequest.source;
+        this.target = pullRequest.target;
+        this.status = pullRequest.status;
         this.cloneInformation = cloneInformation;
-    }
-
-    void setSourceBranch(Branch sourceBranch) {
         this.sourceBranch = sourceBranch;
+        this.targetBranch = targetBranch;
     }
 
-    void setTargetBranch(Branch targetBranch) {
-        this.targetBranch = targetBranch;
+    /**
+     * Returns a copy of the pull request with the given clone information and branches. Pull requests are shared by
+     * the response cache, so they are never modified after parsing.
+     */
+    PullRequest withBranches(CloneInformation cloneInformation, Branch sourceBranch, Branch targetBranch) {
+        return new PullRequest(this, cloneInformation, sourceBranch, targetBranch);
     }
 
     public String getId() {
@@ -57,6 +77,18 @@ public class PullRequest extends HalRepresentation implements ScmManagerObservab
         return target;
     }
 
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns {@code true} if the pull request is neither merged nor rejected. Drafts are open, as they are for the
+     * {@code status=OPEN} listing of SCM-Manager.
+     */
+    public boolean isOpen() {
+        return status == null || STATUS_OPEN.equals(status) || STATUS_DRAFT.equals(status);
+    }
+
     @Override
     public ScmManagerPullRequestHead head() {
         if (head == null) {
@@ -83,6 +115,7 @@ public class PullRequest extends HalRepresentation implements ScmManagerObservab
         return Objects.equals(id, that.id)
                 && Objects.equals(source, that.source)
                 && Objects.equals(target, that.target)
+                && Objects.equals(status, that.status)
                 && Objects.equals(cloneInformation, that.cloneInformation)
                 && Objects.equals(sourceBranch, that.sourceBranch)
                 && Objects.equals(targetBranch, that.targetBranch)
@@ -91,6 +124,7 @@ public class PullRequest extends HalRepresentation implements ScmManagerObservab
 
     @Override
     public int hashCode() {
-        return Objects.hash(super.hashCode(), id, source, target, cloneInformation, sourceBranch, targetBranch, head);
+        return Objects.hash(
+                super.hashCode(), id, source, target, status, cloneInformation, sourceBranch, targetBranch, head);
     }
 }
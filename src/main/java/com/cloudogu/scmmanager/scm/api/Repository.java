@@ -5,11 +5,19 @@ import de.otto.edison.hal.HalRepresentation;
 import de.otto.edison.hal.Link;
 import de.otto.edison.hal.Links;
 import java.io.Serializable;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 public class Repository extends HalRepresentation implements Serializable {
 
+    /**
+     * Relations of the links which are used by the plugin.
+     */
+    private static final List<String> COMPACT_LINKS =
+            List.of("protocol", "branches", "tags", "pullRequest", "changesets", "sources");
+
     private String namespace;
     private String name;
     private String type;
@@ -50,6 +58,46 @@ public class Repository extends HalRepresentation implements Serializable {
                 .map(Link::getHref);
     }
 
+    /**
+     * Returns a compact copy of the repository, which keeps only the links used by the plugin and drops all other
+     * links, embedded objects and unmapped attributes of the response. Strings are interned, because namespaces,
+     * types and links repeat across repositories. Compact copies are used for repositories, which are held during
+     * scans or by probes.
+     */
+    public Repository compact() {
+        if (getLinks().getRels().isEmpty()) {
+            Repository compact = new Repository(intern(namespace), intern(name), intern(type));
+            compact.cloneInformation = cloneInformation;
+            return compact;
+        }
+        Links.Builder links = Links.linkingTo();
+        for (String rel : COMPACT_LINKS) {
+            List<Link> compactLinks = getLinks().getLinksBy(rel).stream()
+                    .map(Repository::compact)
+                    .collect(Collectors.toList());
+            if (compactLinks.size() == 1) {
+                links.single(compactLinks.get(0));
+            } else if (compactLinks.size() > 1) {
+                links.array(compactLinks);
+            }
+        }
+        Repository compact = new Repository(intern(namespace), intern(name), intern(type), links.build());
+        compact.cloneInformation = cloneInformation;
+        return compact;
+    }
+
+    private static Link compact(Link link) {
+        Link.Builder builder = Link.linkBuilder(link.getRel().intern(), link.getHref().intern());
+        if (link.getName() != null) {
+            builder.withName(link.getName().intern());
+        }
+        return builder.build();
+    }
+
+    private static String intern(String value) {
+        return value != null ? value.intern() : null;
+    }
+
     public String mustGetUrl(String protocol) {
         return getUrl(protocol)
                 .orElseThrow(() -> new IllegalStateException("could not find protocol link of type " + protocol));
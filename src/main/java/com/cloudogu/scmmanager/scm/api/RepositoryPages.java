@@ -0,0 +1,163 @@
+package com.cloudogu.scmmanager.scm.api;
+
+import com.google.common.annotations.VisibleForTesting;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Iterates page by page over a repository collection of SCM-Manager. The first page is requested eagerly. As soon
+ * as it has arrived and the total number of pages is known, the following pages are requested concurrently, but
+ * never more than {@code prefetch} pages ahead of the consumer. If the server does not report the number of pages,
+ * the {@code next} link of each page is followed instead. The memory footprint is therefore bound by the page size
+ * and not by the number of repositories on the server.
+ */
+public class RepositoryPages implements AutoCloseable {
+
+    private final Deque<CompletableFuture<RepositoryCollection>> pending = new ArrayDeque<>();
+
+    private final Function<String, CompletableFuture<RepositoryCollection>> fetcher;
+    private final IntFunction<String> pageUrl;
+    private final int prefetch;
+
+    private int pageTotal = -1;
+    private int nextPage = 1;
+
+    RepositoryPages(
+            Function<String, CompletableFuture<RepositoryCollection>> fetcher,
+            IntFunction<String> pageUrl,
+            int prefetch) {
+        this.fetcher = fetcher;
+        this.pageUrl = pageUrl;
+        this.prefetch = Math.max(1, prefetch);
+        pending.add(fetcher.apply(pageUrl.apply(0)));
+    }
+
+    @VisibleForTesting
+    public static RepositoryPages of(List<Repository> repositories) {
+        RepositoryCollection collection = new RepositoryCollection(repositories);
+        return new RepositoryPages(url -> CompletableFuture.completedFuture(collection), page -> "", 1);
+    }
+
+    public boolean hasNext() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Waits for the next page and requests the following pages in the background. The repositories of the page are
+     * returned as {@link Repository#compact() compact} copies.
+     */
+    public List<Repository> next() throws InterruptedException, ExecutionException {
+        CompletableFuture<RepositoryCollection> future = pending.poll();
+        if (future == null) {
+            throw new NoSuchElementException("no more repository pages available");
+        }
+        RepositoryCollection page = future.get();
+        if (pageTotal < 0) {
+            pageTotal = page.getPageTotal();
+        }
+        requestFollowingPages(page);
+        return page.getRepositories().stream().map(Repository::compact).collect(Collectors.toList());
+    }
+
+    private void requestFollowingPages(RepositoryCollection current) {
+        if (pageTotal > 0) {
+            while (nextPage < pageTotal && pending.size() < prefetch) {
+                pending.add(fetcher.apply(pageUrl.apply(nextPage++)));
+            }
+        } else {
+            current.getNextLink().ifPresent(next -> pending.add(fetcher.apply(next)));
+        }
+    }
+
+    /**
+     * Cancels all pages which are requested, but not yet consumed.
+     */
+    @Override
+    public void close() {
+        pending.forEach(future -> future.cancel(true));
+        pending.clear();
+    }
+
+    static class RepositoryCollection {
+
+        private int pageTotal;
+
+        @SuppressFBWarnings("UWF_UNWRITTEN_FIELD")
+        private PageLinks _links;
+
+        @SuppressFBWarnings("UWF_UNWRITTEN_FIELD")
+        private EmbeddedRepositories _embedded;
+
+        RepositoryCollection() {}
+
+        RepositoryCollection(List<Repository> repositories) {
+            this._embedded = new EmbeddedRepositories(repositories);
+        }
+
+        public int getPageTotal() {
+            return pageTotal;
+        }
+
+        public PageLinks get_links() {
+            return _links;
+        }
+
+        public EmbeddedRepositories get_embedded() {
+            return _embedded;
+        }
+
+        Optional<String> getNextLink() {
+            return Optional.ofNullable(_links).map(PageLinks::getNext).map(Href::getHref);
+        }
+
+        List<Repository> getRepositories() {
+            if (_embedded == null || _embedded.getRepositories() == null) {
+                return Collections.emptyList();
+            }
+            return _embedded.getRepositories();
+        }
+    }
+
+    static class EmbeddedRepositories {
+        @SuppressFBWarnings("UWF_UNWRITTEN_FIELD")
+        private List<Repository> repositories;
+
+        EmbeddedRepositories() {}
+
+        EmbeddedRepositories(List<Repository> repositories) {
+            this.repositories = repositories;
+        }
+
+        public List<Repository> getRepositories() {
+            return repositories;
+        }
+    }
+
+    static class PageLinks {
+        @SuppressFBWarnings("UWF_UNWRITTEN_FIELD")
+        private Href next;
+
+        public Href getNext() {
+            return next;
+        }
+    }
+
+    static class Href {
+        @SuppressFBWarnings("UWF_UNWRITTEN_FIELD")
+        private String href;
+
+        public String getHref() {
+            return href;
+        }
+    }
+}
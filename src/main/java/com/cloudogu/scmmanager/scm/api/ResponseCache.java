@@ -0,0 +1,268 @@
+package com.cloudogu.scmmanager.scm.api;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import com.google.common.hash.Hashing;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache for conditional GET requests against the SCM-Manager api. Responses with an {@code ETag} or
+ * {@code Last-Modified} header are stored together with the parsed object. The next request for the same resource
+ * sends {@code If-None-Match} or {@code If-Modified-Since} and if the server answers with {@code 304}, the cached
+ * object is returned without parsing the response again. Consequently, cached objects are shared between callers
+ * and must not be modified; {@link ScmManagerApi} creates enriched copies instead.
+ *
+ * <p>The in-memory tier is bound by {@code com.cloudogu.scmmanager.scm.api.ResponseCache.maxEntries} (default 1000)
+ * and evicts the least recently used entry. The optional disk tier below {@code JENKINS_HOME/scm-manager/http-cache}
+ * is enabled with {@code com.cloudogu.scmmanager.scm.api.ResponseCache.disk=true}; it stores the raw response bodies,
+ * so that validators survive a restart of Jenkins.</p>
+ */
+public class ResponseCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ResponseCache.class);
+
+    private static final String PROPERTY_PREFIX = ResponseCache.class.getName() + ".";
+
+    private static final ResponseCache INSTANCE = new ResponseCache(
+            SystemProperties.getInteger(PROPERTY_PREFIX + "maxEntries", 1000),
+            SystemProperties.getBoolean(PROPERTY_PREFIX + "disk") ? ResponseCache::defaultDirectory : null);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private final Map<String, Entry> entries;
+
+    @CheckForNull
+    private final Supplier<File> directory;
+
+    @VisibleForTesting
+    ResponseCache(int maxEntries, @CheckForNull Supplier<File> directory) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.directory = directory;
+    }
+
+    public static ResponseCache get() {
+        return INSTANCE;
+    }
+
+    private static File defaultDirectory() {
+        return new File(Jenkins.get().getRootDir(), "scm-manager/http-cache");
+    }
+
+    /**
+     * Creates the cache key for a request. The key contains a hash of the authorization header, because the content
+     * of a response depends on the permissions of the user.
+     */
+    static String key(Request request, Class<?> type) {
+        String authorization = Strings.nullToEmpty(request.header("Authorization"));
+        return String.join(
+                "|",
+                request.url().toString(),
+                Strings.nullToEmpty(request.header("Accept")),
+                type.getName(),
+                Hashing.sha256().hashString(authorization, StandardCharsets.UTF_8).toString());
+    }
+
+    /**
+     * Returns the cached entry for the key. If the entry is not in memory, the disk tier is consulted.
+     */
+    @CheckForNull
+    Entry lookup(String key) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry == null && directory != null) {
+            entry = readFromDisk(key);
+            if (entry != null) {
+                synchronized (entries) {
+                    entries.put(key, entry);
+                }
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Returns {@code true} if the raw body of the response is required to store it, which is only the case for
+     * cacheable responses, if the disk tier is enabled.
+     */
+    boolean requiresBody(Response response) {
+        return directory != null && (response.header("ETag") != null || response.header("Last-Modified") != null);
+    }
+
+    void store(String key, Response response, @CheckForNull byte[] body, Object value) {
+        String etag = response.header("ETag");
+        String lastModified = response.header("Last-Modified");
+        if (etag == null && lastModified == null) {
+            return;
+        }
+        Entry entry = new Entry(etag, lastModified, value, null);
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+        if (directory != null && body != null) {
+            writeToDisk(key, new DiskEntry(etag, lastModified, new String(body, StandardCharsets.UTF_8)));
+        }
+    }
+
+    void invalidate(String key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+        if (directory != null) {
+            try {
+                Files.deleteIfExists(file(key));
+            } catch (IOException e) {
+                LOG.debug("failed to delete cached response", e);
+            }
+        }
+    }
+
+    void hit() {
+        hits.incrementAndGet();
+    }
+
+    void miss() {
+        misses.incrementAndGet();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private Path file(String key) {
+        return directory
+                .get()
+                .toPath()
+                .resolve(Hashing.sha256().hashString(key, StandardCharsets.UTF_8) + ".json");
+    }
+
+    @CheckForNull
+    private Entry readFromDisk(String key) {
+        Path file = file(key);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            DiskEntry diskEntry = ApiClient.MAPPER.readValue(file.toFile(), DiskEntry.class);
+            return new Entry(
+                    diskEntry.getEtag(),
+                    diskEntry.getLastModified(),
+                    null,
+                    diskEntry.getBody().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            LOG.debug("failed to read cached response from {}", file, e);
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, DiskEntry diskEntry) {
+        Path file = file(key);
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), "entry", ".tmp");
+            ApiClient.MAPPER.writeValue(tmp.toFile(), diskEntry);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.debug("failed to write cached response to {}", file, e);
+        }
+    }
+
+    static final class Entry {
+
+        private final String etag;
+        private final String lastModified;
+        private volatile Object value;
+        private volatile byte[] body;
+
+        private Entry(String etag, String lastModified, Object value, byte[] body) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.value = value;
+            this.body = body;
+        }
+
+        void addValidators(Request.Builder requestBuilder) {
+            if (etag != null) {
+                requestBuilder.header("If-None-Match", etag);
+            }
+            if (lastModified != null) {
+                requestBuilder.header("If-Modified-Since", lastModified);
+            }
+        }
+
+        /**
+         * Returns the cached object. Entries which are read from disk are parsed once on first access.
+         */
+        <T> T value(Class<T> type) throws IOException {
+            if (value == null) {
+                synchronized (this) {
+                    if (value == null) {
+                        value = ApiClient.MAPPER.readValue(body, type);
+                        body = null;
+                    }
+                }
+            }
+            return type.cast(value);
+        }
+    }
+
+    static class DiskEntry {
+
+        private String etag;
+        private String lastModified;
+        private String body;
+
+        DiskEntry() {}
+
+        DiskEntry(String etag, String lastModified, String body) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.body = body;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        public String getBody() {
+            return body;
+        }
+    }
+}
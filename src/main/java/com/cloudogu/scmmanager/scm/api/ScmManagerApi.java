@@ -3,19 +3,28 @@ package com.cloudogu.scmmanager.scm.api;
 import static java.util.Collections.emptyList;
 
 import com.cloudogu.scmmanager.scm.PluginNotUpToDateException;
+import com.cloudogu.scmmanager.scm.api.RepositoryPages.RepositoryCollection;
+import com.google.common.annotations.VisibleForTesting;
 import de.otto.edison.hal.HalRepresentation;
 import de.otto.edison.hal.Link;
+import de.otto.edison.hal.Links;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import jenkins.scm.api.SCMFile;
+import jenkins.util.SystemProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,10 +32,22 @@ public class ScmManagerApi {
 
     private static final Logger LOG = LoggerFactory.getLogger(ScmManagerApi.class);
 
+    private static final int PAGE_SIZE =
+            SystemProperties.getInteger(ScmManagerApi.class.getName() + ".pageSize", 200);
+    private static final int PAGE_PREFETCH =
+            SystemProperties.getInteger(ScmManagerApi.class.getName() + ".pagePrefetch", 2);
+
     private final ApiClient client;
+    private final TagDates tagDates;
 
     public ScmManagerApi(ApiClient client) {
+        this(client, TagDates.get());
+    }
+
+    @VisibleForTesting
+    ScmManagerApi(ApiClient client, TagDates tagDates) {
         this.client = client;
+        this.tagDates = tagDates;
     }
 
     public String getProtocol() {
@@ -46,42 +67,144 @@ public class ScmManagerApi {
     }
 
     public CompletableFuture<List<Repository>> getRepositories() {
-        // TODO pageSize?
-        return client.get(
-                        "/api/v2/repositories?pageSize=2000&sortBy=namespace&sortBy=name",
-                        "application/vnd.scmm-repositoryCollection+json;v=2",
-                        RepositoryCollection.class)
-                .thenApply(collection -> collection.get_embedded().getRepositories());
+        return getAllRepositories("/api/v2/repositories");
     }
 
     public CompletableFuture<List<Repository>> getRepositories(String namespace) {
-        String url = String.format("/api/v2/repositories/%s", namespace);
-        // TODO pageSize?
-        return client.get(
-                        url + "?pageSize=2000&sortBy=namespace&sortBy=name",
-                        "application/vnd.scmm-repositoryCollection+json;v=2",
-                        RepositoryCollection.class)
-                .thenApply(collection -> collection.get_embedded().getRepositories());
+        return getAllRepositories(String.format("/api/v2/repositories/%s", namespace));
     }
 
     public CompletableFuture<List<Repository>> getRepositories(Namespace namespace) {
         Optional<Link> repositoriesLink = namespace.getLinks().getLinkBy("repositories");
         if (repositoriesLink.isPresent()) {
-            // TODO pageSize?
-            return client.get(
-                            repositoriesLink.get().getHref() + "?pageSize=2000&sortBy=namespace&sortBy=name",
-                            "application/vnd.scmm-repositoryCollection+json;v=2",
-                            RepositoryCollection.class)
-                    .thenApply(collection -> collection.get_embedded().getRepositories());
+            return getAllRepositories(repositoriesLink.get().getHref());
         }
         return CompletableFuture.completedFuture(emptyList());
     }
 
+    /**
+     * Returns the repositories of all namespaces page by page.
+     */
+    public RepositoryPages getRepositoryPages() {
+        return createRepositoryPages("/api/v2/repositories");
+    }
+
+    /**
+     * Returns the repositories of the given namespace page by page.
+     */
+    public RepositoryPages getRepositoryPages(String namespace) {
+        return createRepositoryPages(String.format("/api/v2/repositories/%s", namespace));
+    }
+
+    /**
+     * Passes the repositories of all namespaces one by one to the consumer, while they are parsed. Pages are
+     * requested one after another, so at most one repository is held in memory. The consumer is called on the
+     * thread which receives the response.
+     */
+    public CompletableFuture<Void> forEachRepository(Consumer<Repository> consumer) {
+        return forEachRepository("/api/v2/repositories", 0, consumer);
+    }
+
+    /**
+     * Passes the repositories of the given namespace one by one to the consumer.
+     *
+     * @see #forEachRepository(Consumer)
+     */
+    public CompletableFuture<Void> forEachRepository(String namespace, Consumer<Repository> consumer) {
+        return forEachRepository(String.format("/api/v2/repositories/%s", namespace), 0, consumer);
+    }
+
+    private CompletableFuture<Void> forEachRepository(String url, int page, Consumer<Repository> consumer) {
+        return client.getEach(
+                        repositoryPageUrl(url, page),
+                        "application/vnd.scmm-repositoryCollection+json;v=2",
+                        "repositories",
+                        Repository.class,
+                        consumer)
+                .thenCompose(collection -> {
+                    boolean hasNext = collection.getPageTotal() > 0
+                            ? page + 1 < collection.getPageTotal()
+                            : collection.getSize() >= PAGE_SIZE;
+                    if (hasNext) {
+                        return forEachRepository(url, page + 1, consumer);
+                    }
+                    return CompletableFuture.completedFuture(null);
+                });
+    }
+
+    private RepositoryPages createRepositoryPages(String url) {
+        return new RepositoryPages(this::getRepositoryPage, page -> repositoryPageUrl(url, page), PAGE_PREFETCH);
+    }
+
+    private CompletableFuture<List<Repository>> getAllRepositories(String url) {
+        return getRepositoryPage(repositoryPageUrl(url, 0)).thenCompose(first -> {
+            if (first.getPageTotal() > 1) {
+                List<CompletableFuture<RepositoryCollection>> pages = new ArrayList<>();
+                pages.add(CompletableFuture.completedFuture(first));
+                for (int page = 1; page < first.getPageTotal(); page++) {
+                    pages.add(getRepositoryPage(repositoryPageUrl(url, page)));
+                }
+                return CompletableFuture.allOf(pages.toArray(new CompletableFuture[0]))
+                        .thenApply(v -> pages.stream()
+                                .map(CompletableFuture::join)
+                                .flatMap(collection -> collection.getRepositories().stream())
+                                .collect(Collectors.toList()));
+            }
+            return followNextLinks(first, new ArrayList<>());
+        });
+    }
+
+    private CompletableFuture<List<Repository>> followNextLinks(RepositoryCollection page, List<Repository> result) {
+        result.addAll(page.getRepositories());
+        Optional<String> next = page.getNextLink();
+        if (next.isPresent()) {
+            return getRepositoryPage(next.get()).thenCompose(nextPage -> followNextLinks(nextPage, result));
+        }
+        return CompletableFuture.completedFuture(result);
+    }
+
+    private CompletableFuture<RepositoryCollection> getRepositoryPage(String url) {
+        return client.get(url, "application/vnd.scmm-repositoryCollection+json;v=2", RepositoryCollection.class);
+    }
+
+    private static String repositoryPageUrl(String url, int page) {
+        return String.format("%s?page=%d&pageSize=%d&sortBy=namespace&sortBy=name", url, page, PAGE_SIZE);
+    }
+
     public CompletableFuture<Repository> getRepository(String namespace, String name) {
         String url = String.format("/api/v2/repositories/%s/%s", namespace, name);
         return client.get(url, "application/vnd.scmm-repository+json;v=2", Repository.class);
     }
 
+    /**
+     * Requests the repository and the selected collections of the repository in the background, so that the regular
+     * requests of a following indexing can use the prefetched results.
+     */
+    public void prefetch(Repository repository, boolean branches, boolean tags, boolean pullRequests) {
+        client.prefetch(
+                String.format("/api/v2/repositories/%s/%s", repository.getNamespace(), repository.getName()),
+                "application/vnd.scmm-repository+json;v=2",
+                Repository.class);
+        Links links = repository.getLinks();
+        if (branches || pullRequests) {
+            links.getLinkBy("branches")
+                    .ifPresent(link -> client.prefetch(
+                            link.getHref(), "application/vnd.scmm-branchCollection+json;v=2", BranchCollection.class));
+        }
+        if (tags) {
+            links.getLinkBy("tags")
+                    .ifPresent(link -> client.prefetch(
+                            link.getHref(), "application/vnd.scmm-tagCollection+json;v=2", TagCollection.class));
+        }
+        if (pullRequests) {
+            links.getLinkBy("pullRequest")
+                    .ifPresent(link -> client.prefetch(
+                            link.getHref() + "?status=OPEN",
+                            "application/vnd.scmm-pullRequestCollection+json;v=2",
+                            PullRequestCollection.class));
+        }
+    }
+
     public CompletableFuture<List<Branch>> getBranches(Repository repository) {
         Optional<Link> branchesLink = repository.getLinks().getLinkBy("branches");
         if (branchesLink.isPresent()) {
@@ -89,57 +212,67 @@ public class ScmManagerApi {
                             branchesLink.get().getHref(),
                             "application/vnd.scmm-branchCollection+json;v=2",
                             BranchCollection.class)
-                    .thenApply(
-                            branchCollection -> branchCollection.get_embedded().getBranches())
-                    .thenApply(branches -> {
-                        branches.forEach(branch ->
-                                branch.setCloneInformation(repository.getCloneInformation(client.getProtocol())));
-                        return branches;
-                    });
+                    .thenApply(branchCollection -> branchCollection.get_embedded().getBranches().stream()
+                            .map(branch ->
+                                    branch.withCloneInformation(repository.getCloneInformation(client.getProtocol())))
+                            .collect(Collectors.toList()));
         }
         return CompletableFuture.completedFuture(emptyList());
     }
 
+    /**
+     * Returns the tags of the repository. Tags without a date get the date of their changeset, which is resolved with
+     * {@link TagDates}, so that each changeset is requested only once.
+     */
     public CompletableFuture<List<Tag>> getTags(Repository repository) {
         Optional<Link> tagsLink = repository.getLinks().getLinkBy("tags");
         if (tagsLink.isPresent()) {
+            String key = tagDatesKey(tagsLink.get());
             return client.get(
                             tagsLink.get().getHref(),
                             "application/vnd.scmm-tagCollection+json;v=2",
                             TagCollection.class)
                     .thenApply(tags -> tags.get_embedded().getTags().stream()
-                            .map(prepareTag(repository))
+                            .map(prepareTag(repository, key))
                             .collect(Collectors.toList()))
                     .thenCompose(completableFutures -> CompletableFuture.allOf(
                                     completableFutures.toArray(new CompletableFuture[0]))
                             .thenApply(future -> completableFutures.stream()
                                     .filter(cf -> !cf.isCompletedExceptionally())
                                     .map(CompletableFuture::join)
-                                    .collect(Collectors.toList())));
+                                    .collect(Collectors.toList())))
+                    .whenComplete((tags, ex) -> tagDates.save(key));
         }
         return CompletableFuture.completedFuture(emptyList());
     }
 
-    private Function<Tag, CompletableFuture<Tag>> prepareTag(Repository repository) {
-        return tag -> {
-            Optional<Link> changesetLink = tag.getLinks().getLinkBy("changeset");
-            tag.setCloneInformation(repository.getCloneInformation(client.getProtocol()));
+    private Function<Tag, CompletableFuture<Tag>> prepareTag(Repository repository, String key) {
+        return cached -> {
+            Optional<Link> changesetLink = cached.getLinks().getLinkBy("changeset");
+            Tag tag = cached.withCloneInformation(repository.getCloneInformation(client.getProtocol()));
             if (tag.getDate() != null) {
                 return CompletableFuture.completedFuture(tag);
             } else if (changesetLink.isPresent()) {
-                return client.get(
-                                changesetLink.get().getHref(),
-                                "application/vnd.scmm-changeset+json;v=2",
-                                Changeset.class)
-                        .thenApply(changeset -> {
-                            tag.setChangeset(changeset);
-                            return tag;
-                        });
+                Supplier<CompletableFuture<Changeset>> changeset = () -> client.get(
+                        changesetLink.get().getHref(), "application/vnd.scmm-changeset+json;v=2", Changeset.class);
+                if (tag.getRevision() == null) {
+                    return changeset.get().thenApply(loaded -> tag.withDate(loaded.getDate()));
+                }
+                return tagDates.resolve(key, tag.getRevision(), changeset)
+                        .thenApply(tag::withDate);
             }
             throw new IllegalStateException("could not find changeset link on tag " + tag.getName());
         };
     }
 
+    /**
+     * The tag dates are kept by the tags link of the repository, which names the server and the repository. The base
+     * url of the client is not used, because it could block on a new access token for ssh.
+     */
+    private static String tagDatesKey(Link tagsLink) {
+        return tagsLink.getHref();
+    }
+
     public CompletableFuture<Changeset> getChangeset(Repository repository, String revision) {
         Optional<Link> changesetsLink = repository.getLinks().getLinkBy("changesets");
         if (changesetsLink.isPresent()) {
@@ -149,57 +282,80 @@ public class ScmManagerApi {
         throw new IllegalStateException("could not find changesets link on repository " + repository.getName());
     }
 
+    /**
+     * Returns the open pull requests of the repository. The source and target branches are resolved from a single
+     * request for all branches of the repository; only branches which are not part of that collection (or servers
+     * without a branches link) fall back to one request per branch.
+     */
     public CompletableFuture<List<PullRequest>> getPullRequests(Repository repository) {
         Optional<Link> pullRequestLink = repository.getLinks().getLinkBy("pullRequest");
         if (pullRequestLink.isPresent()) {
-            return client.get(
-                            pullRequestLink.get().getHref() + "?status=OPEN",
-                            "application/vnd.scmm-pullRequestCollection+json;v=2",
-                            PullRequestCollection.class)
-                    .thenApply(pullRequestCollection -> pullRequestCollection.get_embedded().getPullRequests().stream()
-                            .map(preparePullRequest(repository))
-                            .filter(cf -> !cf.isCompletedExceptionally())
-                            .collect(Collectors.toList()))
+            CompletableFuture<PullRequestCollection> pullRequests = client.get(
+                    pullRequestLink.get().getHref() + "?status=OPEN",
+                    "application/vnd.scmm-pullRequestCollection+json;v=2",
+                    PullRequestCollection.class);
+            CompletableFuture<Map<String, Branch>> branches = getBranchesByName(repository);
+            return pullRequests
+                    .thenCombine(branches, (pullRequestCollection, branchesByName) ->
+                            pullRequestCollection.get_embedded().getPullRequests().stream()
+                                    .map(pullRequest -> preparePullRequest(repository, pullRequest, branchesByName)
+                                            .exceptionally(ex -> null))
+                                    .collect(Collectors.toList()))
                     .thenCompose(completableFutures -> CompletableFuture.allOf(
                                     completableFutures.toArray(new CompletableFuture[0]))
                             .thenApply(future -> completableFutures.stream()
-                                    .filter(cf -> !cf.isCompletedExceptionally())
                                     .map(CompletableFuture::join)
+                                    .filter(Objects::nonNull)
                                     .collect(Collectors.toList())));
         }
         return CompletableFuture.completedFuture(Collections.emptyList());
     }
 
-    private Function<PullRequest, CompletableFuture<PullRequest>> preparePullRequest(Repository repository) {
-        return pullRequest -> {
-            pullRequest.setCloneInformation(repository.getCloneInformation(client.getProtocol()));
-
-            CompletableFuture<Void> source = client.get(
-                            getPullRequestLink(pullRequest, "sourceBranch"),
-                            "application/vnd.scmm-branch+json;v=2",
-                            Branch.class)
-                    .thenAccept(pullRequest::setSourceBranch);
-            CompletableFuture<Void> target = client.get(
-                            getPullRequestLink(pullRequest, "targetBranch"),
-                            "application/vnd.scmm-branch+json;v=2",
-                            Branch.class)
-                    .thenAccept(pullRequest::setTargetBranch);
-
-            try {
-                source.join();
-                target.join();
-            } catch (Exception e) {
-                LOG.info(
-                        "failed to fetch source or target branch of pull request {} in repository {}/{}",
-                        pullRequest.getId(),
-                        repository.getNamespace(),
-                        repository.getName(),
-                        e);
-                return CompletableFuture.failedFuture(e);
-            }
-
-            return CompletableFuture.allOf(source, target).thenApply(v -> pullRequest);
-        };
+    private CompletableFuture<Map<String, Branch>> getBranchesByName(Repository repository) {
+        return getBranches(repository)
+                .thenApply(branches -> branches.stream()
+                        .collect(Collectors.toMap(Branch::getName, Function.identity(), (first, second) -> first)))
+                .exceptionally(ex -> {
+                    LOG.debug(
+                            "failed to fetch branches of repository {}/{}, fetch branches of pull requests one by one",
+                            repository.getNamespace(),
+                            repository.getName(),
+                            ex);
+                    return Collections.emptyMap();
+                });
+    }
+
+    private CompletableFuture<PullRequest> preparePullRequest(
+            Repository repository, PullRequest pullRequest, Map<String, Branch> branchesByName) {
+        CompletableFuture<Branch> source =
+                resolveBranch(pullRequest, pullRequest.getSource(), "sourceBranch", branchesByName);
+        CompletableFuture<Branch> target =
+                resolveBranch(pullRequest, pullRequest.getTarget(), "targetBranch", branchesByName);
+
+        return source.thenCombine(
+                        target,
+                        (sourceBranch, targetBranch) -> pullRequest.withBranches(
+                                repository.getCloneInformation(client.getProtocol()), sourceBranch, targetBranch))
+                .whenComplete((pr, ex) -> {
+                    if (ex != null) {
+                        LOG.info(
+                                "failed to fetch source or target branch of pull request {} in repository {}/{}",
+                                pullRequest.getId(),
+                                repository.getNamespace(),
+                                repository.getName(),
+                                ex);
+                    }
+                });
+    }
+
+    private CompletableFuture<Branch> resolveBranch(
+            PullRequest pullRequest, String name, String linkName, Map<String, Branch> branchesByName) {
+        Branch branch = name != null ? branchesByName.get(name) : null;
+        if (branch != null) {
+            return CompletableFuture.completedFuture(branch);
+        }
+        return client.get(
+                getPullRequestLink(pullRequest, linkName), "application/vnd.scmm-branch+json;v=2", Branch.class);
     }
 
     private String getPullRequestLink(HalRepresentation hal, String linkName) {
@@ -214,7 +370,8 @@ public class ScmManagerApi {
         Optional<Link> link = repository.getLinks().getLinkBy("tags");
         return link.map(value -> client.get(
                                 concat(value, encode(tagName)), "application/vnd.scmm-tag+json;v=2", Tag.class)
-                        .thenCompose(prepareTag(repository)))
+                        .thenCompose(prepareTag(repository, tagDatesKey(value)))
+                        .whenComplete((tag, ex) -> tagDates.save(tagDatesKey(value))))
                 .orElse(null);
     }
 
@@ -223,7 +380,8 @@ public class ScmManagerApi {
         return pullRequestLink
                 .map(link -> client.get(
                                 concat(link, id), "application/vnd.scmm-pullRequest+json;v=2", PullRequest.class)
-                        .thenCompose(preparePullRequest(repository)))
+                        .thenCompose(pullRequest ->
+                                preparePullRequest(repository, pullRequest, Collections.emptyMap())))
                 .orElse(null);
     }
 
@@ -231,10 +389,8 @@ public class ScmManagerApi {
         Optional<Link> link = repository.getLinks().getLinkBy("branches");
         return link.map(value -> client.get(
                                 concat(value, encode(name)), "application/vnd.scmm-branch+json;v=2", Branch.class)
-                        .thenApply(branch -> {
-                            branch.setCloneInformation(repository.getCloneInformation(client.getProtocol()));
-                            return branch;
-                        }))
+                        .thenApply(branch ->
+                                branch.withCloneInformation(repository.getCloneInformation(client.getProtocol()))))
                 .orElse(null);
     }
 
@@ -319,24 +475,6 @@ public class ScmManagerApi {
         }
     }
 
-    private static class RepositoryCollection {
-        @SuppressFBWarnings("UWF_UNWRITTEN_FIELD")
-        private EmbeddedRepositories _embedded;
-
-        public EmbeddedRepositories get_embedded() {
-            return _embedded;
-        }
-    }
-
-    private static class EmbeddedRepositories {
-        @SuppressFBWarnings("UWF_UNWRITTEN_FIELD")
-        private List<Repository> repositories;
-
-        public List<Repository> getRepositories() {
-            return repositories;
-        }
-    }
-
     private static class BranchCollection {
         @SuppressFBWarnings("UWF_UNWRITTEN_FIELD")
         private EmbeddedBranches _embedded;
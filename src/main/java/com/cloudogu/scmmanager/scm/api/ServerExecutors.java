@@ -0,0 +1,89 @@
+package com.cloudogu.scmmanager.scm.api;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import jenkins.util.SystemProperties;
+import okhttp3.HttpUrl;
+
+/**
+ * Bounds the work which is done for a single SCM-Manager server. Each server gets its own {@link ConcurrencyLimit}
+ * for api requests, so that a large organization scan can not starve webhook traffic. Blocking ssh work runs on the
+ * executor of {@link com.cloudogu.scmmanager.SshConnection}.
+ *
+ * <p>The limits can be tuned with the following system properties:</p>
+ * <ul>
+ *     <li>{@code com.cloudogu.scmmanager.scm.api.ServerExecutors.maxInFlight} (default 16)</li>
+ *     <li>{@code com.cloudogu.scmmanager.scm.api.ServerExecutors.maxQueued} (default 1024)</li>
+ * </ul>
+ */
+public final class ServerExecutors {
+
+    private static final String PROPERTY_PREFIX = ServerExecutors.class.getName() + ".";
+
+    private static final ServerExecutors INSTANCE = new ServerExecutors(
+            SystemProperties.getInteger(PROPERTY_PREFIX + "maxInFlight", 16),
+            SystemProperties.getInteger(PROPERTY_PREFIX + "maxQueued", 1024));
+
+    private final Map<String, ServerExecutor> executors = new ConcurrentHashMap<>();
+
+    private final int maxInFlight;
+    private final int maxQueued;
+
+    @VisibleForTesting
+    ServerExecutors(int maxInFlight, int maxQueued) {
+        this.maxInFlight = maxInFlight;
+        this.maxQueued = maxQueued;
+    }
+
+    public static ServerExecutors get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the executor for the server of the given url.
+     */
+    ServerExecutor forServer(String url) {
+        return executors.computeIfAbsent(origin(url), this::create);
+    }
+
+    private ServerExecutor create(String origin) {
+        return new ServerExecutor(new ConcurrencyLimit(maxInFlight, maxQueued));
+    }
+
+    @VisibleForTesting
+    static String origin(String url) {
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        if (httpUrl == null) {
+            // ssh urls can not be parsed by okhttp
+            httpUrl = HttpUrl.parse(url.replaceFirst("^ssh://", "http://"));
+        }
+        if (httpUrl == null) {
+            return url;
+        }
+        return httpUrl.host() + ":" + httpUrl.port();
+    }
+
+    static final class ServerExecutor {
+
+        private final ConcurrencyLimit limit;
+
+        private ServerExecutor(ConcurrencyLimit limit) {
+            this.limit = limit;
+        }
+
+        /**
+         * Starts the asynchronous call as soon as the in-flight limit of the server allows it.
+         */
+        <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> call) {
+            return limit.submit(call);
+        }
+
+        @VisibleForTesting
+        ConcurrencyLimit getLimit() {
+            return limit;
+        }
+    }
+}
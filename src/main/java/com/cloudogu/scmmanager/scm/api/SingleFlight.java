@@ -0,0 +1,53 @@
+package com.cloudogu.scmmanager.scm.api;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical calls which are in flight at the same time. The first caller for a key executes the call, all
+ * further callers for the same key share its result until the call has completed. Every caller receives its own
+ * copy of the future, so that cancelling or completing it does not affect the others; the result object itself is
+ * shared and must not be modified.
+ */
+final class SingleFlight {
+
+    private final ConcurrentMap<String, CompletableFuture<?>> calls = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    @SuppressWarnings("unchecked")
+    <T> CompletableFuture<T> execute(String key, Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> created = new CompletableFuture<>();
+        CompletableFuture<T> existing = (CompletableFuture<T>) calls.putIfAbsent(key, created);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return existing.copy();
+        }
+
+        try {
+            call.get().whenComplete((value, ex) -> {
+                // remove the call before completion, so that callers which see the result start a fresh call
+                calls.remove(key, created);
+                if (ex != null) {
+                    created.completeExceptionally(ex);
+                } else {
+                    created.complete(value);
+                }
+            });
+        } catch (RuntimeException ex) {
+            calls.remove(key, created);
+            created.completeExceptionally(ex);
+        }
+        return created.copy();
+    }
+
+    long getCoalesced() {
+        return coalesced.get();
+    }
+
+    int size() {
+        return calls.size();
+    }
+}
@@ -1,20 +1,19 @@
 package com.cloudogu.scmmanager.scm.api;
 
 import com.cloudogu.scmmanager.BearerHttpAuthentication;
-import com.cloudogu.scmmanager.OkHttpClientBuilder;
+import com.cloudogu.scmmanager.OkHttpClientRegistry;
 import com.cloudogu.scmmanager.SSHAuthentication;
 import com.cloudogu.scmmanager.SshConnection;
 import com.cloudogu.scmmanager.SshConnectionFactory;
-import com.cloudogu.scmmanager.SshConnectionFailedException;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.base.Suppliers;
+import com.google.common.base.Throwables;
 import de.otto.edison.hal.HalRepresentation;
 import de.otto.edison.hal.Link;
 import de.otto.edison.hal.Links;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-import java.io.IOException;
 import java.util.concurrent.CompletableFuture;
-import java.util.function.Supplier;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import org.slf4j.Logger;
@@ -28,17 +27,15 @@ public class SshApiClient extends ApiClient {
     private static final Logger LOG = LoggerFactory.getLogger(SshApiClient.class);
     private static final String API_PATH = "/api/v2";
 
-    // memoize access token, we only want a fresh access token if a new SshApiClient is created
-    @SuppressWarnings("squid:4738") // jenkins provides an old guava version, so we can't use java.util.Supplier
-    private final Supplier<AccessToken> fetcher = Suppliers.memoize(this::fetchAccessTokenFromSsh);
-
     private final OkHttpClient client;
     private final SshConnectionFactory connectionFactory;
     private final String sshUrl;
     private final SSHAuthentication authentication;
+    private final AccessTokenCache tokens;
+    private final String tokenKey;
 
     public SshApiClient(String sshUrl, SSHAuthentication authentication) {
-        this(OkHttpClientBuilder.build(), new SshConnectionFactory(), sshUrl, authentication);
+        this(OkHttpClientRegistry.get().client(sshUrl), new SshConnectionFactory(), sshUrl, authentication);
     }
 
     public SshApiClient(
@@ -46,33 +43,87 @@ public class SshApiClient extends ApiClient {
             SshConnectionFactory connectionFactory,
             String sshUrl,
             SSHAuthentication authentication) {
+        this(client, connectionFactory, sshUrl, authentication, AccessTokenCache.get());
+    }
+
+    @VisibleForTesting
+    SshApiClient(
+            OkHttpClient client,
+            SshConnectionFactory connectionFactory,
+            String sshUrl,
+            SSHAuthentication authentication,
+            AccessTokenCache tokens) {
         super("ssh");
         this.client = client;
         this.connectionFactory = connectionFactory;
         this.sshUrl = sshUrl;
         this.authentication = authentication;
+        this.tokens = tokens;
+        this.tokenKey = AccessTokenCache.key(sshUrl, authentication.getFingerprint());
     }
 
     @Override
     public <T> CompletableFuture<T> get(String url, String contentType, Class<T> type) {
         LOG.info("get {} from {}", type.getName(), url);
+        return withAccessToken(token -> execute(client, createRequest(token, url, contentType), type));
+    }
+
+    @Override
+    public <T> void prefetch(String url, String contentType, Class<T> type) {
+        LOG.debug("prefetch {} from {}", type.getName(), url);
+        accessToken().thenAccept(token -> prefetch(client, createRequest(token, url, contentType), type));
+    }
+
+    @Override
+    protected <T> CompletableFuture<T> stream(String url, String contentType, Decoder<T> decoder) {
+        LOG.info("stream {}", url);
+        return withAccessToken(
+                token -> executeStreaming(client, createRequest(token, url, contentType), decoder));
+    }
+
+    /**
+     * Executes the action with the cached access token. If the server rejects the token, it is removed from the
+     * cache and the action is executed once more with a fresh token.
+     */
+    private <T> CompletableFuture<T> withAccessToken(Function<AccessToken, CompletableFuture<T>> action) {
+        return accessToken().thenCompose(token -> action.apply(token).exceptionallyCompose(ex -> {
+            if (!isUnauthorized(ex)) {
+                return CompletableFuture.failedFuture(ex);
+            }
+            LOG.debug("access token for {} was rejected, fetch a new one", sshUrl);
+            tokens.invalidate(tokenKey, token);
+            return accessToken().thenCompose(action);
+        }));
+    }
+
+    private static boolean isUnauthorized(Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        return cause instanceof IllegalReturnStatusException
+                && ((IllegalReturnStatusException) cause).getStatusCode() == 401;
+    }
 
-        // we can not use the supplier directly, the guava version which is provided by jenkins
-        // does not yet implement the java.util.Supplier
-        return CompletableFuture.supplyAsync(() -> fetcher.get()).thenCompose(token -> {
-            String apiUrl = createApiUrl(token.getApiUrl(), url);
+    private CompletableFuture<AccessToken> accessToken() {
+        return tokens.get(
+                tokenKey, () -> ServerExecutors.get().forServer(sshUrl).submit(this::fetchAccessTokenFromSsh));
+    }
 
-            Request.Builder requestBuilder = new Request.Builder().get().url(apiUrl);
-            BearerHttpAuthentication.authenticate(requestBuilder, token.getAccessToken());
-            requestBuilder.addHeader("Accept", contentType);
+    private static Request.Builder createRequest(AccessToken token, String url, String contentType) {
+        String apiUrl = createApiUrl(token.getApiUrl(), url);
 
-            return execute(client, requestBuilder, type);
-        });
+        Request.Builder requestBuilder = new Request.Builder().get().url(apiUrl);
+        BearerHttpAuthentication.authenticate(requestBuilder, token.getAccessToken());
+        requestBuilder.addHeader("Accept", contentType);
+        return requestBuilder;
     }
 
     @Override
     public String getBaseUrl() {
-        return createBaseUrl(fetcher.get().getApiUrl());
+        try {
+            return createBaseUrl(accessToken().join().getApiUrl());
+        } catch (CompletionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw e;
+        }
     }
 
     @VisibleForTesting
@@ -96,23 +147,21 @@ public class SshApiClient extends ApiClient {
         return baseUrl.substring(0, baseUrl.length() - API_PATH.length());
     }
 
-    private AccessToken fetchAccessTokenFromSsh() {
+    private CompletableFuture<AccessToken> fetchAccessTokenFromSsh() {
         LOG.info("connect to {} in order to fetch access token", sshUrl);
-        try (SshConnection connection = createConnection()) {
-            connection.connect(authentication);
-            return executeTokenCommand(connection);
-        }
-    }
-
-    private static AccessToken executeTokenCommand(SshConnection connection) {
+        SshConnection connection;
         try {
-            return connection
-                    .command(ACCESS_TOKEN_COMMAND)
-                    .withOutput(AccessToken.class)
-                    .json();
-        } catch (IOException e) {
-            throw new SshConnectionFailedException("failed to create ssh connection", e);
+            connection = createConnection();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
         }
+        return connection
+                .connectAsync(authentication)
+                .thenCompose(connected -> connection
+                        .command(ACCESS_TOKEN_COMMAND)
+                        .withOutput(AccessToken.class)
+                        .jsonAsync())
+                .whenComplete((token, ex) -> connection.close());
     }
 
     private SshConnection createConnection() {
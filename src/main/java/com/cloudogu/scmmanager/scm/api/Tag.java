@@ -27,6 +27,14 @@ public class Tag extends HalRepresentation implements ScmManagerObservable {
         this.cloneInformation = cloneInformation;
     }
 
+    private Tag(Tag tag, Date date, CloneInformation cloneInformation) {
+        super(tag.getLinks());
+        this.name = tag.name;
+        this.revision = tag.revision;
+        this.date = date;
+        this.cloneInformation = cloneInformation;
+    }
+
     public String getName() {
         return name;
     }
@@ -43,13 +51,19 @@ public class Tag extends HalRepresentation implements ScmManagerObservable {
         return cloneInformation;
     }
 
-    // TODO can this setter be avoided?
-    void setCloneInformation(CloneInformation cloneInformation) {
-        this.cloneInformation = cloneInformation;
+    /**
+     * Returns a copy of the tag with the given clone information. Tags are shared by the response cache, so they are
+     * never modified after parsing.
+     */
+    Tag withCloneInformation(CloneInformation cloneInformation) {
+        return new Tag(this, date, cloneInformation);
     }
 
-    void setChangeset(Changeset changeset) {
-        this.date = changeset.getDate();
+    /**
+     * Returns a copy of the tag with the given date.
+     */
+    Tag withDate(Date date) {
+        return new Tag(this, date == null ? null : new Date(date.getTime()), cloneInformation);
     }
 
     @Override
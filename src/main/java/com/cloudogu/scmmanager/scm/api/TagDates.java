@@ -0,0 +1,219 @@
+package com.cloudogu.scmmanager.scm.api;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.Hashing;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the dates of tagged changesets by revision. Changesets are immutable, so the date of a revision never has to
+ * be requested twice. Unknown dates are requested with at most
+ * {@code com.cloudogu.scmmanager.scm.api.TagDates.maxConcurrency} (default 4) concurrent requests.
+ *
+ * <p>The dates are kept per repository and written to {@code JENKINS_HOME/scm-manager/tag-dates}, so that tag
+ * discovery after a restart of Jenkins needs only the request for the tag collection. Persistence can be disabled
+ * with {@code com.cloudogu.scmmanager.scm.api.TagDates.persist=false}.</p>
+ */
+public class TagDates {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TagDates.class);
+
+    private static final String PROPERTY_PREFIX = TagDates.class.getName() + ".";
+
+    private static final TypeReference<HashMap<String, Long>> DATES_TYPE = new TypeReference<>() {};
+
+    private static final TagDates INSTANCE = new TagDates(
+            SystemProperties.getInteger(PROPERTY_PREFIX + "maxConcurrency", 4),
+            SystemProperties.getInteger(PROPERTY_PREFIX + "maxRepositories", 500),
+            SystemProperties.getBoolean(PROPERTY_PREFIX + "persist", true) ? TagDates::defaultDirectory : null);
+
+    private final ConcurrencyLimit limit;
+    private final Map<String, RepositoryDates> repositories;
+    private final Map<String, RepositoryDates> evicted = new HashMap<>();
+
+    @CheckForNull
+    private final Supplier<File> directory;
+
+    @VisibleForTesting
+    TagDates(int maxConcurrency, int maxRepositories, @CheckForNull Supplier<File> directory) {
+        this.limit = new ConcurrencyLimit(maxConcurrency);
+        this.repositories = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RepositoryDates> eldest) {
+                if (size() > maxRepositories) {
+                    if (eldest.getValue().isDirty()) {
+                        evicted.put(eldest.getKey(), eldest.getValue());
+                    }
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.directory = directory;
+    }
+
+    public static TagDates get() {
+        return INSTANCE;
+    }
+
+    @CheckForNull
+    private static File defaultDirectory() {
+        Jenkins jenkins = Jenkins.getInstanceOrNull();
+        if (jenkins == null) {
+            return null;
+        }
+        return new File(jenkins.getRootDir(), "scm-manager/tag-dates");
+    }
+
+    /**
+     * Returns the date of the revision. If the date is unknown, the changeset is requested with the given function,
+     * as soon as the concurrency limit allows it.
+     */
+    CompletableFuture<Date> resolve(
+            String repository, String revision, Supplier<CompletableFuture<Changeset>> changeset) {
+        RepositoryDates dates = dates(repository);
+        Long known = dates.get(revision);
+        if (known != null) {
+            return CompletableFuture.completedFuture(new Date(known));
+        }
+        return limit.submit(changeset).thenApply(loaded -> {
+            Date date = loaded.getDate();
+            dates.put(revision, date.getTime());
+            return date;
+        });
+    }
+
+    /**
+     * Writes the dates of the repository to disk, if new dates were resolved since the last call.
+     */
+    void save(String repository) {
+        RepositoryDates dates;
+        synchronized (repositories) {
+            dates = repositories.get(repository);
+        }
+        if (dates != null && dates.clearDirty()) {
+            write(repository, dates.snapshot());
+        }
+    }
+
+    @VisibleForTesting
+    int size(String repository) {
+        return dates(repository).size();
+    }
+
+    private RepositoryDates dates(String repository) {
+        RepositoryDates dates;
+        Map<String, RepositoryDates> flush;
+        synchronized (repositories) {
+            dates = repositories.computeIfAbsent(repository, r -> new RepositoryDates(read(r)));
+            if (evicted.isEmpty()) {
+                return dates;
+            }
+            flush = new HashMap<>(evicted);
+            evicted.clear();
+        }
+        // dates of evicted repositories are written, so that they are not requested again when the repository returns
+        flush.forEach((name, evictedDates) -> {
+            if (evictedDates.clearDirty()) {
+                write(name, evictedDates.snapshot());
+            }
+        });
+        return dates;
+    }
+
+    @CheckForNull
+    private Path file(String repository) {
+        if (directory == null) {
+            return null;
+        }
+        File root = directory.get();
+        if (root == null) {
+            return null;
+        }
+        return root.toPath().resolve(Hashing.sha256().hashString(repository, StandardCharsets.UTF_8) + ".json");
+    }
+
+    private Map<String, Long> read(String repository) {
+        Path file = file(repository);
+        if (file == null || !Files.exists(file)) {
+            return new HashMap<>();
+        }
+        try {
+            return ApiClient.MAPPER.readValue(file.toFile(), DATES_TYPE);
+        } catch (IOException e) {
+            LOG.debug("failed to read tag dates from {}", file, e);
+            return new HashMap<>();
+        }
+    }
+
+    private void write(String repository, Map<String, Long> dates) {
+        Path file = file(repository);
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), "dates", ".tmp");
+            ApiClient.MAPPER.writeValue(tmp.toFile(), dates);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.debug("failed to write tag dates to {}", file, e);
+        }
+    }
+
+    private static final class RepositoryDates {
+
+        private final Map<String, Long> dates;
+        private volatile boolean dirty;
+
+        private RepositoryDates(Map<String, Long> dates) {
+            this.dates = new ConcurrentHashMap<>(dates);
+        }
+
+        @CheckForNull
+        Long get(String revision) {
+            return dates.get(revision);
+        }
+
+        void put(String revision, long date) {
+            if (dates.put(revision, date) == null) {
+                dirty = true;
+            }
+        }
+
+        boolean isDirty() {
+            return dirty;
+        }
+
+        boolean clearDirty() {
+            boolean wasDirty = dirty;
+            dirty = false;
+            return wasDirty;
+        }
+
+        Map<String, Long> snapshot() {
+            return new HashMap<>(dates);
+        }
+
+        int size() {
+            return dates.size();
+        }
+    }
+}
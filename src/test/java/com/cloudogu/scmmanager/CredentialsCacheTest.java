@@ -0,0 +1,68 @@
+package com.cloudogu.scmmanager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+public class CredentialsCacheTest {
+
+    private final AtomicLong clock = new AtomicLong(1000L);
+
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    private final CredentialsCache cache = new CredentialsCache(60_000L, 2, clock::get);
+
+    @Test
+    public void shouldCacheCredentialsOfContext() {
+        assertThat(cache.get("heart-of-gold#42", "scm", String.class, this::lookup)).isEqualTo("secret-1");
+        assertThat(cache.get("heart-of-gold#42", "scm", String.class, this::lookup)).isEqualTo("secret-1");
+
+        assertThat(lookups).hasValue(1);
+    }
+
+    @Test
+    public void shouldLookupAgainAfterTimeToLive() {
+        cache.get("heart-of-gold#42", "scm", String.class, this::lookup);
+        clock.addAndGet(60_000L);
+
+        assertThat(cache.get("heart-of-gold#42", "scm", String.class, this::lookup)).isEqualTo("secret-2");
+    }
+
+    @Test
+    public void shouldSeparateContexts() {
+        cache.get("heart-of-gold#42", "scm", String.class, this::lookup);
+
+        assertThat(cache.get("heart-of-gold#43", "scm", String.class, this::lookup)).isEqualTo("secret-2");
+    }
+
+    @Test
+    public void shouldNotCacheWithoutContext() {
+        cache.get(null, "scm", String.class, this::lookup);
+        cache.get(null, "scm", String.class, this::lookup);
+
+        assertThat(lookups).hasValue(2);
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void shouldNotCacheMissingCredentials() {
+        cache.get("heart-of-gold#42", "scm", String.class, () -> null);
+
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void shouldLimitEntries() {
+        cache.get("heart-of-gold#42", "scm", String.class, this::lookup);
+        cache.get("heart-of-gold#43", "scm", String.class, this::lookup);
+        cache.get("heart-of-gold#44", "scm", String.class, this::lookup);
+
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    private String lookup() {
+        return "secret-" + lookups.incrementAndGet();
+    }
+}
@@ -0,0 +1,59 @@
+package com.cloudogu.scmmanager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MigratedRepositoryLocationsTest {
+
+    private static final String V1_URL = "https://scm.hitchhiker.com/scm/git/heart-of-gold";
+    private static final String V2_URL = "https://scm.hitchhiker.com/scm/repo/hitchhiker/heart-of-gold";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final AtomicLong clock = new AtomicLong(1000L);
+
+    @Test
+    public void shouldReturnRememberedLocation() {
+        MigratedRepositoryLocations locations = new MigratedRepositoryLocations(null, 1000L, clock::get);
+
+        locations.put(V1_URL, V2_URL);
+
+        assertThat(locations.get(V1_URL)).contains(V2_URL);
+    }
+
+    @Test
+    public void shouldExpireLocation() {
+        MigratedRepositoryLocations locations = new MigratedRepositoryLocations(null, 1000L, clock::get);
+
+        locations.put(V1_URL, V2_URL);
+        clock.addAndGet(1000L);
+
+        assertThat(locations.get(V1_URL)).isEmpty();
+    }
+
+    @Test
+    public void shouldInvalidateLocation() {
+        MigratedRepositoryLocations locations = new MigratedRepositoryLocations(null, 1000L, clock::get);
+
+        locations.put(V1_URL, V2_URL);
+        locations.invalidate(V1_URL);
+
+        assertThat(locations.get(V1_URL)).isEmpty();
+    }
+
+    @Test
+    public void shouldPersistLocations() {
+        File file = new File(temporaryFolder.getRoot(), "scm-manager/migrated-repositories.json");
+        new MigratedRepositoryLocations(() -> file, 1000L, clock::get).put(V1_URL, V2_URL);
+
+        MigratedRepositoryLocations locations = new MigratedRepositoryLocations(() -> file, 1000L, clock::get);
+
+        assertThat(locations.get(V1_URL)).contains(V2_URL);
+    }
+}
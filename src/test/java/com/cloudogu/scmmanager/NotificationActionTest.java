@@ -0,0 +1,83 @@
+package com.cloudogu.scmmanager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.cloudogu.scmmanager.info.JobInformation;
+import hudson.model.Run;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class NotificationActionTest {
+
+    private static final JobInformation INFORMATION =
+            new JobInformation("git", "https://scm.hitchhiker.com/repo/ns/one", "abc42", "scm-core", false);
+
+    @Mock
+    private Run<?, ?> run;
+
+    private final AtomicInteger resolved = new AtomicInteger();
+
+    @Test
+    public void shouldReuseReusableNotifier() throws IOException {
+        NotificationAction action = new NotificationAction(Collections.singletonList(INFORMATION));
+        List<NotifierProvider> providers = Collections.singletonList(provider(true));
+
+        Optional<? extends Notifier> first = action.bind(run, INFORMATION, providers);
+        Optional<? extends Notifier> second = action.bind(run, INFORMATION, providers);
+
+        assertThat(second).containsSame(first.orElseThrow());
+        assertThat(resolved).hasValue(1);
+    }
+
+    @Test
+    public void shouldAskBoundProviderOnly() throws IOException {
+        NotificationAction action = new NotificationAction(Collections.singletonList(INFORMATION));
+        AtomicInteger skipped = new AtomicInteger();
+        NotifierProvider other = (r, information) -> {
+            skipped.incrementAndGet();
+            return Optional.empty();
+        };
+        List<NotifierProvider> providers = Arrays.asList(other, provider(false));
+
+        action.bind(run, INFORMATION, providers);
+        action.bind(run, INFORMATION, providers);
+
+        assertThat(skipped).hasValue(1);
+        assertThat(resolved).hasValue(2);
+    }
+
+    @Test
+    public void shouldContainInformationOfSameRevision() {
+        NotificationAction action = new NotificationAction(Collections.singletonList(INFORMATION));
+        String url = INFORMATION.getUrl();
+
+        assertThat(action.contains(new JobInformation("git", url, "abc42", "other", false)))
+                .isTrue();
+        assertThat(action.contains(new JobInformation("git", url, "cde21", "scm-core", false)))
+                .isFalse();
+    }
+
+    private NotifierProvider provider(boolean reusable) {
+        return (r, information) -> {
+            resolved.incrementAndGet();
+            return Optional.of(new Notifier() {
+                @Override
+                public void notify(String revision, BuildStatus buildStatus) {}
+
+                @Override
+                public boolean isReusable() {
+                    return reusable;
+                }
+            });
+        };
+    }
+}
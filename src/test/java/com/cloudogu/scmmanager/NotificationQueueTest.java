@@ -0,0 +1,234 @@
+package com.cloudogu.scmmanager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+
+import com.cloudogu.scmmanager.info.JobInformation;
+import hudson.model.Run;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class NotificationQueueTest {
+
+    private static final JobInformation INFORMATION =
+            new JobInformation("git", "https://scm.hitchhiker.com/repo/ns/one", "abc42", "scm-core", false);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Mock
+    private ScheduledExecutorService scheduler;
+
+    @Mock
+    private Run<?, ?> run;
+
+    private final AtomicLong clock = new AtomicLong(1000L);
+
+    private final List<BuildStatus> sent = new ArrayList<>();
+
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private File file;
+
+    @Before
+    public void setUp() {
+        lenient().when(run.getExternalizableId()).thenReturn("hitchhiker/heart-of-gold#42");
+        file = new File(temporaryFolder.getRoot(), "scm-manager/notification-queue.json");
+    }
+
+    @Test
+    public void shouldNotSendOnCallingThread() {
+        NotificationQueue queue = queue(3);
+
+        queue.enqueue(run, success(), Collections.singletonList(INFORMATION));
+
+        assertThat(sent).isEmpty();
+        verify(scheduler).schedule(any(Runnable.class), eq(0L), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void shouldHoldBackPendingForDebounceWindow() {
+        NotificationQueue queue = queue(3);
+
+        queue.enqueue(run, pending(), Collections.singletonList(INFORMATION));
+        queue.drain();
+        assertThat(sent).isEmpty();
+
+        clock.addAndGet(NotificationQueue.DEBOUNCE);
+        queue.drain();
+        assertThat(sent).extracting(BuildStatus::getStatus).containsExactly(BuildStatus.StatusType.PENDING);
+    }
+
+    @Test
+    public void shouldSendOnlySupersedingUpdate() {
+        NotificationQueue queue = queue(3);
+
+        queue.enqueue(run, pending(), Collections.singletonList(INFORMATION));
+        queue.enqueue(run, success(), Collections.singletonList(INFORMATION));
+        queue.drain();
+
+        assertThat(sent).extracting(BuildStatus::getStatus).containsExactly(BuildStatus.StatusType.SUCCESS);
+        assertThat(queue.size()).isZero();
+    }
+
+    @Test
+    public void shouldSendUpdatesOfDifferentRevisions() {
+        NotificationQueue queue = queue(3);
+        JobInformation other =
+                new JobInformation("git", "https://scm.hitchhiker.com/repo/ns/one", "cde21", "scm-core", false);
+
+        queue.enqueue(run, success(), List.of(INFORMATION, other));
+        queue.drain();
+
+        assertThat(sent).hasSize(2);
+    }
+
+    @Test
+    public void shouldRetryWithBackoff() {
+        NotificationQueue queue = queue(3);
+        failures.set(1);
+
+        queue.enqueue(run, success(), Collections.singletonList(INFORMATION));
+        queue.drain();
+        assertThat(queue.size()).isOne();
+
+        clock.addAndGet(NotificationQueue.backoff(1) - 1);
+        queue.drain();
+        assertThat(sent).isEmpty();
+
+        clock.incrementAndGet();
+        queue.drain();
+        assertThat(sent).hasSize(1);
+        assertThat(queue.size()).isZero();
+    }
+
+    @Test
+    public void shouldEnqueueWhileDeliveryIsPending() throws Exception {
+        CompletableFuture<Void> delivery = new CompletableFuture<>();
+        CountDownLatch sending = new CountDownLatch(1);
+        Notifier notifier = new Notifier() {
+            @Override
+            public void notify(String revision, BuildStatus buildStatus) {}
+
+            @Override
+            public CompletableFuture<Void> send(String revision, BuildStatus buildStatus) {
+                sending.countDown();
+                return delivery;
+            }
+        };
+        NotifierProvider provider = (r, information) -> Optional.of(notifier);
+        NotificationQueue queue = new NotificationQueue(
+                () -> file, scheduler, () -> Collections.singletonList(provider), 10, 3, 100, clock::get);
+        queue.enqueue(run, success(), Collections.singletonList(INFORMATION));
+
+        CompletableFuture<Void> drain = CompletableFuture.runAsync(queue::drain);
+        assertThat(sending.await(10, TimeUnit.SECONDS)).isTrue();
+
+        JobInformation other =
+                new JobInformation("git", "https://scm.hitchhiker.com/repo/ns/one", "cde21", "scm-core", false);
+        CompletableFuture.runAsync(() -> queue.enqueue(run, success(), Collections.singletonList(other)))
+                .get(10, TimeUnit.SECONDS);
+        assertThat(drain).isNotDone();
+
+        delivery.complete(null);
+        drain.get(10, TimeUnit.SECONDS);
+        assertThat(queue.size()).isOne();
+    }
+
+    @Test
+    public void shouldDropUpdateAfterMaxAttempts() {
+        NotificationQueue queue = queue(2);
+        failures.set(Integer.MAX_VALUE);
+
+        queue.enqueue(run, success(), Collections.singletonList(INFORMATION));
+        queue.drain();
+        clock.addAndGet(NotificationQueue.backoff(1));
+        queue.drain();
+
+        assertThat(queue.size()).isZero();
+    }
+
+    @Test
+    public void shouldIncreaseBackoffExponentially() {
+        assertThat(NotificationQueue.backoff(2)).isEqualTo(NotificationQueue.backoff(1) * 2);
+        assertThat(NotificationQueue.backoff(3)).isEqualTo(NotificationQueue.backoff(1) * 4);
+        assertThat(NotificationQueue.backoff(100)).isEqualTo(TimeUnit.MINUTES.toMillis(30));
+    }
+
+    @Test
+    public void shouldPersistQueuedUpdates() {
+        NotificationQueue queue = queue(3);
+        failures.set(1);
+
+        queue.enqueue(run, success(), Collections.singletonList(INFORMATION));
+        queue.drain();
+
+        assertThat(file).exists();
+        assertThat(queue(3).size()).isOne();
+    }
+
+    @Test
+    public void shouldRemoveFileIfQueueIsEmpty() {
+        NotificationQueue queue = queue(3);
+
+        queue.enqueue(run, success(), Collections.singletonList(INFORMATION));
+        assertThat(file).exists();
+
+        queue.drain();
+        assertThat(file).doesNotExist();
+    }
+
+    @Test
+    public void shouldScheduleNextAttempt() {
+        NotificationQueue queue = queue(3);
+        failures.set(1);
+
+        queue.enqueue(run, success(), Collections.singletonList(INFORMATION));
+        queue.drain();
+
+        verify(scheduler).schedule(any(Runnable.class), eq(NotificationQueue.backoff(1)), eq(TimeUnit.MILLISECONDS));
+    }
+
+    private NotificationQueue queue(int maxAttempts) {
+        Notifier notifier = this::send;
+        NotifierProvider provider = (r, information) -> Optional.of(notifier);
+        return new NotificationQueue(
+                () -> file, scheduler, () -> Collections.singletonList(provider), 10, maxAttempts, 100, clock::get);
+    }
+
+    private void send(String revision, BuildStatus buildStatus) throws IOException {
+        if (failures.getAndDecrement() > 0) {
+            throw new IOException("scm-manager is not available");
+        }
+        sent.add(buildStatus);
+    }
+
+    private static BuildStatus pending() {
+        return BuildStatus.pending("heart-of-gold", "Heart of Gold", "https://jenkins.hitchhiker.com/job/42");
+    }
+
+    private static BuildStatus success() {
+        return BuildStatus.success("heart-of-gold", "Heart of Gold", "https://jenkins.hitchhiker.com/job/42");
+    }
+}
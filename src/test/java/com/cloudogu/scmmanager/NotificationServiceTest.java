@@ -9,9 +9,14 @@ import com.cloudogu.scmmanager.info.JobInformation;
 import hudson.Extension;
 import hudson.model.Result;
 import hudson.model.Run;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -32,9 +37,22 @@ public class NotificationServiceTest {
     @Mock
     private Run<?, ?> run;
 
+    @Mock
+    private ScheduledExecutorService scheduler;
+
     @InjectMocks
     private NotificationService notificationService;
 
+    private final AtomicLong clock = new AtomicLong(1000L);
+
+    private NotificationQueue queue;
+
+    @Before
+    public void setUpQueue() {
+        queue = new NotificationQueue(null, scheduler, NotifierProvider::all, 10, 3, 100, clock::get);
+        notificationService.setQueue(queue);
+    }
+
     @Test
     public void testNotify() {
         String rootUrl = jenkins.jenkins.getRootUrl();
@@ -47,6 +65,7 @@ public class NotificationServiceTest {
                 new JobInformation("git", "sample://scm.scm-manager/repo/ns/core", "abc42", "scm-core", false);
         mockJobInformation(information);
         notificationService.notify(run, Result.SUCCESS);
+        queue.drain();
 
         CapturingNotifier notifier = getNotifier();
         assertNotNull(notifier);
@@ -54,6 +73,34 @@ public class NotificationServiceTest {
         assertEquals(status, notifier.buildStatus);
     }
 
+    @Test
+    public void shouldSendPendingOnlyOnceForEveryRepository() {
+        String rootUrl = jenkins.jenkins.getRootUrl();
+
+        BuildStatus status = BuildStatus.pending(
+                "scm-manager-plugin", "scm-manager-plugin", "http://localhost:8080/jenkins/job/scm-manager-plugin/42");
+        when(buildStatusFactory.create(rootUrl, run, null)).thenReturn(status);
+
+        JobInformation core =
+                new JobInformation("git", "sample://scm.scm-manager/repo/ns/core", "abc42", "scm-core", false);
+        JobInformation plugin =
+                new JobInformation("git", "sample://scm.scm-manager/repo/ns/plugin", "cde21", "scm-core", false);
+        List<NotificationAction> actions = new ArrayList<>();
+        actions.add(new NotificationAction(Collections.singletonList(core)));
+        when(run.getActions(NotificationAction.class)).thenReturn(actions);
+
+        notificationService.notify(run, null);
+        clock.addAndGet(NotificationQueue.DEBOUNCE);
+        queue.drain();
+
+        actions.add(new NotificationAction(Arrays.asList(core, plugin)));
+        notificationService.notify(run, null);
+        clock.addAndGet(NotificationQueue.DEBOUNCE);
+        queue.drain();
+
+        assertEquals(Arrays.asList("abc42", "cde21"), getNotifier().revisions);
+    }
+
     private void mockJobInformation(JobInformation... information) {
         NotificationAction action = new NotificationAction(Arrays.asList(information));
         when(run.getActions(NotificationAction.class)).thenReturn(Collections.singletonList(action));
@@ -63,6 +110,7 @@ public class NotificationServiceTest {
     public void testNotifyWithoutInformation() {
         mockJobInformation();
         notificationService.notify(run, Result.SUCCESS);
+        queue.drain();
 
         assertNotCalled();
     }
@@ -74,6 +122,7 @@ public class NotificationServiceTest {
         mockJobInformation(information);
 
         notificationService.notify(run, Result.SUCCESS);
+        queue.drain();
         assertNotCalled();
     }
 
@@ -108,11 +157,13 @@ public class NotificationServiceTest {
 
     public static class CapturingNotifier implements Notifier {
 
+        private final List<String> revisions = new ArrayList<>();
         private String revision;
         private BuildStatus buildStatus;
 
         @Override
         public void notify(String revision, BuildStatus buildStatus) {
+            this.revisions.add(revision);
             this.revision = revision;
             this.buildStatus = buildStatus;
         }
@@ -0,0 +1,110 @@
+package com.cloudogu.scmmanager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.junit.Test;
+
+public class OkHttpClientRegistryTest {
+
+    private final ConnectionPool connectionPool = new ConnectionPool(5, 1, TimeUnit.MINUTES);
+    private final Dispatcher dispatcher = new Dispatcher();
+
+    private final OkHttpClientRegistry registry =
+            new OkHttpClientRegistry(connectionPool, dispatcher, client -> client.newBuilder().build());
+
+    @Test
+    public void shouldReturnSameClientForSameServer() {
+        OkHttpClient one = registry.client("https://scm.hitchhiker.com/scm");
+        OkHttpClient two = registry.client("https://scm.hitchhiker.com/scm/");
+
+        assertThat(one).isSameAs(two);
+    }
+
+    @Test
+    public void shouldShareConnectionPoolAndDispatcher() {
+        OkHttpClient one = registry.client("https://scm.hitchhiker.com");
+        OkHttpClient two = registry.client("ssh://scm.hitchhiker.com:2222");
+
+        assertThat(one).isNotSameAs(two);
+        assertThat(one.connectionPool()).isSameAs(connectionPool).isSameAs(two.connectionPool());
+        assertThat(one.dispatcher()).isSameAs(dispatcher).isSameAs(two.dispatcher());
+    }
+
+    @Test
+    public void shouldRemoveClientsOfReleasedServers() {
+        registry.use("hitchhiker", List.of("https://scm.hitchhiker.com/scm"));
+        registry.use("vogon", List.of("https://scm.vogon.vo"));
+        registry.client("https://scm.hitchhiker.com");
+        registry.client("https://scm.vogon.vo");
+
+        registry.release("vogon");
+
+        assertThat(registry.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldKeepClientsOfServersStillUsedByOtherOwners() {
+        registry.use("hitchhiker", List.of("https://scm.hitchhiker.com/scm"));
+        registry.use("heart-of-gold", List.of("https://scm.hitchhiker.com"));
+        registry.client("https://scm.hitchhiker.com");
+
+        registry.release("hitchhiker");
+
+        assertThat(registry.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldRemoveClientsOfServersNoLongerUsedAfterUpdate() {
+        registry.use("hitchhiker", List.of("https://scm.hitchhiker.com"));
+        registry.client("https://scm.hitchhiker.com");
+
+        registry.use("hitchhiker", List.of("https://scm.vogon.vo"));
+
+        assertThat(registry.size()).isZero();
+    }
+
+    @Test
+    public void shouldKeepClientsOfServersNeverRecorded() {
+        registry.use("hitchhiker", List.of("https://scm.hitchhiker.com"));
+        registry.client("ssh://scm.hitchhiker.com:2222");
+        registry.client("https://notify.hitchhiker.com");
+
+        registry.release("hitchhiker");
+
+        assertThat(registry.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldCreateNewClientAfterRelease() {
+        registry.use("hitchhiker", List.of("https://scm.hitchhiker.com"));
+        OkHttpClient client = registry.client("https://scm.hitchhiker.com");
+
+        registry.release("hitchhiker");
+
+        assertThat(registry.client("https://scm.hitchhiker.com")).isNotSameAs(client);
+        assertThat(client.connectionPool()).isSameAs(connectionPool);
+    }
+
+    @Test
+    public void shouldNotFollowRedirectsWithClientWithoutRedirects() {
+        OkHttpClient client = registry.clientWithoutRedirects("https://scm.hitchhiker.com");
+
+        assertThat(client.followRedirects()).isFalse();
+        assertThat(client.followSslRedirects()).isFalse();
+        assertThat(client.connectionPool()).isSameAs(connectionPool);
+        assertThat(registry.clientWithoutRedirects("https://scm.hitchhiker.com/scm")).isSameAs(client);
+    }
+
+    @Test
+    public void shouldNormalizeServerUrl() {
+        assertThat(OkHttpClientRegistry.normalize(" HTTPS://SCM.Hitchhiker.com/scm/repo/a/b "))
+                .isEqualTo("https://scm.hitchhiker.com:-1");
+        assertThat(OkHttpClientRegistry.normalize("ssh://trillian@scm.hitchhiker.com:2222/"))
+                .isEqualTo("ssh://scm.hitchhiker.com:2222");
+    }
+}
@@ -2,6 +2,7 @@ package com.cloudogu.scmmanager;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -9,12 +10,15 @@ import com.cloudogu.scmmanager.info.JobInformation;
 import hudson.model.Run;
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.net.URL;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import okhttp3.OkHttpClient;
 import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import org.junit.Before;
 import org.junit.Test;
@@ -37,6 +41,9 @@ public class ScmMigratedV1NotifierTest {
     @Mock
     private ScmV2NotifierProvider v2NotifierProvider;
 
+    private final MigratedRepositoryLocations locations =
+            new MigratedRepositoryLocations(null, TimeUnit.HOURS.toMillis(1), System::currentTimeMillis);
+
     @Before
     public void setUpServerAndClient() throws IOException {
         Dispatcher mDispatcher = new RecordedRequestDispatcher();
@@ -46,7 +53,9 @@ public class ScmMigratedV1NotifierTest {
 
     @Before
     public void prepareAuthentication() {
-        when(authenticationFactory.createHttp(run, "one")).thenReturn(response -> response.header("Auth", "Awesome"));
+        lenient()
+                .when(authenticationFactory.createHttp(run, "one"))
+                .thenReturn(response -> response.header("Auth", "Awesome"));
     }
 
     @Test
@@ -75,6 +84,7 @@ public class ScmMigratedV1NotifierTest {
         AtomicReference<JobInformation> reference = applyV2Notifier(cdl, v2Notifier);
 
         BuildStatus success = BuildStatus.success("old-repo", "Old-Repo", "https://oss.cloudogu.com");
+        when(v2Notifier.sendAndGetStatusCode("abc123", success)).thenReturn(CompletableFuture.completedFuture(204));
 
         OkHttpClient client = new OkHttpClient.Builder().followRedirects(false).build();
         notifier.setClient(client);
@@ -83,7 +93,87 @@ public class ScmMigratedV1NotifierTest {
         cdl.await(30, TimeUnit.SECONDS);
 
         assertInfo(reference);
-        Mockito.verify(v2Notifier).notify("abc123", success);
+        Mockito.verify(v2Notifier).sendAndGetStatusCode("abc123", success);
+    }
+
+    @Test
+    public void shouldRememberV2Location() throws Exception {
+        ScmMigratedV1Notifier notifier = createV1Notifier();
+        BuildStatus success = BuildStatus.success("old-repo", "Old-Repo", "https://oss.cloudogu.com");
+        applyV2Notifier(new CountDownLatch(1), v2Notifier(success, 204));
+
+        notifier.setClient(new OkHttpClient.Builder().followRedirects(false).build());
+        notifier.send("abc123", success).get();
+
+        assertEquals(Optional.of("https://localhost/scm/old/repo"), locations.get(v1Url()));
+    }
+
+    @Test
+    public void shouldNotifyRememberedV2LocationDirectly() throws Exception {
+        locations.put(v1Url(), "https://localhost/scm/old/repo");
+        ScmMigratedV1Notifier notifier = createV1Notifier();
+        BuildStatus success = BuildStatus.success("old-repo", "Old-Repo", "https://oss.cloudogu.com");
+        AtomicReference<JobInformation> reference = applyV2Notifier(new CountDownLatch(1), v2Notifier(success, 204));
+
+        notifier.send("abc123", success).get();
+
+        assertInfo(reference);
+        assertEquals(0, server.getRequestCount());
+    }
+
+    @Test
+    public void shouldResolveV2LocationAgainIfItIsGone() throws Exception {
+        locations.put(v1Url(), "https://localhost/scm/gone/repo");
+        ScmMigratedV1Notifier notifier = createV1Notifier();
+        BuildStatus success = BuildStatus.success("old-repo", "Old-Repo", "https://oss.cloudogu.com");
+        ScmV2Notifier v2Notifier = mock(ScmV2Notifier.class);
+        when(v2Notifier.sendAndGetStatusCode("abc123", success))
+                .thenReturn(CompletableFuture.completedFuture(404), CompletableFuture.completedFuture(204));
+        AtomicReference<JobInformation> reference = applyV2Notifier(new CountDownLatch(2), v2Notifier);
+
+        notifier.setClient(new OkHttpClient.Builder().followRedirects(false).build());
+        notifier.send("abc123", success).get();
+
+        assertInfo(reference);
+        assertEquals(1, server.getRequestCount());
+        assertEquals(Optional.of("https://localhost/scm/old/repo"), locations.get(v1Url()));
+    }
+
+    @Test
+    public void shouldResolveV2LocationAgainIfItRedirects() throws Exception {
+        MockWebServer movedServer = new MockWebServer();
+        movedServer.enqueue(new MockResponse().setResponseCode(301).setHeader("Location", "/scm/moved/again"));
+        movedServer.enqueue(new MockResponse().setResponseCode(405));
+        movedServer.start();
+        try {
+            String movedUrl = movedServer.url("/scm").toString();
+            locations.put(v1Url(), movedUrl + "/moved/repo");
+            ScmMigratedV1Notifier notifier = createV1Notifier();
+            BuildStatus success = BuildStatus.success("old-repo", "Old-Repo", "https://oss.cloudogu.com");
+            ScmV2Notifier moved = new ScmV2Notifier(
+                    new URL(movedUrl), new NamespaceAndName("moved", "repo"), request -> {}, false, null);
+            ScmV2Notifier resolved = v2Notifier(success, 204);
+            when(v2NotifierProvider.get(Mockito.any(Run.class), Mockito.any(JobInformation.class)))
+                    .thenReturn(Optional.of(moved), Optional.of(resolved));
+
+            notifier.setClient(new OkHttpClient.Builder().followRedirects(false).build());
+            notifier.send("abc123", success).get();
+
+            assertEquals(1, movedServer.getRequestCount());
+            assertEquals("PUT", movedServer.takeRequest().getMethod());
+            assertEquals(1, server.getRequestCount());
+            Mockito.verify(resolved).sendAndGetStatusCode("abc123", success);
+            assertEquals(Optional.of("https://localhost/scm/old/repo"), locations.get(v1Url()));
+        } finally {
+            movedServer.shutdown();
+        }
+    }
+
+    private ScmV2Notifier v2Notifier(BuildStatus buildStatus, int code) {
+        ScmV2Notifier v2Notifier = mock(ScmV2Notifier.class);
+        when(v2Notifier.sendAndGetStatusCode("abc123", buildStatus))
+                .thenReturn(CompletableFuture.completedFuture(code));
+        return v2Notifier;
     }
 
     private void assertInfo(AtomicReference<JobInformation> reference) {
@@ -95,13 +185,15 @@ public class ScmMigratedV1NotifierTest {
         assertEquals("one", received.getCredentialsId());
     }
 
-    private ScmMigratedV1Notifier createV1Notifier() {
-        int port = server.getPort();
-        String url = String.format("http://localhost:%d/scm/git/some/old/repo", port);
+    private String v1Url() {
+        return String.format("http://localhost:%d/scm/git/some/old/repo", server.getPort());
+    }
 
-        JobInformation information = new JobInformation("git", url, "abc", "one", false);
+    private ScmMigratedV1Notifier createV1Notifier() {
+        JobInformation information = new JobInformation("git", v1Url(), "abc", "one", false);
         ScmMigratedV1Notifier v1Notifier = new ScmMigratedV1Notifier(authenticationFactory, run, information);
         v1Notifier.setV2NotifierProvider(v2NotifierProvider);
+        v1Notifier.setLocations(locations);
         return v1Notifier;
     }
 
@@ -2,10 +2,13 @@ package com.cloudogu.scmmanager;
 
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.trilead.ssh2.Connection;
+import com.trilead.ssh2.ServerHostKeyVerifier;
 import com.trilead.ssh2.Session;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -24,6 +27,8 @@ public class ScmV2SshNotifierTest {
     @Mock
     SSHAuthentication authentication;
 
+    private final SshConnectionPool pool = new SshConnectionPool(8, 60_000, 10_000, System::currentTimeMillis);
+
     @Test
     public void testNotify() throws IOException {
         Session sessionMock = Mockito.mock(Session.class);
@@ -38,7 +43,22 @@ public class ScmV2SshNotifierTest {
 
     private ScmV2SshNotifier createNotifier() {
         SshConnection sshConnection = new SshConnection(connection, new NamespaceAndName("space", "name"));
-        return new ScmV2SshNotifier(sshConnection, authentication);
+        return new ScmV2SshNotifier(sshConnection, authentication, pool);
+    }
+
+    @Test
+    public void shouldReuseConnection() throws IOException {
+        Session sessionMock = Mockito.mock(Session.class);
+        when(connection.openSession()).thenReturn(sessionMock);
+        when(sessionMock.getStdin()).thenAnswer(ic -> new ByteArrayOutputStream());
+
+        createNotifier().notify("1a2b3c4d5e6f", createBuildStatus(true));
+        createNotifier().notify("1a2b3c4d5e6f", createBuildStatus(true));
+
+        verify(connection).connect(any(ServerHostKeyVerifier.class));
+        verify(authentication).authenticate(connection);
+        verify(sessionMock, times(2)).execCommand(any());
+        verify(connection, never()).close();
     }
 
     @Test
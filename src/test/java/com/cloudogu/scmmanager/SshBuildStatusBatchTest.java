@@ -0,0 +1,136 @@
+package com.cloudogu.scmmanager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.trilead.ssh2.Connection;
+import com.trilead.ssh2.Session;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SshBuildStatusBatchTest {
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private SSHAuthentication authentication;
+
+    @Mock
+    private Session batchSession;
+
+    @Mock
+    private Session singleSession;
+
+    private final ByteArrayOutputStream batchInput = new ByteArrayOutputStream();
+
+    private final SshConnectionPool pool = new SshConnectionPool(8, 60_000, 10_000, System::currentTimeMillis);
+
+    @After
+    public void resetUnsupported() {
+        SshBuildStatusBatch.resetUnsupported();
+    }
+
+    @Test
+    public void shouldSendUpdatesOverOneSession() throws IOException {
+        mockBatchSession("{\"id\":0,\"ok\":true}\n{\"id\":1,\"ok\":true}\n");
+
+        SshBuildStatusBatch batch = new SshBuildStatusBatch("scm.hitchhiker.com");
+        batch.add(notifier("heart-of-gold"), "42", BuildStatus.success("jenkins", "Jenkins", "https://jenkins.io"));
+        batch.add(notifier("restaurant"), "21", BuildStatus.failure("jenkins", "Jenkins", "https://jenkins.io"));
+        batch.send();
+
+        verify(batchSession).execCommand(SshBuildStatusBatch.BATCH_COMMAND);
+        String[] records = batchInput.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(records).hasSize(2);
+        assertThat(records[0])
+                .contains("\"id\":0", "\"name\":\"heart-of-gold\"", "\"revision\":\"42\"", "\"SUCCESS\"");
+        assertThat(records[1]).contains("\"id\":1", "\"name\":\"restaurant\"", "\"revision\":\"21\"", "\"FAILURE\"");
+    }
+
+    @Test
+    public void shouldSendUnacknowledgedUpdatesOneByOne() throws IOException {
+        mockBatchSession("{\"id\":0,\"ok\":true}\n");
+        when(singleSession.getStdin()).thenReturn(new ByteArrayOutputStream());
+
+        SshBuildStatusBatch batch = new SshBuildStatusBatch("scm.hitchhiker.com");
+        batch.add(notifier("heart-of-gold"), "42", BuildStatus.success("jenkins", "Jenkins", "https://jenkins.io"));
+        batch.add(notifier("restaurant"), "21", BuildStatus.success("jenkins", "Jenkins", "https://jenkins.io"));
+        batch.send();
+
+        verify(singleSession).execCommand("scm-ci-update --namespace hitchhiker --name restaurant --revision 21");
+    }
+
+    @Test
+    public void shouldFailRejectedUpdatesWithoutResendingThem() throws IOException {
+        mockBatchSession("{\"id\":0,\"ok\":true}\n{\"id\":1,\"ok\":false,\"message\":\"unknown revision\"}\n");
+
+        SshBuildStatusBatch batch = new SshBuildStatusBatch("scm.hitchhiker.com");
+        CompletableFuture<Void> accepted = batch.add(
+                notifier("heart-of-gold"), "42", BuildStatus.success("jenkins", "Jenkins", "https://jenkins.io"));
+        CompletableFuture<Void> rejected = batch.add(
+                notifier("restaurant"), "21", BuildStatus.success("jenkins", "Jenkins", "https://jenkins.io"));
+        batch.send();
+
+        assertThat(accepted).isCompletedWithValue(null);
+        assertThatThrownBy(rejected::join)
+                .hasCauseInstanceOf(IOException.class)
+                .hasMessageContaining("unknown revision");
+        verify(singleSession, never()).execCommand(anyString());
+    }
+
+    @Test
+    public void shouldFallBackToSingleUpdatesIfBatchIsNotSupported() throws IOException {
+        mockBatchSession("");
+        when(batchSession.getExitStatus()).thenReturn(1);
+        when(singleSession.getStdin()).thenAnswer(ic -> new ByteArrayOutputStream());
+
+        SshBuildStatusBatch batch = new SshBuildStatusBatch("scm.hitchhiker.com");
+        batch.add(notifier("heart-of-gold"), "42", BuildStatus.success("jenkins", "Jenkins", "https://jenkins.io"));
+        batch.add(notifier("restaurant"), "21", BuildStatus.success("jenkins", "Jenkins", "https://jenkins.io"));
+        batch.send();
+
+        verify(singleSession).execCommand("scm-ci-update --namespace hitchhiker --name heart-of-gold --revision 42");
+        verify(singleSession).execCommand("scm-ci-update --namespace hitchhiker --name restaurant --revision 21");
+        assertThat(SshBuildStatusBatch.isUnsupported("scm.hitchhiker.com")).isTrue();
+    }
+
+    @Test
+    public void shouldNotRememberServerAsUnsupportedWithoutExitStatus() throws IOException {
+        mockBatchSession("");
+        when(singleSession.getStdin()).thenAnswer(ic -> new ByteArrayOutputStream());
+
+        SshBuildStatusBatch batch = new SshBuildStatusBatch("scm.hitchhiker.com");
+        batch.add(notifier("heart-of-gold"), "42", BuildStatus.success("jenkins", "Jenkins", "https://jenkins.io"));
+        batch.add(notifier("restaurant"), "21", BuildStatus.success("jenkins", "Jenkins", "https://jenkins.io"));
+        batch.send();
+
+        verify(singleSession).execCommand("scm-ci-update --namespace hitchhiker --name heart-of-gold --revision 42");
+        verify(singleSession).execCommand("scm-ci-update --namespace hitchhiker --name restaurant --revision 21");
+        assertThat(SshBuildStatusBatch.isUnsupported("scm.hitchhiker.com")).isFalse();
+    }
+
+    private void mockBatchSession(String acks) throws IOException {
+        when(connection.openSession()).thenReturn(batchSession, singleSession);
+        when(batchSession.getStdin()).thenReturn(batchInput);
+        when(batchSession.getStdout()).thenReturn(new ByteArrayInputStream(acks.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private ScmV2SshNotifier notifier(String name) {
+        SshConnection sshConnection = new SshConnection(connection, new NamespaceAndName("hitchhiker", name));
+        return new ScmV2SshNotifier(sshConnection, authentication, pool);
+    }
+}
@@ -0,0 +1,67 @@
+package com.cloudogu.scmmanager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.xml.bind.JAXB;
+
+/**
+ * Compares the codecs of {@link SshCodecs} with the static {@link JAXB} methods and a new {@link ObjectMapper} per
+ * call, which were used by {@link SshConnection} before. The benchmark is not part of the test suite, it can be
+ * started from the ide or with {@code mvn exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.cloudogu.scmmanager.SshCodecsBenchmark}.
+ */
+public final class SshCodecsBenchmark {
+
+    private static final int WARMUP = 5_000;
+    private static final int ITERATIONS = 20_000;
+
+    private static final BuildStatus BUILD_STATUS =
+            BuildStatus.success("jenkins", "Jenkins", "https://jenkins.io/job/scm-manager/42");
+
+    private SshCodecsBenchmark() {}
+
+    public static void main(String[] args) throws IOException {
+        byte[] xml = toBytes(out -> JAXB.marshal(BUILD_STATUS, out));
+        byte[] json = toBytes(out -> new ObjectMapper().writeValue(out, BUILD_STATUS));
+
+        run("xml write, JAXB", () -> toBytes(out -> JAXB.marshal(BUILD_STATUS, out)));
+        run("xml write, SshCodecs", () -> toBytes(out -> SshCodecs.writeXml(out, BUILD_STATUS)));
+        run("xml read, JAXB", () -> JAXB.unmarshal(new ByteArrayInputStream(xml), BuildStatus.class));
+        run("xml read, SshCodecs", () -> SshCodecs.readXml(new ByteArrayInputStream(xml), BuildStatus.class));
+        run("json write, ObjectMapper", () -> toBytes(out -> new ObjectMapper().writeValue(out, BUILD_STATUS)));
+        run("json write, SshCodecs", () -> toBytes(out -> SshCodecs.writeJson(out, BUILD_STATUS)));
+        run("json read, ObjectMapper", () -> new ObjectMapper().readValue(json, BuildStatus.class));
+        run("json read, SshCodecs", () -> SshCodecs.readJson(new ByteArrayInputStream(json), BuildStatus.class));
+    }
+
+    private static void run(String name, Operation operation) throws IOException {
+        for (int i = 0; i < WARMUP; i++) {
+            operation.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            operation.run();
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+        System.out.printf("%-26s %8.2f us/op%n", name, (double) micros / ITERATIONS);
+    }
+
+    private static byte[] toBytes(Writer writer) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.write(out);
+        return out.toByteArray();
+    }
+
+    @FunctionalInterface
+    private interface Operation {
+        Object run() throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Writer {
+        void write(ByteArrayOutputStream out) throws IOException;
+    }
+}
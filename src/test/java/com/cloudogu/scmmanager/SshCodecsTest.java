@@ -0,0 +1,59 @@
+package com.cloudogu.scmmanager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import javax.xml.bind.JAXB;
+import org.junit.Test;
+
+public class SshCodecsTest {
+
+    @Test
+    public void shouldWriteSameXmlAsJaxb() throws IOException {
+        BuildStatus buildStatus = BuildStatus.success("jenkins", "Jenkins", "https://jenkins.io");
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        JAXB.marshal(buildStatus, expected);
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        SshCodecs.writeXml(actual, buildStatus);
+
+        assertThat(actual.toString()).isEqualTo(expected.toString());
+    }
+
+    @Test
+    public void shouldReadXml() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SshCodecs.writeXml(out, BuildStatus.failure("jenkins", "Jenkins", "https://jenkins.io"));
+        // second write uses a pooled marshaller
+        SshCodecs.writeXml(
+                new ByteArrayOutputStream(), BuildStatus.pending("jenkins", "Jenkins", "https://jenkins.io"));
+
+        BuildStatus buildStatus = SshCodecs.readXml(new ByteArrayInputStream(out.toByteArray()), BuildStatus.class);
+
+        assertThat(buildStatus.getName()).isEqualTo("jenkins");
+        assertThat(buildStatus.getStatus()).isEqualTo(BuildStatus.StatusType.FAILURE);
+    }
+
+    @Test
+    public void shouldWriteSameJsonAsObjectMapper() throws IOException {
+        BuildStatus buildStatus = BuildStatus.unstable("jenkins", "Jenkins", "https://jenkins.io");
+
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        SshCodecs.writeJson(actual, buildStatus);
+
+        assertThat(actual.toString()).isEqualTo(new ObjectMapper().writeValueAsString(buildStatus));
+    }
+
+    @Test
+    public void shouldReadJson() throws IOException {
+        String json = "{\"name\":\"jenkins\",\"status\":\"SUCCESS\"}";
+
+        BuildStatus buildStatus = SshCodecs.readJson(new ByteArrayInputStream(json.getBytes()), BuildStatus.class);
+
+        assertThat(buildStatus.getName()).isEqualTo("jenkins");
+        assertThat(buildStatus.getStatus()).isEqualTo(BuildStatus.StatusType.SUCCESS);
+    }
+}
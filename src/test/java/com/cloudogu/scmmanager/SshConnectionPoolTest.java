@@ -0,0 +1,114 @@
+package com.cloudogu.scmmanager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.trilead.ssh2.Connection;
+import com.trilead.ssh2.ServerHostKeyVerifier;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SshConnectionPoolTest {
+
+    @Mock
+    private Connection one;
+
+    @Mock
+    private Connection two;
+
+    @Mock
+    private SSHAuthentication authentication;
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private final SshConnectionPool pool = new SshConnectionPool(1, 60_000, 10_000, clock::get);
+
+    @Test
+    public void shouldReuseIdleConnection() throws IOException {
+        assertThat(pool.execute(connection(one), authentication, underlyingConnection())).isSameAs(one);
+        assertThat(pool.execute(connection(two), authentication, underlyingConnection())).isSameAs(one);
+
+        verify(two, never()).connect(any(ServerHostKeyVerifier.class));
+        assertThat(pool.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldOpenNewConnectionIfAllSessionsAreInUse() throws IOException {
+        Connection nested = pool.execute(
+                connection(one),
+                authentication,
+                outer -> pool.execute(connection(two), authentication, underlyingConnection()));
+
+        assertThat(nested).isSameAs(two);
+        assertThat(pool.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldNotShareConnectionsBetweenCredentials() throws IOException {
+        when(authentication.getFingerprint()).thenReturn("trillian", "dent");
+
+        pool.execute(connection(one), authentication, underlyingConnection());
+        assertThat(pool.execute(connection(two), authentication, underlyingConnection())).isSameAs(two);
+    }
+
+    @Test
+    public void shouldCloseIdleConnections() throws IOException {
+        pool.execute(connection(one), authentication, underlyingConnection());
+
+        clock.set(59_999);
+        pool.evictIdle();
+        assertThat(pool.size()).isEqualTo(1);
+
+        clock.set(60_000);
+        pool.evictIdle();
+        assertThat(pool.size()).isZero();
+        verify(one).close();
+    }
+
+    @Test
+    public void shouldReplaceBrokenConnection() throws IOException {
+        pool.execute(connection(one), authentication, underlyingConnection());
+        doThrow(new IOException("broken pipe")).when(one).sendIgnorePacket();
+
+        clock.set(10_000);
+        assertThat(pool.execute(connection(two), authentication, underlyingConnection())).isSameAs(two);
+
+        verify(one).close();
+        assertThat(pool.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldRetryOnNewConnectionIfCommandFails() throws IOException {
+        pool.execute(connection(one), authentication, underlyingConnection());
+
+        AtomicInteger attempts = new AtomicInteger();
+        Connection result = pool.execute(connection(two), authentication, connection -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IOException("connection reset");
+            }
+            return connection.getConnection();
+        });
+
+        assertThat(result).isSameAs(two);
+        assertThat(attempts).hasValue(2);
+        verify(one).close();
+    }
+
+    private SshConnection connection(Connection connection) {
+        return new SshConnection(connection, new NamespaceAndName("hitchhiker", "heart-of-gold"));
+    }
+
+    private static SshConnectionPool.Action<Connection> underlyingConnection() {
+        return SshConnection::getConnection;
+    }
+}
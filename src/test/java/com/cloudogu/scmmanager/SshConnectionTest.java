@@ -0,0 +1,102 @@
+package com.cloudogu.scmmanager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.trilead.ssh2.Connection;
+import com.trilead.ssh2.Session;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SshConnectionTest {
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private Session session;
+
+    @Test
+    public void shouldExecuteCommandAsync() throws IOException, ExecutionException, InterruptedException {
+        when(connection.openSession()).thenReturn(session);
+        when(session.getStdout()).thenReturn(stdout("{\"name\":\"jenkins\",\"status\":\"SUCCESS\"}"));
+
+        BuildStatus buildStatus = new SshConnection(connection, null)
+                .command("scm-ci-status")
+                .withOutput(BuildStatus.class)
+                .jsonAsync()
+                .get();
+
+        verify(session).execCommand("scm-ci-status");
+        assertThat(buildStatus.getStatus()).isEqualTo(BuildStatus.StatusType.SUCCESS);
+    }
+
+    @Test
+    public void shouldPassOutputLineByLine() throws IOException, ExecutionException, InterruptedException {
+        when(connection.openSession()).thenReturn(session);
+        when(session.getStdout()).thenReturn(stdout("one\ntwo\nthree\n"));
+
+        List<String> lines = new ArrayList<>();
+        new SshConnection(connection, null).command("scm-log").execAsync(lines::add).get();
+
+        assertThat(lines).containsExactly("one", "two", "three");
+    }
+
+    @Test
+    public void shouldCloseSessionAfterTimeout() throws IOException {
+        when(connection.openSession()).thenReturn(session);
+        when(session.getStdout()).thenReturn(blockingStdout());
+
+        CompletableFuture<BuildStatus> future = new SshConnection(connection, null)
+                .command("scm-ci-status")
+                .withTimeout(50, TimeUnit.MILLISECONDS)
+                .withOutput(BuildStatus.class)
+                .jsonAsync();
+
+        assertThatThrownBy(future::get).hasCauseInstanceOf(TimeoutException.class);
+        verify(session, timeout(1000).atLeastOnce()).close();
+    }
+
+    @Test
+    public void shouldCloseSessionIfCancelled() throws IOException {
+        when(connection.openSession()).thenReturn(session);
+        when(session.getStdout()).thenReturn(blockingStdout());
+
+        CompletableFuture<Void> future =
+                new SshConnection(connection, null).command("scm-log").execAsync(line -> {});
+        verify(session, timeout(1000)).getStdout();
+        future.cancel(true);
+
+        verify(session, timeout(1000).atLeastOnce()).close();
+        verify(session, atLeastOnce()).execCommand("scm-log");
+    }
+
+    private static ByteArrayInputStream stdout(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @SuppressWarnings("resource")
+    private static PipedInputStream blockingStdout() throws IOException {
+        PipedInputStream stdout = new PipedInputStream();
+        new PipedOutputStream(stdout);
+        return stdout;
+    }
+}
@@ -0,0 +1,155 @@
+package com.cloudogu.scmmanager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.trilead.ssh2.Connection;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SshKnownHostsTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void setUpFile() {
+        file = new File(temporaryFolder.getRoot(), "scm-manager/known_hosts");
+    }
+
+    @Test
+    public void shouldPinUnknownHostKey() throws IOException, GeneralSecurityException {
+        SshKnownHosts knownHosts = new SshKnownHosts(true, () -> file);
+
+        assertThat(knownHosts.verifyServerHostKey("scm.hitchhiker.com", 2222, "ssh-rsa", rsaKey()))
+                .isTrue();
+
+        assertThat(Files.readString(file.toPath())).startsWith("[scm.hitchhiker.com]:2222 ssh-rsa ");
+    }
+
+    @Test
+    public void shouldRefuseChangedHostKey() throws IOException, GeneralSecurityException {
+        SshKnownHosts knownHosts = new SshKnownHosts(true, () -> file);
+        byte[] key = rsaKey();
+        knownHosts.verifyServerHostKey("scm.hitchhiker.com", 22, "ssh-rsa", key);
+
+        assertThat(knownHosts.verifyServerHostKey("scm.hitchhiker.com", 22, "ssh-rsa", key))
+                .isTrue();
+        assertThat(knownHosts.verifyServerHostKey("scm.hitchhiker.com", 22, "ssh-rsa", rsaKey()))
+                .isFalse();
+    }
+
+    @Test
+    public void shouldReadPinnedHostKeysFromFile() throws IOException, GeneralSecurityException {
+        byte[] key = rsaKey();
+        new SshKnownHosts(true, () -> file).verifyServerHostKey("scm.hitchhiker.com", 2222, "ssh-rsa", key);
+
+        SshKnownHosts knownHosts = new SshKnownHosts(true, () -> file);
+
+        assertThat(knownHosts.verifyServerHostKey("scm.hitchhiker.com", 2222, "ssh-rsa", key))
+                .isTrue();
+        assertThat(knownHosts.verifyServerHostKey("scm.hitchhiker.com", 2222, "ssh-rsa", rsaKey()))
+                .isFalse();
+    }
+
+    @Test
+    public void shouldSeparatePorts() throws IOException, GeneralSecurityException {
+        SshKnownHosts knownHosts = new SshKnownHosts(true, () -> file);
+        knownHosts.verifyServerHostKey("scm.hitchhiker.com", 2222, "ssh-rsa", rsaKey());
+
+        assertThat(knownHosts.verifyServerHostKey("scm.hitchhiker.com", 2223, "ssh-rsa", rsaKey()))
+                .isTrue();
+    }
+
+    @Test
+    public void shouldAcceptAnyHostKeyWithoutVerification() throws IOException, GeneralSecurityException {
+        SshKnownHosts knownHosts = new SshKnownHosts(false, () -> file);
+        knownHosts.verifyServerHostKey("scm.hitchhiker.com", 22, "ssh-rsa", rsaKey());
+
+        assertThat(knownHosts.verifyServerHostKey("scm.hitchhiker.com", 22, "ssh-rsa", rsaKey()))
+                .isTrue();
+        assertThat(file).doesNotExist();
+    }
+
+    @Test
+    public void shouldRecordHandshakeTimings() {
+        SshKnownHosts knownHosts = new SshKnownHosts(true, () -> file);
+
+        knownHosts.connected(connection(), TimeUnit.MILLISECONDS.toNanos(42));
+        knownHosts.connected(connection(), TimeUnit.MILLISECONDS.toNanos(21));
+
+        assertThat(knownHosts.getHandshakeTimings())
+                .hasEntrySatisfying("[scm.hitchhiker.com]:2222", timings -> {
+                    assertThat(timings.getCount()).isEqualTo(2);
+                    assertThat(timings.getLastMillis()).isEqualTo(21);
+                    assertThat(timings.getAverageMillis()).isEqualTo(31);
+                });
+    }
+
+    @Test
+    public void shouldNotChangeAlgorithmsOfUnknownHosts() {
+        SshKnownHosts knownHosts = new SshKnownHosts(true, () -> file);
+        Connection connection = connection();
+
+        knownHosts.prepare(connection);
+
+        verify(connection, never()).setServerHostKeyAlgorithms(any());
+        verify(connection, never()).setClient2ServerCiphers(any());
+    }
+
+    @Test
+    public void shouldPreferPinnedHostKeyAlgorithmAfterRestart() throws IOException, GeneralSecurityException {
+        new SshKnownHosts(true, () -> file).verifyServerHostKey("scm.hitchhiker.com", 2222, "ssh-rsa", rsaKey());
+
+        SshKnownHosts restarted = new SshKnownHosts(true, () -> file);
+        Connection connection = connection();
+        restarted.prepare(connection);
+
+        verify(connection).setServerHostKeyAlgorithms(argThat(algorithms -> algorithms[0].equals("ssh-rsa")));
+    }
+
+    private Connection connection() {
+        Connection connection = mock(Connection.class);
+        when(connection.getHostname()).thenReturn("scm.hitchhiker.com");
+        when(connection.getPort()).thenReturn(2222);
+        return connection;
+    }
+
+    private static byte[] rsaKey() throws IOException, GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        RSAPublicKey key = (RSAPublicKey) generator.generateKeyPair().getPublic();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DataOutputStream data = new DataOutputStream(out)) {
+            writeString(data, "ssh-rsa".getBytes(StandardCharsets.US_ASCII));
+            writeString(data, key.getPublicExponent().toByteArray());
+            writeString(data, key.getModulus().toByteArray());
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream data, byte[] value) throws IOException {
+        data.writeInt(value.length);
+        data.write(value);
+    }
+}
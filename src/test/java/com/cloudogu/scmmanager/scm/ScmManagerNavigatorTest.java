@@ -4,6 +4,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
 
 import com.cloudogu.scmmanager.scm.api.Repository;
+import com.cloudogu.scmmanager.scm.api.RepositoryPages;
 import com.cloudogu.scmmanager.scm.api.ScmManagerApi;
 import com.cloudogu.scmmanager.scm.api.ScmManagerApiFactory;
 import de.otto.edison.hal.Link;
@@ -13,7 +14,6 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.function.Predicate;
 import jenkins.scm.api.SCMSource;
@@ -24,6 +24,7 @@ import org.junit.runner.RunWith;
 import org.jvnet.hudson.test.JenkinsRule;
 import org.mockito.Answers;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
@@ -146,13 +147,36 @@ public class ScmManagerNavigatorTest {
         assertThat(source).isInstanceOf(ScmManagerSource.class);
     }
 
+    @Test
+    public void shouldPrefetchUpcomingRepositories() throws IOException, InterruptedException {
+        Repository heartOfGold = repository("git", "heart-of-gold");
+        Repository firefly = repository("git", "firefly");
+        Repository elysium = repository("git", "elysium");
+        mockApiResponse(heartOfGold, firefly, elysium);
+        when(observer.isObserving()).thenReturn(true);
+
+        ScmManagerNavigator navigator = navigator("git");
+        navigator.setTraits(Collections.singletonList(new TagDiscoveryTrait()));
+        navigator.visitSources(observer);
+
+        InOrder inOrder = inOrder(observer);
+        inOrder.verify(observer).observe("heart-of-gold");
+        inOrder.verify(observer).observe("firefly");
+        inOrder.verify(observer).observe("elysium");
+
+        verify(api).prefetch(named("firefly"), eq(false), eq(true), eq(false));
+        verify(api).prefetch(named("elysium"), eq(false), eq(true), eq(false));
+        verify(api, never()).prefetch(named("heart-of-gold"), anyBoolean(), anyBoolean(), anyBoolean());
+    }
+
     @Test(expected = IOException.class)
     public void shouldThrowIOExceptionOnError() throws IOException, InterruptedException, ExecutionException {
         mockApiResponse(repository("git", "heart-of-gold"));
 
-        CompletableFuture<List<Repository>> repositoryRequest = mock(CompletableFuture.class);
-        when(api.getRepositories(NAMESPACE)).thenReturn(repositoryRequest);
-        when(repositoryRequest.get()).thenThrow(new ExecutionException("test", null));
+        RepositoryPages pages = mock(RepositoryPages.class);
+        when(api.getRepositoryPages(NAMESPACE)).thenReturn(pages);
+        when(pages.hasNext()).thenReturn(true);
+        when(pages.next()).thenThrow(new ExecutionException("test", null));
 
         ScmManagerNavigator navigator = navigator("git");
         navigator.visitSources(observer);
@@ -183,14 +207,16 @@ public class ScmManagerNavigatorTest {
         return new Repository(NAMESPACE, name, type, links);
     }
 
+    private Repository named(String name) {
+        return argThat(repository -> name.equals(repository.getName()));
+    }
+
     private void mockApiResponse(Repository... repositories) {
         when(apiFactory.create(observer.getContext(), SERVER_URL, CRENDETIALS)).thenReturn(api);
         when(observer.getIncludes()).thenReturn(null);
         lenient()
-                .when(api.getRepositories(NAMESPACE))
-                .thenReturn(CompletableFuture.completedFuture(Arrays.asList(repositories)));
-        lenient()
-                .when(api.getRepositories())
-                .thenReturn(CompletableFuture.completedFuture(Arrays.asList(repositories)));
+                .when(api.getRepositoryPages(NAMESPACE))
+                .thenReturn(RepositoryPages.of(Arrays.asList(repositories)));
+        lenient().when(api.getRepositoryPages()).thenReturn(RepositoryPages.of(Arrays.asList(repositories)));
     }
 }
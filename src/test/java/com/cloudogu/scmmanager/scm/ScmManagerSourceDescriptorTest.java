@@ -3,7 +3,6 @@ package com.cloudogu.scmmanager.scm;
 import static de.otto.edison.hal.Link.link;
 import static de.otto.edison.hal.Link.linkBuilder;
 import static de.otto.edison.hal.Links.linkingTo;
-import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
@@ -20,8 +19,10 @@ import hudson.model.TaskListener;
 import hudson.scm.SCM;
 import hudson.util.ComboBoxModel;
 import hudson.util.FormValidation;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import jenkins.scm.api.SCMHead;
 import jenkins.scm.api.SCMHeadEvent;
@@ -224,7 +225,7 @@ public class ScmManagerSourceDescriptorTest {
         Repository dragon = createDragon();
         Repository hog = createHoG();
 
-        ScmManagerApiTestMocks.mockResult(when(api.getRepositories()), asList(spaceX, dragon, hog));
+        mockRepositories(spaceX, dragon, hog);
 
         descriptor.doFillRepositoryItems(scmSourceOwner, "http://example.com", "myAuth", "");
         FormValidation formValidation =
@@ -240,7 +241,7 @@ public class ScmManagerSourceDescriptorTest {
         Repository dragon = createDragon();
         Repository hog = createHoG();
 
-        ScmManagerApiTestMocks.mockResult(when(api.getRepositories()), asList(spaceX, dragon, hog));
+        mockRepositories(spaceX, dragon, hog);
         ScmManagerApiTestMocks.mockError(
                 new IllegalArgumentException("Invalid repository representation: no_such/repo"),
                 when(api.getRepository("no_such", "repo")));
@@ -255,7 +256,8 @@ public class ScmManagerSourceDescriptorTest {
 
     @Test
     public void shouldReturnEmptyListOnError() throws InterruptedException, ExecutionException {
-        ScmManagerApiTestMocks.mockError(new RuntimeException("not found"), when(api.getRepositories()));
+        when(api.forEachRepository(any()))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("not found")));
 
         ComboBoxModel model = descriptor.doFillRepositoryItems(scmSourceOwner, "http://example.com", "myAuth", null);
 
@@ -265,7 +267,7 @@ public class ScmManagerSourceDescriptorTest {
     @Test
     public void shouldReturnRepositories() throws InterruptedException, ExecutionException {
         when(repositoryPredicate.test(any())).thenReturn(true);
-        ScmManagerApiTestMocks.mockResult(when(api.getRepositories()), asList(createSpaceX(), createDragon()));
+        mockRepositories(createSpaceX(), createDragon());
 
         ComboBoxModel model = descriptor.doFillRepositoryItems(scmSourceOwner, "http://example.com", "myAuth", null);
 
@@ -283,13 +285,24 @@ public class ScmManagerSourceDescriptorTest {
             return "git".equals(repository.getType());
         });
 
-        ScmManagerApiTestMocks.mockResult(when(api.getRepositories()), asList(spaceX, dragon, hog));
+        mockRepositories(spaceX, dragon, hog);
 
         ComboBoxModel model = descriptor.doFillRepositoryItems(scmSourceOwner, "http://example.com", "myAuth", null);
 
         assertThat(model.stream()).containsExactly("space/X (git)");
     }
 
+    @SuppressWarnings("unchecked")
+    private void mockRepositories(Repository... repositories) {
+        when(api.forEachRepository(any())).thenAnswer(ic -> {
+            Consumer<Repository> consumer = ic.getArgument(0, Consumer.class);
+            for (Repository repository : repositories) {
+                consumer.accept(repository);
+            }
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
     private Repository createHoG() {
         return new Repository("hitchhiker", "hog", "git", sshLinks());
     }
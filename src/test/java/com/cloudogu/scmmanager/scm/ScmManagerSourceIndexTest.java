@@ -0,0 +1,101 @@
+package com.cloudogu.scmmanager.scm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+
+import com.cloudogu.scmmanager.scm.RepositoryRepresentationUtil.RepositoryRepresentation;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import jenkins.scm.api.SCMSource;
+import jenkins.scm.api.SCMSourceOwner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ScmManagerSourceIndexTest {
+
+    private static final RepositoryRepresentation HEART_OF_GOLD =
+            new RepositoryRepresentation("hitchhiker", "heart-of-gold", "git");
+
+    private static final RepositoryRepresentation VOGON = new RepositoryRepresentation("hitchhiker", "vogon", "git");
+
+    private final ScmManagerSourceIndex index = new ScmManagerSourceIndex();
+
+    @Test
+    public void shouldMatchEverySourceUntilBuilt() {
+        SCMSource source = source(owner("vogon"), "hitchhiker/vogon (git)");
+
+        assertThat(index.mayMatch(HEART_OF_GOLD, source)).isTrue();
+    }
+
+    @Test
+    public void shouldMatchOnlySourcesOfIndexedRepository() {
+        SCMSourceOwner heartOfGold = owner("heart-of-gold");
+        SCMSource heartOfGoldSource = source(heartOfGold, "hitchhiker/heart-of-gold (git)");
+        SCMSourceOwner vogon = owner("vogon");
+        SCMSource vogonSource = source(vogon, "hitchhiker/vogon (git)");
+
+        index.rebuild(List.of(heartOfGold, vogon));
+
+        assertThat(index.mayMatch(HEART_OF_GOLD, heartOfGoldSource)).isTrue();
+        assertThat(index.mayMatch(HEART_OF_GOLD, vogonSource)).isFalse();
+        assertThat(index.mayMatch(VOGON, vogonSource)).isTrue();
+    }
+
+    @Test
+    public void shouldMatchSourcesOfUnknownOwners() {
+        index.rebuild(Collections.emptyList());
+
+        SCMSource source = source(owner("vogon"), "hitchhiker/vogon (git)");
+
+        assertThat(index.mayMatch(HEART_OF_GOLD, source)).isTrue();
+    }
+
+    @Test
+    public void shouldUpdateIndexOnChangedRepository() {
+        SCMSourceOwner owner = owner("heart-of-gold");
+        SCMSource source = source(owner, "hitchhiker/heart-of-gold (git)");
+        index.rebuild(List.of(owner));
+
+        SCMSource changed = source(owner, "hitchhiker/vogon (git)");
+        index.index(owner);
+
+        assertThat(index.mayMatch(HEART_OF_GOLD, changed)).isFalse();
+        assertThat(index.mayMatch(VOGON, changed)).isTrue();
+        assertThat(index.mayMatch(VOGON, source)).isTrue();
+    }
+
+    @Test
+    public void shouldRemoveDescendantsOfDeletedFolder() {
+        SCMSourceOwner owner = owner("galaxy/heart-of-gold");
+        SCMSource source = source(owner, "hitchhiker/heart-of-gold (git)");
+        SCMSourceOwner other = owner("vogon");
+        source(other, "hitchhiker/heart-of-gold (git)");
+        index.rebuild(List.of(owner, other));
+
+        index.removeDescendants("galaxy");
+
+        // the owner is no longer known, so its sources have to be matched completely
+        assertThat(index.mayMatch(VOGON, source)).isTrue();
+    }
+
+    private SCMSourceOwner owner(String fullName) {
+        SCMSourceOwner owner = mock(SCMSourceOwner.class);
+        lenient().when(owner.getFullName()).thenReturn(fullName);
+        lenient().when(owner.getSCMSources()).thenReturn(new ArrayList<>());
+        return owner;
+    }
+
+    private SCMSource source(SCMSourceOwner owner, String repository) {
+        ScmManagerSource source = mock(ScmManagerSource.class);
+        lenient().when(source.getRepository()).thenReturn(repository);
+        lenient().when(source.getOwner()).thenReturn(owner);
+        List<SCMSource> sources = new ArrayList<>();
+        sources.add(source);
+        lenient().when(owner.getSCMSources()).thenReturn(sources);
+        return source;
+    }
+}
@@ -10,6 +10,7 @@ import static org.mockito.Mockito.*;
 import com.cloudogu.scmmanager.scm.api.Branch;
 import com.cloudogu.scmmanager.scm.api.Changeset;
 import com.cloudogu.scmmanager.scm.api.CloneInformation;
+import com.cloudogu.scmmanager.scm.api.IllegalReturnStatusException;
 import com.cloudogu.scmmanager.scm.api.PullRequest;
 import com.cloudogu.scmmanager.scm.api.Repository;
 import com.cloudogu.scmmanager.scm.api.ScmManagerApi;
@@ -24,10 +25,14 @@ import hudson.model.Action;
 import hudson.model.TaskListener;
 import hudson.util.StreamTaskListener;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import jenkins.scm.api.SCMEvent;
 import jenkins.scm.api.SCMHead;
 import jenkins.scm.api.SCMHeadEvent;
@@ -267,6 +272,92 @@ public class ScmManagerSourceTest {
                 .isEqualTo("42");
     }
 
+    @Test
+    public void shouldObserveOnlyRemainingHeadsOfRemoveEvent() throws IOException, InterruptedException {
+        when(api.getRepository("space", "X")).thenReturn(completedFuture(REPOSITORY));
+        when(api.getBranch(REPOSITORY, "feature/hog")).thenReturn(completedFuture(new Branch("feature/hog", "42")));
+        when(api.getBranch(REPOSITORY, "feature/vogon"))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalReturnStatusException(404)));
+        when(request.isFetchBranches()).thenReturn(true);
+
+        SCMHeadEvent<?> event = removeEvent(
+                new ScmManagerHead(CLONE_INFORMATION, "feature/hog"),
+                new ScmManagerHead(CLONE_INFORMATION, "feature/vogon"));
+
+        source.handleRequest(observer, event, request);
+
+        assertThat(head.getAllValues()).extracting(SCMHead::getName).containsExactly("feature/hog");
+        verify(api, never()).getBranches(REPOSITORY);
+    }
+
+    @Test
+    public void shouldObserveNothingIfAllHeadsOfRemoveEventAreGone() throws IOException, InterruptedException {
+        when(api.getRepository("space", "X")).thenReturn(completedFuture(REPOSITORY));
+        when(api.getTag(REPOSITORY, "4.2"))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalReturnStatusException(404)));
+        when(request.isFetchTags()).thenReturn(true);
+
+        SCMHeadEvent<?> event = removeEvent(new ScmManagerTag(CLONE_INFORMATION, "4.2", 0L));
+
+        source.handleRequest(observer, event, request);
+
+        verifyThatNothingIsProcessed();
+        verify(api, never()).getTags(REPOSITORY);
+    }
+
+    @Test
+    public void shouldObserveOnlyOpenPullRequestsOfRemoveEvent() throws IOException, InterruptedException {
+        when(api.getRepository("space", "X")).thenReturn(completedFuture(REPOSITORY));
+        when(api.getPullRequest(REPOSITORY, "42")).thenReturn(completedFuture(createPullRequest()));
+        when(api.getPullRequest(REPOSITORY, "43")).thenReturn(completedFuture(createPullRequest("43", "MERGED")));
+        when(api.getPullRequest(REPOSITORY, "44")).thenReturn(completedFuture(createPullRequest("44", "REJECTED")));
+        when(request.isFetchPullRequests()).thenReturn(true);
+
+        SCMHeadEvent<?> event = removeEvent(pullRequestHead("42"), pullRequestHead("43"), pullRequestHead("44"));
+
+        source.handleRequest(observer, event, request);
+
+        assertThat(head.getAllValues()).extracting(SCMHead::getName).containsExactly("PR-42");
+        verify(api, never()).getPullRequests(REPOSITORY);
+    }
+
+    private PullRequest createPullRequest(String id, String status) {
+        return new PullRequest(id, status, new Branch("main", "21"), new Branch("develop", "42"), CLONE_INFORMATION);
+    }
+
+    private ScmManagerPullRequestHead pullRequestHead(String id) {
+        return new ScmManagerPullRequestHead(
+                CLONE_INFORMATION,
+                id,
+                new ScmManagerHead(CLONE_INFORMATION, "main"),
+                new ScmManagerHead(CLONE_INFORMATION, "develop"));
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void shouldFailRemoveEventIfHeadCouldNotBeLoaded() throws IOException, InterruptedException {
+        when(api.getRepository("space", "X")).thenReturn(completedFuture(REPOSITORY));
+        when(api.getBranch(REPOSITORY, "feature/hog"))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalReturnStatusException(500)));
+        when(request.isFetchBranches()).thenReturn(true);
+
+        SCMHeadEvent<?> event = removeEvent(new ScmManagerHead(CLONE_INFORMATION, "feature/hog"));
+
+        source.handleRequest(observer, event, request);
+    }
+
+    private SCMHeadEvent<?> removeEvent(SCMHead... heads) {
+        Map<SCMHead, SCMRevision> headsOfEvent = new LinkedHashMap<>();
+        for (SCMHead scmHead : heads) {
+            headsOfEvent.put(scmHead, null);
+        }
+        SCMHeadEvent<?> event = mock(SCMHeadEvent.class);
+        when(event.getType()).thenReturn(SCMEvent.Type.REMOVED);
+        when(event.heads(source)).thenReturn(headsOfEvent);
+        // the observer of an event includes the heads of the event
+        when(observer.getIncludes()).thenReturn(headsOfEvent.keySet());
+        return event;
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void shouldThrowIllegalArgumentExceptionForNonScmManagerHeads() {
         source.build(new SCMHead("throw-it"));
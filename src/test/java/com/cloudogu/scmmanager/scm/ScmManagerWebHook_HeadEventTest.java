@@ -1,10 +1,12 @@
 package com.cloudogu.scmmanager.scm;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -128,6 +130,20 @@ public class ScmManagerWebHook_HeadEventTest {
         }));
     }
 
+    @Test
+    public void shouldTriggerAsyncHookOnWorker() throws ServletException, IOException {
+        JSONObject branch = new JSONObject();
+        branch.put("name", "feature");
+        form.put("deletedBranches", array(branch));
+        hook.setAsync(true);
+
+        HttpResponse httpResponse = hook.doNotify(request);
+
+        httpResponse.generateResponse(request, response, null);
+        verify(response).setStatus(202);
+        verify(hook, timeout(1000)).fireNow(any(ScmManagerHeadEvent.class));
+    }
+
     @Test
     public void shouldTriggerForCreatedOrModifiedBranches() throws ServletException, IOException {
         JSONObject branch = new JSONObject();
@@ -2,6 +2,10 @@ package com.cloudogu.scmmanager.scm;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.util.ArrayList;
+import java.util.List;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
@@ -17,4 +21,54 @@ public class ServerIdentificationTest {
 
         assertThat(match).isFalse();
     }
+
+    @Test
+    public void shouldMatchServerUrlAndIdentifications() {
+        ServerIdentification serverIdentification = new ServerIdentification(form());
+
+        assertThat(serverIdentification.matches("http://localhost/scm")).isTrue();
+        assertThat(serverIdentification.matches("ssh://hitchhiker.com:2222/")).isTrue();
+        assertThat(serverIdentification.matches("https://scm.hitchhiker.com/scm")).isTrue();
+        assertThat(serverIdentification.matches("http://vogon/scm")).isFalse();
+    }
+
+    @Test
+    public void shouldReturnSameResultForRepeatedServerUrl() {
+        ServerIdentification serverIdentification = new ServerIdentification(form());
+
+        assertThat(serverIdentification.matches("http://vogon/scm")).isFalse();
+        assertThat(serverIdentification.matches("http://vogon/scm")).isFalse();
+        assertThat(serverIdentification.matches("ssh://hitchhiker.com:2222/")).isTrue();
+        assertThat(serverIdentification.matches("ssh://hitchhiker.com:2222/")).isTrue();
+    }
+
+    @Test
+    public void shouldMatchManyIdentifications() {
+        List<ServerIdentification.Identification> identifications = new ArrayList<>();
+        for (int i = 0; i <= ServerIdentification.MATCHER_THRESHOLD; i++) {
+            identifications.add(new ServerIdentification.Identification("ssh", "ssh://scm-" + i + ".hitchhiker.com"));
+        }
+        ServerIdentification serverIdentification =
+                new ServerIdentification("http://localhost/scm", identifications);
+
+        assertThat(serverIdentification.matches("ssh://scm-7.hitchhiker.com:2222/")).isTrue();
+        assertThat(serverIdentification.matches("ssh://scm.vogon.vo:2222/")).isFalse();
+    }
+
+    private JSONObject form() {
+        JSONObject form = new JSONObject();
+        form.put("server", "http://localhost/scm");
+        JSONArray identifications = new JSONArray();
+        identifications.add(identification("ssh", "ssh://hitchhiker.com:2222"));
+        identifications.add(identification("fqdn", "scm.hitchhiker.com"));
+        form.put("identifications", identifications);
+        return form;
+    }
+
+    private JSONObject identification(String name, String value) {
+        JSONObject identification = new JSONObject();
+        identification.put("name", name);
+        identification.put("value", value);
+        return identification;
+    }
 }
@@ -0,0 +1,139 @@
+package com.cloudogu.scmmanager.scm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares {@link SubstringMatcher} and {@link ServerIdentification} with the linear {@code contains} scan over all
+ * identifications, which was used by {@link ServerIdentification} before. The benchmark is not part of the test
+ * suite, it can be started from the ide or with {@code mvn exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.cloudogu.scmmanager.scm.SubstringMatcherBenchmark}.
+ */
+public final class SubstringMatcherBenchmark {
+
+    private static final int WARMUP = 2_000;
+    private static final int ITERATIONS = 2_000;
+
+    // a hook is matched against all sources, so each operation of the per hook cases is much more expensive
+    private static final int HOOK_WARMUP = 50;
+    private static final int HOOK_ITERATIONS = 50;
+
+    private static final int SOURCES = 5_000;
+
+    // every tenth source with a distinct url uses one of the aliases of the server of the hook
+    private static final int MATCHING_SOURCE_RATIO = 10;
+
+    private static final int[] IDENTIFICATION_COUNTS = {1, 10, 100, 1_000};
+
+    // a source url which matches none of the identifications, so that the linear scan has to check all of them
+    private static final String SERVER_URL = "ssh://scm.vogon.vo:2222/repo/hitchhiker/heart-of-gold";
+
+    // results of all operations are summed up and printed, so that the jit cannot drop the measured work
+    private static long sink;
+
+    private SubstringMatcherBenchmark() {}
+
+    public static void main(String[] args) {
+        for (int count : IDENTIFICATION_COUNTS) {
+            List<String> values = values(count);
+            List<ServerIdentification.Identification> identifications = identifications(values);
+            SubstringMatcher matcher = new SubstringMatcher(values);
+            List<String> sourceUrls = sourceUrls(values);
+
+            run(count + " values, contains scan", WARMUP, ITERATIONS, () -> values.stream()
+                    .anyMatch(SERVER_URL::contains));
+            run(count + " values, SubstringMatcher", WARMUP, ITERATIONS, () -> matcher.find(SERVER_URL));
+
+            // a new identification per operation, as for every hook, and many sources with the same server url
+            run(count + " values, " + SOURCES + " sources, same url", HOOK_WARMUP, HOOK_ITERATIONS, () -> {
+                ServerIdentification identification =
+                        new ServerIdentification("https://scm.hitchhiker.com", identifications);
+                int matches = 0;
+                for (int i = 0; i < SOURCES; i++) {
+                    matches += identification.matches(SERVER_URL) ? 1 : 0;
+                }
+                return matches;
+            });
+            run(count + " values, " + SOURCES + " sources, same url, scan", HOOK_WARMUP, HOOK_ITERATIONS, () -> {
+                int matches = 0;
+                for (int i = 0; i < SOURCES; i++) {
+                    matches += scan(values, SERVER_URL) ? 1 : 0;
+                }
+                return matches;
+            });
+
+            // sources of many servers, some of them use one of the aliases of the server of the hook
+            run(count + " values, " + SOURCES + " sources, distinct urls", HOOK_WARMUP, HOOK_ITERATIONS, () -> {
+                ServerIdentification identification =
+                        new ServerIdentification("https://scm.hitchhiker.com", identifications);
+                int matches = 0;
+                for (String sourceUrl : sourceUrls) {
+                    matches += identification.matches(sourceUrl) ? 1 : 0;
+                }
+                return matches;
+            });
+            run(count + " values, " + SOURCES + " sources, distinct urls, scan", HOOK_WARMUP, HOOK_ITERATIONS, () -> {
+                int matches = 0;
+                for (String sourceUrl : sourceUrls) {
+                    matches += scan(values, sourceUrl) ? 1 : 0;
+                }
+                return matches;
+            });
+        }
+        System.out.println("sink: " + sink);
+    }
+
+    private static boolean scan(List<String> values, String sourceUrl) {
+        return sourceUrl.startsWith("https://scm.hitchhiker.com") || values.stream().anyMatch(sourceUrl::contains);
+    }
+
+    // the aliases of the server of the hook, like its ssh urls and other host names
+    private static List<String> values(int count) {
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add("ssh://scm-" + i + ".hitchhiker.com:2222");
+        }
+        return values;
+    }
+
+    private static List<ServerIdentification.Identification> identifications(List<String> values) {
+        List<ServerIdentification.Identification> identifications = new ArrayList<>(values.size());
+        for (String value : values) {
+            identifications.add(new ServerIdentification.Identification("ssh", value));
+        }
+        return identifications;
+    }
+
+    private static List<String> sourceUrls(List<String> values) {
+        List<String> sourceUrls = new ArrayList<>(SOURCES);
+        for (int i = 0; i < SOURCES; i++) {
+            if (i % MATCHING_SOURCE_RATIO == 0) {
+                sourceUrls.add(values.get(i % values.size()) + "/repo/hitchhiker/source-" + i);
+            } else {
+                sourceUrls.add("https://scm-" + i + ".vogon.vo/scm/repo/vogon/source-" + i);
+            }
+        }
+        return sourceUrls;
+    }
+
+    private static void run(String name, int warmup, int iterations, Operation operation) {
+        for (int i = 0; i < warmup; i++) {
+            consume(operation.run());
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            consume(operation.run());
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.printf("%-56s %12.3f us/op%n", name, nanos / 1000.0 / iterations);
+    }
+
+    private static void consume(Object result) {
+        sink += result == null ? 0 : result.hashCode();
+    }
+
+    @FunctionalInterface
+    private interface Operation {
+        Object run();
+    }
+}
@@ -0,0 +1,48 @@
+package com.cloudogu.scmmanager.scm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class SubstringMatcherTest {
+
+    @Test
+    public void shouldFindContainedValue() {
+        SubstringMatcher matcher = new SubstringMatcher(List.of("hitchhiker.com", "ssh://scm.vogon.org:2222"));
+
+        assertThat(matcher.find("ssh://scm.vogon.org:2222/repo/space/X")).isEqualTo("ssh://scm.vogon.org:2222");
+        assertThat(matcher.find("https://hitchhiker.com/scm")).isEqualTo("hitchhiker.com");
+        assertThat(matcher.find("https://magrathea.com/scm")).isNull();
+    }
+
+    @Test
+    public void shouldFindValueAfterPartialMatch() {
+        SubstringMatcher matcher = new SubstringMatcher(List.of("abcd", "bce"));
+
+        assertThat(matcher.find("xabcex")).isEqualTo("bce");
+    }
+
+    @Test
+    public void shouldFindValueWhichIsSuffixOfAnother() {
+        SubstringMatcher matcher = new SubstringMatcher(List.of("heart-of-gold", "gold"));
+
+        assertThat(matcher.find("https://gold.com")).isEqualTo("gold");
+        assertThat(matcher.find("https://heart-of-gol.com/gold")).isEqualTo("gold");
+    }
+
+    @Test
+    public void shouldMatchEveryTextWithEmptyValue() {
+        SubstringMatcher matcher = new SubstringMatcher(List.of(""));
+
+        assertThat(matcher.find("https://hitchhiker.com")).isEmpty();
+    }
+
+    @Test
+    public void shouldNotMatchWithoutValues() {
+        SubstringMatcher matcher = new SubstringMatcher(Collections.emptyList());
+
+        assertThat(matcher.find("https://hitchhiker.com")).isNull();
+    }
+}
@@ -0,0 +1,147 @@
+package com.cloudogu.scmmanager.scm;
+
+import static jenkins.scm.api.SCMEvent.Type.UPDATED;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import com.cloudogu.scmmanager.scm.api.CloneInformation;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import jenkins.scm.api.SCMHead;
+import net.sf.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class WebHookDebouncerTest {
+
+    private static final CloneInformation CLONE_INFORMATION = new CloneInformation("git", "http://localhost/scm");
+
+    private static final WebHookDebouncer.EventFactory BRANCHES_UPDATED =
+            (form, branches) -> new ScmManagerBranchEvent(UPDATED, form, branches);
+
+    @Mock
+    private ScheduledExecutorService scheduler;
+
+    @Captor
+    private ArgumentCaptor<Runnable> flushCaptor;
+
+    private final List<ScmManagerHeadEvent> fired = new ArrayList<>();
+
+    @Test
+    public void shouldFireImmediatelyWithoutQuietWindow() {
+        WebHookDebouncer debouncer = new WebHookDebouncer(0, scheduler, fired::add);
+
+        debouncer.submit(form("X"), "createdOrModifiedBranches", branches("main"), BRANCHES_UPDATED);
+
+        assertThat(fired).hasSize(1);
+        verifyNoInteractions(scheduler);
+    }
+
+    @Test
+    public void shouldMergeHooksOfSameRepository() {
+        WebHookDebouncer debouncer = new WebHookDebouncer(500, scheduler, fired::add);
+
+        debouncer.submit(form("X"), "createdOrModifiedBranches", branches("main", "develop"), BRANCHES_UPDATED);
+        debouncer.submit(form("X"), "createdOrModifiedBranches", branches("develop", "feature"), BRANCHES_UPDATED);
+        assertThat(fired).isEmpty();
+
+        verify(scheduler).schedule(flushCaptor.capture(), eq(500L), eq(TimeUnit.MILLISECONDS));
+        flushCaptor.getValue().run();
+
+        assertThat(fired).hasSize(1);
+        assertThat(heads(fired.get(0))).containsExactly("main", "develop", "feature");
+        assertThat(debouncer.getMerged()).isOne();
+        assertThat(debouncer.getPending()).isZero();
+    }
+
+    @Test
+    public void shouldNotMergeHooksOfDifferentRepositories() {
+        WebHookDebouncer debouncer = new WebHookDebouncer(500, scheduler, fired::add);
+
+        debouncer.submit(form("X"), "createdOrModifiedBranches", branches("main"), BRANCHES_UPDATED);
+        debouncer.submit(form("Y"), "createdOrModifiedBranches", branches("main"), BRANCHES_UPDATED);
+
+        verify(scheduler, times(2)).schedule(flushCaptor.capture(), anyLong(), eq(TimeUnit.MILLISECONDS));
+        flushCaptor.getAllValues().forEach(Runnable::run);
+
+        assertThat(fired).hasSize(2);
+        assertThat(debouncer.getMerged()).isZero();
+    }
+
+    @Test
+    public void shouldNotMergeDifferentChanges() {
+        WebHookDebouncer debouncer = new WebHookDebouncer(500, scheduler, fired::add);
+
+        debouncer.submit(form("X"), "createdOrModifiedBranches", branches("main"), BRANCHES_UPDATED);
+        debouncer.submit(form("X"), "deletedBranches", branches("feature"), BRANCHES_UPDATED);
+
+        assertThat(debouncer.getPending()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldFireAllEventsOfMergedArray() {
+        WebHookDebouncer debouncer = new WebHookDebouncer(500, scheduler, fired::add);
+        JSONObject form = form("X");
+
+        WebHookDebouncer.EventFactory pullRequests =
+                (f, objects) -> new ScmManagerPullRequestEvent(UPDATED, f, objects);
+        WebHookDebouncer.EventFactory branches =
+                (f, objects) -> new ScmManagerBranchEventFromPullRequest(UPDATED, f, objects);
+        List<JSONObject> objects = List.of(pullRequest("1", "feature"));
+        debouncer.submit(form, "createOrModifiedPullRequests", objects, pullRequests);
+        debouncer.submit(form, "createOrModifiedPullRequests", objects, branches);
+
+        verify(scheduler).schedule(flushCaptor.capture(), eq(500L), eq(TimeUnit.MILLISECONDS));
+        flushCaptor.getValue().run();
+
+        assertThat(fired).hasSize(2);
+        assertThat(debouncer.getMerged()).isZero();
+    }
+
+    private JSONObject form(String name) {
+        JSONObject form = new JSONObject();
+        form.put("namespace", "space");
+        form.put("name", name);
+        form.put("type", "git");
+        form.put("server", "http://localhost/scm");
+        return form;
+    }
+
+    private Collection<JSONObject> branches(String... names) {
+        List<JSONObject> branches = new ArrayList<>();
+        for (String name : names) {
+            JSONObject branch = new JSONObject();
+            branch.put("name", name);
+            branches.add(branch);
+        }
+        return branches;
+    }
+
+    private JSONObject pullRequest(String id, String source) {
+        JSONObject pullRequest = new JSONObject();
+        pullRequest.put("id", id);
+        pullRequest.put("source", source);
+        pullRequest.put("target", "main");
+        return pullRequest;
+    }
+
+    private List<String> heads(ScmManagerHeadEvent event) {
+        List<String> names = new ArrayList<>();
+        for (SCMHead head : event.heads(CLONE_INFORMATION)) {
+            names.add(head.getName());
+        }
+        return names;
+    }
+}
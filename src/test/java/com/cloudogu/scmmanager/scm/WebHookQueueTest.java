@@ -0,0 +1,107 @@
+package com.cloudogu.scmmanager.scm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import net.sf.json.JSONObject;
+import org.junit.Test;
+
+public class WebHookQueueTest {
+
+    private final List<Runnable> tasks = new ArrayList<>();
+
+    private final List<JSONObject> dispatched = new ArrayList<>();
+
+    private final AtomicLong clock = new AtomicLong(1000L);
+
+    private final WebHookQueue queue = new WebHookQueue(2, tasks::add, dispatched::add, clock::get);
+
+    @Test
+    public void shouldDispatchOnWorker() {
+        assertThat(queue.offer(hook("heart-of-gold"))).isTrue();
+        assertThat(dispatched).isEmpty();
+
+        runTasks();
+
+        assertThat(dispatched).extracting(form -> form.getString("name")).containsExactly("heart-of-gold");
+        assertThat(queue.getDispatched()).isOne();
+        assertThat(queue.getDepth()).isZero();
+    }
+
+    @Test
+    public void shouldDropOlderDuplicate() {
+        queue.offer(hook("heart-of-gold"));
+        queue.offer(hook("vogon"));
+        queue.offer(hook("heart-of-gold"));
+
+        runTasks();
+
+        assertThat(dispatched).extracting(form -> form.getString("name")).containsExactly("vogon", "heart-of-gold");
+        assertThat(queue.getDroppedDuplicates()).isOne();
+    }
+
+    @Test
+    public void shouldRejectIfQueueIsFull() {
+        queue.offer(hook("heart-of-gold"));
+        queue.offer(hook("vogon"));
+
+        assertThat(queue.offer(hook("magrathea"))).isFalse();
+        assertThat(queue.getRejected()).isOne();
+        assertThat(queue.getDepth()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldAcceptDuplicateIfQueueIsFull() {
+        queue.offer(hook("heart-of-gold"));
+        queue.offer(hook("vogon"));
+
+        assertThat(queue.offer(hook("vogon"))).isTrue();
+        assertThat(queue.getRejected()).isZero();
+    }
+
+    @Test
+    public void shouldMeasureLag() {
+        queue.offer(hook("heart-of-gold"));
+        clock.addAndGet(42L);
+
+        assertThat(queue.getLagMillis()).isEqualTo(42L);
+
+        runTasks();
+
+        assertThat(queue.getLastLagMillis()).isEqualTo(42L);
+        assertThat(queue.getLagMillis()).isZero();
+    }
+
+    @Test
+    public void shouldCountFailures() {
+        WebHookQueue failing = new WebHookQueue(
+                2,
+                tasks::add,
+                form -> {
+                    throw new IllegalStateException("no heads");
+                },
+                clock::get);
+
+        failing.offer(hook("heart-of-gold"));
+        runTasks();
+
+        assertThat(failing.getFailed()).isOne();
+    }
+
+    private void runTasks() {
+        List<Runnable> pending = new ArrayList<>(tasks);
+        tasks.clear();
+        pending.forEach(Runnable::run);
+    }
+
+    private static JSONObject hook(String name) {
+        JSONObject form = new JSONObject();
+        form.put("server", "https://scm.hitchhiker.com/scm");
+        form.put("namespace", "hitchhiker");
+        form.put("name", name);
+        form.put("type", "git");
+        return form;
+    }
+}
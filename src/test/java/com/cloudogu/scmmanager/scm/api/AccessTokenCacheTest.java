@@ -0,0 +1,131 @@
+package com.cloudogu.scmmanager.scm.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import de.otto.edison.hal.Links;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+public class AccessTokenCacheTest {
+
+    private static final String KEY = AccessTokenCache.key("ssh://scm.hitchhiker.com", "trillian");
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AccessTokenCache cache = new AccessTokenCache(10_000, 60_000, clock::get);
+
+    private final List<CompletableFuture<SshApiClient.AccessToken>> requests = new ArrayList<>();
+
+    @Test
+    public void shouldFetchTokenOnlyOnce() throws ExecutionException, InterruptedException {
+        CompletableFuture<SshApiClient.AccessToken> first = cache.get(KEY, this::fetch);
+        CompletableFuture<SshApiClient.AccessToken> second = cache.get(KEY, this::fetch);
+
+        complete(0, "ac-42");
+
+        assertThat(requests).hasSize(1);
+        assertThat(first.get().getAccessToken()).isEqualTo("ac-42");
+        assertThat(second.get().getAccessToken()).isEqualTo("ac-42");
+    }
+
+    @Test
+    public void shouldFetchNewTokenAfterDefaultLifetime() throws ExecutionException, InterruptedException {
+        cache.get(KEY, this::fetch);
+        complete(0, "ac-42");
+
+        clock.set(60_000);
+        CompletableFuture<SshApiClient.AccessToken> token = cache.get(KEY, this::fetch);
+        complete(1, "ac-21");
+
+        assertThat(token.get().getAccessToken()).isEqualTo("ac-21");
+    }
+
+    @Test
+    public void shouldRefreshTokenInBackgroundBeforeExpiry() throws ExecutionException, InterruptedException {
+        cache.get(KEY, this::fetch);
+        complete(0, jwt(30));
+
+        clock.set(25_000);
+        CompletableFuture<SshApiClient.AccessToken> current = cache.get(KEY, this::fetch);
+        assertThat(current.get().getAccessToken()).isEqualTo(jwt(30));
+        assertThat(requests).hasSize(2);
+
+        cache.get(KEY, this::fetch);
+        assertThat(requests).hasSize(2);
+
+        complete(1, jwt(120));
+        assertThat(cache.get(KEY, this::fetch).get().getAccessToken()).isEqualTo(jwt(120));
+        assertThat(requests).hasSize(2);
+    }
+
+    @Test
+    public void shouldKeepCurrentTokenIfRefreshFails() throws ExecutionException, InterruptedException {
+        cache.get(KEY, this::fetch);
+        complete(0, jwt(30));
+
+        clock.set(25_000);
+        cache.get(KEY, this::fetch);
+        requests.get(1).completeExceptionally(new IllegalStateException("no connection"));
+
+        assertThat(cache.get(KEY, this::fetch).get().getAccessToken()).isEqualTo(jwt(30));
+    }
+
+    @Test
+    public void shouldFetchAgainAfterFailure() throws ExecutionException, InterruptedException {
+        CompletableFuture<SshApiClient.AccessToken> failed = cache.get(KEY, this::fetch);
+        requests.get(0).completeExceptionally(new IllegalStateException("no connection"));
+        assertThat(failed).isCompletedExceptionally();
+
+        CompletableFuture<SshApiClient.AccessToken> token = cache.get(KEY, this::fetch);
+        complete(1, "ac-42");
+
+        assertThat(token.get().getAccessToken()).isEqualTo("ac-42");
+    }
+
+    @Test
+    public void shouldInvalidateToken() throws ExecutionException, InterruptedException {
+        cache.get(KEY, this::fetch);
+        complete(0, "ac-42");
+
+        cache.invalidate(KEY, cache.get(KEY, this::fetch).get());
+
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void shouldKeepNewerTokenOnInvalidate() throws ExecutionException, InterruptedException {
+        cache.get(KEY, this::fetch);
+        complete(0, "ac-42");
+        SshApiClient.AccessToken rejected = cache.get(KEY, this::fetch).get();
+        cache.invalidate(KEY, rejected);
+
+        cache.get(KEY, this::fetch);
+        complete(1, "ac-21");
+        cache.invalidate(KEY, rejected);
+
+        assertThat(cache.get(KEY, this::fetch).get().getAccessToken()).isEqualTo("ac-21");
+    }
+
+    private CompletableFuture<SshApiClient.AccessToken> fetch() {
+        CompletableFuture<SshApiClient.AccessToken> future = new CompletableFuture<>();
+        requests.add(future);
+        return future;
+    }
+
+    private void complete(int request, String accessToken) {
+        requests.get(request).complete(new SshApiClient.AccessToken(Links.emptyLinks(), accessToken));
+    }
+
+    private static String jwt(long exp) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString("{\"alg\":\"HS256\"}".getBytes(StandardCharsets.UTF_8))
+                + "."
+                + encoder.encodeToString(("{\"exp\":" + exp + "}").getBytes(StandardCharsets.UTF_8))
+                + ".signature";
+    }
+}
@@ -0,0 +1,48 @@
+package com.cloudogu.scmmanager.scm.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class ApiClientTest {
+
+    @Test
+    public void shouldStreamItemsOfEmbeddedCollection() throws IOException {
+        List<Repository> repositories = new ArrayList<>();
+
+        ApiClient.StreamedCollection collection = ApiClient.readCollection(
+                json("{\"page\":0,\"pageTotal\":3,\"_links\":{\"self\":{\"href\":\"/repos\"}},"
+                        + "\"_embedded\":{\"other\":[{\"name\":\"skipped\"}],"
+                        + "\"repositories\":[{\"namespace\":\"hitchhiker\",\"name\":\"heart-of-gold\"},"
+                        + "{\"namespace\":\"hitchhiker\",\"name\":\"restaurant\",\"unknown\":{\"a\":[1]}}]}}"),
+                "repositories",
+                Repository.class,
+                repositories::add);
+
+        assertThat(repositories).extracting("name").containsExactly("heart-of-gold", "restaurant");
+        assertThat(collection.getSize()).isEqualTo(2);
+        assertThat(collection.getPageTotal()).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldHandleCollectionWithoutEmbeddedItems() throws IOException {
+        List<Repository> repositories = new ArrayList<>();
+
+        ApiClient.StreamedCollection collection = ApiClient.readCollection(
+                json("{\"_embedded\":{}}"), "repositories", Repository.class, repositories::add);
+
+        assertThat(repositories).isEmpty();
+        assertThat(collection.getSize()).isZero();
+        assertThat(collection.getPageTotal()).isZero();
+    }
+
+    private InputStream json(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,91 @@
+package com.cloudogu.scmmanager.scm.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import org.junit.Test;
+
+public class ConcurrencyLimitTest {
+
+    private final ConcurrencyLimit limit = new ConcurrencyLimit(2);
+    private final List<CompletableFuture<String>> started = new ArrayList<>();
+
+    @Test
+    public void shouldQueueCallsAboveLimit() {
+        for (int i = 0; i < 4; i++) {
+            limit.submit(this::start);
+        }
+
+        assertThat(started).hasSize(2);
+        assertThat(limit.getInFlight()).isEqualTo(2);
+        assertThat(limit.getQueued()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldStartQueuedCallOnCompletion() throws ExecutionException, InterruptedException {
+        CompletableFuture<String> first = limit.submit(this::start);
+        limit.submit(this::start);
+        CompletableFuture<String> third = limit.submit(this::start);
+
+        started.get(0).complete("one");
+        assertThat(first.get()).isEqualTo("one");
+        assertThat(started).hasSize(3);
+
+        started.get(2).complete("three");
+        assertThat(third.get()).isEqualTo("three");
+        assertThat(limit.getInFlight()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldStartLongQueueOfSynchronousCallsWithoutRecursion() {
+        ConcurrencyLimit single = new ConcurrencyLimit(1);
+        single.submit(this::start);
+        List<CompletableFuture<String>> queued = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            queued.add(single.submit(() -> CompletableFuture.completedFuture("done")));
+        }
+
+        started.get(0).complete("first");
+
+        assertThat(queued).allMatch(future -> future.getNow(null) != null);
+        assertThat(single.getInFlight()).isZero();
+        assertThat(single.getQueued()).isZero();
+    }
+
+    @Test
+    public void shouldReleaseOnFailure() {
+        CompletableFuture<String> failed = limit.submit(() -> {
+            throw new IllegalStateException("vogons");
+        });
+
+        assertThat(failed).isCompletedExceptionally();
+        assertThat(limit.getInFlight()).isZero();
+    }
+
+    @Test
+    public void shouldRejectCallsIfQueueIsFull() {
+        ConcurrencyLimit bounded = new ConcurrencyLimit(1, 1);
+        bounded.submit(this::start);
+        bounded.submit(this::start);
+
+        CompletableFuture<String> rejected = bounded.submit(this::start);
+
+        assertThat(rejected)
+                .isCompletedExceptionally()
+                .failsWithin(Duration.ZERO)
+                .withThrowableOfType(ExecutionException.class)
+                .withCauseInstanceOf(RejectedExecutionException.class);
+        assertThat(started).hasSize(1);
+    }
+
+    private CompletableFuture<String> start() {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        started.add(future);
+        return future;
+    }
+}
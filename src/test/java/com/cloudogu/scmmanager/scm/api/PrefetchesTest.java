@@ -0,0 +1,56 @@
+package com.cloudogu.scmmanager.scm.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+public class PrefetchesTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final Prefetches prefetches = new Prefetches(2, 10, TimeUnit.NANOSECONDS, clock::get);
+
+    @Test
+    public void shouldHandOutPrefetchOnlyOnce() {
+        CompletableFuture<String> future = CompletableFuture.completedFuture("heart-of-gold");
+        prefetches.put("key", future);
+
+        CompletableFuture<String> taken = prefetches.take("key");
+
+        assertThat(taken).isSameAs(future);
+        assertThat(prefetches.<String>take("key")).isNull();
+    }
+
+    @Test
+    public void shouldNotHandOutExpiredPrefetch() {
+        prefetches.put("key", CompletableFuture.completedFuture("heart-of-gold"));
+
+        clock.addAndGet(11);
+
+        assertThat(prefetches.<String>take("key")).isNull();
+    }
+
+    @Test
+    public void shouldNotStoreMoreThanMaxEntries() {
+        prefetches.put("a", new CompletableFuture<>());
+        prefetches.put("b", new CompletableFuture<>());
+        prefetches.put("c", new CompletableFuture<>());
+
+        assertThat(prefetches.size()).isEqualTo(2);
+        assertThat(prefetches.<String>take("c")).isNull();
+    }
+
+    @Test
+    public void shouldEvictExpiredEntriesIfFull() {
+        prefetches.put("a", new CompletableFuture<>());
+        prefetches.put("b", new CompletableFuture<>());
+        clock.addAndGet(11);
+
+        prefetches.put("c", new CompletableFuture<>());
+
+        assertThat(prefetches.size()).isEqualTo(1);
+        assertThat(prefetches.<String>take("c")).isNotNull();
+    }
+}
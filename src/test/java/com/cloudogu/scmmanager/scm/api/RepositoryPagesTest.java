@@ -0,0 +1,88 @@
+package com.cloudogu.scmmanager.scm.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.cloudogu.scmmanager.scm.api.RepositoryPages.RepositoryCollection;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.junit.Test;
+
+public class RepositoryPagesTest {
+
+    private final ObjectMapper mapper =
+            new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final Map<String, CompletableFuture<RepositoryCollection>> requests = new HashMap<>();
+    private final List<String> requestedUrls = new ArrayList<>();
+
+    @Test
+    public void shouldRequestNotMoreThanPrefetchPagesAhead() throws ExecutionException, InterruptedException {
+        for (int i = 0; i < 5; i++) {
+            page("/page/" + i, "{\"pageTotal\":5,\"_embedded\":{\"repositories\":[{\"name\":\"r" + i + "\"}]}}");
+        }
+
+        RepositoryPages pages = new RepositoryPages(this::fetch, page -> "/page/" + page, 2);
+        assertThat(requestedUrls).containsExactly("/page/0");
+
+        assertThat(pages.next()).extracting("name").containsExactly("r0");
+        assertThat(requestedUrls).containsExactly("/page/0", "/page/1", "/page/2");
+
+        assertThat(pages.next()).extracting("name").containsExactly("r1");
+        assertThat(requestedUrls).containsExactly("/page/0", "/page/1", "/page/2", "/page/3");
+
+        List<String> names = new ArrayList<>();
+        while (pages.hasNext()) {
+            pages.next().forEach(repository -> names.add(repository.getName()));
+        }
+        assertThat(names).containsExactly("r2", "r3", "r4");
+    }
+
+    @Test
+    public void shouldFollowNextLinksIfPageTotalIsUnknown() throws ExecutionException, InterruptedException {
+        page(
+                "/page/0",
+                "{\"_links\":{\"next\":{\"href\":\"/next/1\"}},\"_embedded\":{\"repositories\":[{\"name\":\"a\"}]}}");
+        page("/next/1", "{\"_embedded\":{\"repositories\":[{\"name\":\"b\"}]}}");
+
+        RepositoryPages pages = new RepositoryPages(this::fetch, page -> "/page/" + page, 2);
+
+        assertThat(pages.next()).extracting("name").containsExactly("a");
+        assertThat(pages.next()).extracting("name").containsExactly("b");
+        assertThat(pages.hasNext()).isFalse();
+    }
+
+    @Test
+    public void shouldCancelPendingPagesOnClose() throws ExecutionException, InterruptedException {
+        page("/page/0", "{\"pageTotal\":3,\"_embedded\":{\"repositories\":[]}}");
+        requests.put("/page/1", new CompletableFuture<>());
+        requests.put("/page/2", new CompletableFuture<>());
+
+        RepositoryPages pages = new RepositoryPages(this::fetch, page -> "/page/" + page, 2);
+        pages.next();
+        pages.close();
+
+        assertThat(pages.hasNext()).isFalse();
+        assertThat(requests.get("/page/1")).isCancelled();
+        assertThat(requests.get("/page/2")).isCancelled();
+    }
+
+    private void page(String url, String json) {
+        try {
+            requests.put(url, CompletableFuture.completedFuture(mapper.readValue(json, RepositoryCollection.class)));
+        } catch (IOException e) {
+            throw new IllegalStateException("invalid json", e);
+        }
+    }
+
+    private CompletableFuture<RepositoryCollection> fetch(String url) {
+        requestedUrls.add(url);
+        return requests.get(url);
+    }
+}
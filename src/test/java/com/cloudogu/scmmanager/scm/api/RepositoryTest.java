@@ -0,0 +1,57 @@
+package com.cloudogu.scmmanager.scm.api;
+
+import static de.otto.edison.hal.Link.link;
+import static de.otto.edison.hal.Link.linkBuilder;
+import static de.otto.edison.hal.Links.linkingTo;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class RepositoryTest {
+
+    @Test
+    public void shouldKeepUsedLinksInCompactCopy() {
+        Repository repository = new Repository(
+                "hitchhiker",
+                "heart-of-gold",
+                "git",
+                linkingTo()
+                        .array(
+                                linkBuilder("protocol", "https://hitchhiker.com/scm/repo/hitchhiker/heart-of-gold")
+                                        .withName("http")
+                                        .build(),
+                                linkBuilder("protocol", "ssh://hitchhiker.com/repo/hitchhiker/heart-of-gold")
+                                        .withName("ssh")
+                                        .build())
+                        .single(link("branches", "/api/v2/repositories/hitchhiker/heart-of-gold/branches/"))
+                        .single(link("tags", "/api/v2/repositories/hitchhiker/heart-of-gold/tags/"))
+                        .single(link("delete", "/api/v2/repositories/hitchhiker/heart-of-gold"))
+                        .build());
+
+        Repository compact = repository.compact();
+
+        assertThat(compact.getNamespace()).isEqualTo("hitchhiker");
+        assertThat(compact.getName()).isEqualTo("heart-of-gold");
+        assertThat(compact.getType()).isEqualTo("git");
+        assertThat(compact.getUrl("http")).contains("https://hitchhiker.com/scm/repo/hitchhiker/heart-of-gold");
+        assertThat(compact.getUrl("ssh")).contains("ssh://hitchhiker.com/repo/hitchhiker/heart-of-gold");
+        assertThat(compact.getLinks().getLinkBy("branches")).isPresent();
+        assertThat(compact.getLinks().getLinkBy("tags")).isPresent();
+        assertThat(compact.getLinks().getLinkBy("delete")).isEmpty();
+    }
+
+    @Test
+    public void shouldInternStringsOfCompactCopy() {
+        Repository one = new Repository(new String("hitchhiker"), "heart-of-gold", "git").compact();
+        Repository two = new Repository(new String("hitchhiker"), "restaurant", "git").compact();
+
+        assertThat(one.getNamespace()).isSameAs(two.getNamespace());
+    }
+
+    @Test
+    public void shouldKeepEqualityForRepositoriesWithoutLinks() {
+        Repository repository = new Repository("hitchhiker", "heart-of-gold", "git");
+
+        assertThat(repository.compact()).isEqualTo(repository);
+    }
+}
@@ -0,0 +1,143 @@
+package com.cloudogu.scmmanager.scm.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ResponseCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final MockWebServer server = new MockWebServer();
+
+    @Before
+    public void startServer() throws IOException {
+        server.start();
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void shouldReturnCachedObjectOnNotModified() throws Exception {
+        ResponseCache cache = new ResponseCache(10, null);
+        ApiClient client = apiClient(cache);
+
+        server.enqueue(new MockResponse().setHeader("ETag", "\"42\"").setBody("{\"someString\":\"hello\"}"));
+        server.enqueue(new MockResponse().setResponseCode(304));
+
+        HttpApiClientTest.SomeDataClass first = get(client);
+        HttpApiClientTest.SomeDataClass second = get(client);
+
+        assertThat(second).isSameAs(first);
+        assertThat(server.takeRequest().getHeader("If-None-Match")).isNull();
+        assertThat(server.takeRequest().getHeader("If-None-Match")).isEqualTo("\"42\"");
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cache.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldSendIfModifiedSince() throws Exception {
+        ResponseCache cache = new ResponseCache(10, null);
+        ApiClient client = apiClient(cache);
+
+        server.enqueue(new MockResponse()
+                .setHeader("Last-Modified", "Wed, 21 Oct 2015 07:28:00 GMT")
+                .setBody("{\"someString\":\"hello\"}"));
+        server.enqueue(new MockResponse().setBody("{\"someString\":\"changed\"}"));
+
+        get(client);
+        HttpApiClientTest.SomeDataClass second = get(client);
+
+        server.takeRequest();
+        RecordedRequest request = server.takeRequest();
+        assertThat(request.getHeader("If-Modified-Since")).isEqualTo("Wed, 21 Oct 2015 07:28:00 GMT");
+        assertThat(second.someString).isEqualTo("changed");
+    }
+
+    @Test
+    public void shouldNotCacheResponsesWithoutValidators() throws Exception {
+        ResponseCache cache = new ResponseCache(10, null);
+        ApiClient client = apiClient(cache);
+
+        server.enqueue(new MockResponse().setBody("{\"someString\":\"hello\"}"));
+
+        get(client);
+
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedEntry() throws Exception {
+        ResponseCache cache = new ResponseCache(2, null);
+        ApiClient client = apiClient(cache);
+
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setHeader("ETag", "\"" + i + "\"").setBody("{}"));
+        }
+        get(client, "/one");
+        get(client, "/two");
+        get(client, "/three");
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.lookup(key("/one"))).isNull();
+        assertThat(cache.lookup(key("/three"))).isNotNull();
+    }
+
+    @Test
+    public void shouldReadEntryFromDisk() throws Exception {
+        File directory = temporaryFolder.newFolder();
+
+        server.enqueue(new MockResponse().setHeader("ETag", "\"21\"").setBody("{\"someString\":\"disk\"}"));
+        get(apiClient(new ResponseCache(10, () -> directory)));
+
+        server.enqueue(new MockResponse().setResponseCode(304));
+        ResponseCache restarted = new ResponseCache(10, () -> directory);
+        HttpApiClientTest.SomeDataClass data = get(apiClient(restarted));
+
+        assertThat(data.someString).isEqualTo("disk");
+        assertThat(restarted.getHits()).isEqualTo(1);
+    }
+
+    private ApiClient apiClient(ResponseCache cache) {
+        HttpApiClient client = new HttpApiClient(new OkHttpClient(), requestBuilder -> {}, this::url);
+        client.setResponseCache(cache);
+        return client;
+    }
+
+    private String url(String path) {
+        return server.url(path).toString();
+    }
+
+    private String key(String path) {
+        Request request = new Request.Builder()
+                .url(url(path))
+                .header("Accept", "application/json")
+                .build();
+        return ResponseCache.key(request, HttpApiClientTest.SomeDataClass.class);
+    }
+
+    private HttpApiClientTest.SomeDataClass get(ApiClient client) throws ExecutionException, InterruptedException {
+        return get(client, "/some/thing");
+    }
+
+    private HttpApiClientTest.SomeDataClass get(ApiClient client, String path)
+            throws ExecutionException, InterruptedException {
+        return client.get(path, "application/json", HttpApiClientTest.SomeDataClass.class).get();
+    }
+}
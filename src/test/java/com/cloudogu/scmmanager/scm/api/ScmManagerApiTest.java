@@ -3,9 +3,15 @@ package com.cloudogu.scmmanager.scm.api;
 import static de.otto.edison.hal.Link.link;
 import static de.otto.edison.hal.Links.linkingTo;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import jenkins.scm.api.SCMFile;
 import org.junit.Test;
@@ -61,6 +67,38 @@ public class ScmManagerApiTest extends ApiClientTestBase {
         assertThat(repositories).extracting("name").containsExactly("hello-shell", "scm-editor-plugin");
     }
 
+    @Test
+    public void shouldLoadRepositoriesOfAllPages() throws InterruptedException, ExecutionException {
+        ScmManagerApi api = new ScmManagerApi(apiClient());
+
+        List<Repository> repositories = api.getRepositories("galaxy").get();
+
+        assertThat(repositories).extracting("name").containsExactly("earth", "heart-of-gold", "vogon");
+    }
+
+    @Test
+    public void shouldStreamRepositoriesOfAllPages() throws InterruptedException, ExecutionException {
+        ScmManagerApi api = new ScmManagerApi(apiClient());
+
+        List<String> names = new ArrayList<>();
+        api.forEachRepository("galaxy", repository -> names.add(repository.getName()))
+                .get();
+
+        assertThat(names).containsExactly("earth", "heart-of-gold", "vogon");
+    }
+
+    @Test
+    public void shouldIterateRepositoryPages() throws InterruptedException, ExecutionException {
+        ScmManagerApi api = new ScmManagerApi(apiClient());
+
+        try (RepositoryPages pages = api.getRepositoryPages("galaxy")) {
+            assertThat(pages.next()).extracting("name").containsExactly("earth", "heart-of-gold");
+            assertThat(pages.hasNext()).isTrue();
+            assertThat(pages.next()).extracting("name").containsExactly("vogon");
+            assertThat(pages.hasNext()).isFalse();
+        }
+    }
+
     @Test
     public void shouldLoadSingleRepository() throws InterruptedException, ExecutionException {
         ScmManagerApi api = new ScmManagerApi(apiClient());
@@ -116,6 +154,27 @@ public class ScmManagerApiTest extends ApiClientTestBase {
         assertThat(tag.getCloneInformation()).isEqualTo(cloneInformation);
     }
 
+    @Test
+    public void shouldLoadTagsWithoutBaseUrl() throws InterruptedException, ExecutionException {
+        // the base url of an ssh client may block on a new access token, tags must not need it
+        ApiClient client = Mockito.spy(apiClient());
+        Mockito.doThrow(new IllegalStateException("no access token")).when(client).getBaseUrl();
+        ScmManagerApi api = new ScmManagerApi(client, new TagDates(2, 10, null));
+
+        Repository repository = Mockito.mock(Repository.class);
+        when(repository.getLinks())
+                .thenReturn(linkingTo()
+                        .single(link("tags", "/scm/api/v2/repositories/jenkins-plugin/hello-shell/tags/"))
+                        .build());
+        when(repository.getCloneInformation("http")).thenReturn(new CloneInformation("git", "http://hitchhiker.com/"));
+
+        List<Tag> tags = api.getTags(repository).get();
+
+        assertThat(tags).hasSize(1);
+        assertThat(tags.get(0).getDate()).isEqualTo("2020-06-22T11:57:28Z");
+        assertThat(api.getTag(repository, "1.0.0").get().getDate()).isEqualTo("2020-06-22T11:57:28Z");
+    }
+
     @Test
     public void shouldLoadTagsWithoutChangesetsWhenTagHasDate() throws InterruptedException, ExecutionException {
         ScmManagerApi api = new ScmManagerApi(apiClient());
@@ -172,6 +231,35 @@ public class ScmManagerApiTest extends ApiClientTestBase {
         assertThat(branch.getRevision()).isEqualTo("6f6ea59a8c504f2c9f3cd93c02e289aa8b65e9c3");
     }
 
+    @Test
+    public void shouldNotModifySharedBranch() throws ExecutionException, InterruptedException {
+        ApiClient client = Mockito.mock(ApiClient.class);
+        when(client.getProtocol()).thenReturn("http");
+        Branch shared = new Branch("develop", "6f6ea59a8c504f2c9f3cd93c02e289aa8b65e9c3");
+        when(client.get(anyString(), anyString(), eq(Branch.class)))
+                .thenReturn(CompletableFuture.completedFuture(shared));
+        ScmManagerApi api = new ScmManagerApi(client);
+
+        CloneInformation heartOfGold = new CloneInformation("git", "http://hitchhiker.com/heart-of-gold");
+        CloneInformation vogon = new CloneInformation("git", "http://hitchhiker.com/vogon");
+        Branch one = api.getBranch(repositoryWithBranches(heartOfGold), "develop").get();
+        Branch two = api.getBranch(repositoryWithBranches(vogon), "develop").get();
+
+        assertThat(one.head().getCloneInformation()).isEqualTo(heartOfGold);
+        assertThat(two.head().getCloneInformation()).isEqualTo(vogon);
+        assertThat(shared).extracting("cloneInformation").isNull();
+    }
+
+    private Repository repositoryWithBranches(CloneInformation cloneInformation) {
+        Repository repository = Mockito.mock(Repository.class);
+        when(repository.getLinks())
+                .thenReturn(linkingTo()
+                        .single(link("branches", "/scm/api/v2/repositories/jenkins-plugin/hello-shell/branches/"))
+                        .build());
+        when(repository.getCloneInformation("http")).thenReturn(cloneInformation);
+        return repository;
+    }
+
     @Test
     public void shouldLoadSingleBranchWithSlashInName() throws ExecutionException, InterruptedException {
         ScmManagerApi api = new ScmManagerApi(apiClient());
@@ -210,6 +298,32 @@ public class ScmManagerApiTest extends ApiClientTestBase {
         assertThat(pullRequest.getTarget()).isEqualTo("master");
     }
 
+    @Test
+    public void shouldResolvePullRequestBranchesFromBranchCollection() throws ExecutionException, InterruptedException {
+        ApiClient client = Mockito.spy(apiClient());
+        ScmManagerApi api = new ScmManagerApi(client);
+
+        Repository repository = Mockito.mock(Repository.class);
+        when(repository.getLinks())
+                .thenReturn(linkingTo()
+                        .single(link("pullRequest", "/scm/api/v2/pull-requests/jenkins-plugin/hello-shell"))
+                        .single(link("branches", "/scm/api/v2/repositories/jenkins-plugin/hello-shell/branches/"))
+                        .build());
+        CloneInformation cloneInformation = new CloneInformation("git", "http://hitchhiker.com/");
+        when(repository.getCloneInformation("http")).thenReturn(cloneInformation);
+
+        List<PullRequest> pullRequests = api.getPullRequests(repository).get();
+        assertThat(pullRequests).hasSize(1);
+
+        PullRequest pullRequest = pullRequests.get(0);
+        assertThat(pullRequest.getSource()).isEqualTo("develop");
+        assertThat(pullRequest.getTarget()).isEqualTo("master");
+        assertThat(pullRequest.revision().getSourceRevision().getRevision())
+                .isEqualTo("a41666c19c7c868410b80a963a50e8a2a9b0a958");
+
+        verify(client, never()).get(anyString(), eq("application/vnd.scmm-branch+json;v=2"), eq(Branch.class));
+    }
+
     @Test
     public void shouldLoadSinglePullRequest() throws ExecutionException, InterruptedException {
         ScmManagerApi api = new ScmManagerApi(apiClient());
@@ -226,6 +340,8 @@ public class ScmManagerApiTest extends ApiClientTestBase {
         assertThat(pullRequest.getId()).isEqualTo("1");
         assertThat(pullRequest.getSource()).isEqualTo("develop");
         assertThat(pullRequest.getTarget()).isEqualTo("master");
+        assertThat(pullRequest.getStatus()).isEqualTo("OPEN");
+        assertThat(pullRequest.isOpen()).isTrue();
     }
 
     @Test
@@ -0,0 +1,46 @@
+package com.cloudogu.scmmanager.scm.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import org.junit.Test;
+
+public class ServerExecutorsTest {
+
+    private final ServerExecutors executors = new ServerExecutors(2, 10);
+
+    @Test
+    public void shouldReturnSameExecutorForSameServer() {
+        ServerExecutors.ServerExecutor one = executors.forServer("https://scm.hitchhiker.com/scm/api/v2");
+        ServerExecutors.ServerExecutor two = executors.forServer("https://scm.hitchhiker.com/scm/api/v2/namespaces");
+
+        assertThat(one).isSameAs(two);
+    }
+
+    @Test
+    public void shouldReturnDifferentExecutorsForDifferentServers() {
+        ServerExecutors.ServerExecutor one = executors.forServer("https://scm.hitchhiker.com");
+        ServerExecutors.ServerExecutor two = executors.forServer("https://scm.vogon.vo");
+
+        assertThat(one).isNotSameAs(two);
+    }
+
+    @Test
+    public void shouldLimitRequestsInFlightPerServer() {
+        ServerExecutors.ServerExecutor executor = executors.forServer("https://scm.hitchhiker.com");
+
+        for (int i = 0; i < 3; i++) {
+            executor.submit(CompletableFuture::new);
+        }
+
+        assertThat(executor.getLimit().getInFlight()).isEqualTo(2);
+        assertThat(executor.getLimit().getQueued()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldCreateOriginFromUrl() {
+        assertThat(ServerExecutors.origin("https://scm.hitchhiker.com/scm")).isEqualTo("scm.hitchhiker.com:443");
+        assertThat(ServerExecutors.origin("ssh://trillian@scm.hitchhiker.com:2222/"))
+                .isEqualTo("scm.hitchhiker.com:2222");
+    }
+}
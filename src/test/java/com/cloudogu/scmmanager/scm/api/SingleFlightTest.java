@@ -0,0 +1,86 @@
+package com.cloudogu.scmmanager.scm.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class SingleFlightTest {
+
+    private final SingleFlight singleFlight = new SingleFlight();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Test
+    public void shouldShareInFlightCall() throws ExecutionException, InterruptedException {
+        CompletableFuture<String> call = new CompletableFuture<>();
+
+        CompletableFuture<String> one = singleFlight.execute("key", () -> count(call));
+        CompletableFuture<String> two = singleFlight.execute("key", () -> count(call));
+        call.complete("heart-of-gold");
+
+        assertThat(one.get()).isEqualTo("heart-of-gold");
+        assertThat(two.get()).isEqualTo("heart-of-gold");
+        assertThat(calls).hasValue(1);
+        assertThat(singleFlight.getCoalesced()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldNotShareCallsWithDifferentKeys() {
+        singleFlight.execute("a", () -> count(new CompletableFuture<>()));
+        singleFlight.execute("b", () -> count(new CompletableFuture<>()));
+
+        assertThat(calls).hasValue(2);
+        assertThat(singleFlight.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldStartNewCallAfterCompletion() {
+        singleFlight.execute("key", () -> count(CompletableFuture.completedFuture("one")));
+        singleFlight.execute("key", () -> count(CompletableFuture.completedFuture("two")));
+
+        assertThat(calls).hasValue(2);
+        assertThat(singleFlight.size()).isZero();
+    }
+
+    @Test
+    public void shouldPropagateFailureToAllCallers() {
+        CompletableFuture<String> call = new CompletableFuture<>();
+
+        CompletableFuture<String> one = singleFlight.execute("key", () -> count(call));
+        CompletableFuture<String> two = singleFlight.execute("key", () -> count(call));
+        call.completeExceptionally(new IllegalStateException("vogons"));
+
+        assertThat(one).isCompletedExceptionally();
+        assertThat(two).isCompletedExceptionally();
+        assertThat(singleFlight.size()).isZero();
+    }
+
+    @Test
+    public void shouldNotAffectOtherCallersOnCancel() throws ExecutionException, InterruptedException {
+        CompletableFuture<String> call = new CompletableFuture<>();
+
+        CompletableFuture<String> one = singleFlight.execute("key", () -> count(call));
+        CompletableFuture<String> two = singleFlight.execute("key", () -> count(call));
+        one.cancel(true);
+        call.complete("heart-of-gold");
+
+        assertThat(two.get()).isEqualTo("heart-of-gold");
+    }
+
+    @Test
+    public void shouldHandleFailingSupplier() {
+        CompletableFuture<String> result = singleFlight.execute("key", () -> {
+            throw new IllegalStateException("vogons");
+        });
+
+        assertThat(result).isCompletedExceptionally();
+        assertThat(singleFlight.size()).isZero();
+    }
+
+    private CompletableFuture<String> count(CompletableFuture<String> future) {
+        calls.incrementAndGet();
+        return future;
+    }
+}
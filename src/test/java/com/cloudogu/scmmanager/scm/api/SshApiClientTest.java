@@ -1,6 +1,7 @@
 package com.cloudogu.scmmanager.scm.api;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.when;
 
 import com.cloudogu.scmmanager.SSHAuthentication;
@@ -32,14 +33,17 @@ public class SshApiClientTest extends ApiClientTestBase {
     @Mock
     private SSHAuthentication authentication;
 
+    private final AccessTokenCache tokens = new AccessTokenCache(0, 60_000, System::currentTimeMillis);
+
+    private final AtomicInteger tokenRequests = new AtomicInteger();
+
     @Test
     public void shouldExecute() throws IOException, ExecutionException, InterruptedException {
         when(connectionFactory.create("ssh://scm.hitchhiker.com")).thenReturn(Optional.of(connection));
 
         mockTokenResponse("ac-42");
 
-        SshApiClient apiClient =
-                new SshApiClient(getClient(), connectionFactory, "ssh://scm.hitchhiker.com", authentication);
+        SshApiClient apiClient = client();
         assertPong(apiClient);
     }
 
@@ -55,8 +59,7 @@ public class SshApiClientTest extends ApiClientTestBase {
 
         mockTokenResponse("ac-42", "ac-21");
 
-        SshApiClient apiClient =
-                new SshApiClient(getClient(), connectionFactory, "ssh://scm.hitchhiker.com", authentication);
+        SshApiClient apiClient = client();
         assertPong(apiClient);
         assertPong(apiClient);
         assertPong(apiClient);
@@ -66,8 +69,7 @@ public class SshApiClientTest extends ApiClientTestBase {
     public void shouldReturnExceptionally() throws ExecutionException, InterruptedException {
         when(connectionFactory.create("ssh://scm.hitchhiker.com"))
                 .thenThrow(new SshConnectionFailedException("no conn"));
-        SshApiClient apiClient =
-                new SshApiClient(getClient(), connectionFactory, "ssh://scm.hitchhiker.com", authentication);
+        SshApiClient apiClient = client();
         CompletableFuture<Ping> future = apiClient.get("/api/v2/ping", "application/json", Ping.class);
         String result = future.thenApply(Ping::getResponse)
                 .exceptionally(Throwable::getMessage)
@@ -75,13 +77,56 @@ public class SshApiClientTest extends ApiClientTestBase {
         assertThat(result).endsWith("no conn");
     }
 
-    private void mockTokenResponse(String... bearer) throws IOException {
-        AtomicInteger callCount = new AtomicInteger(-1);
+    @Test
+    public void shouldShareTokenBetweenClients() throws IOException, ExecutionException, InterruptedException {
+        when(connectionFactory.create("ssh://scm.hitchhiker.com")).thenReturn(Optional.of(connection));
+
+        mockTokenResponse("ac-42", "ac-21");
+
+        assertPong(client());
+        assertPong(client());
+
+        assertThat(tokenRequests).hasValue(1);
+    }
+
+    @Test
+    public void shouldNotShareTokenBetweenCredentials() throws IOException, ExecutionException, InterruptedException {
+        when(connectionFactory.create("ssh://scm.hitchhiker.com")).thenReturn(Optional.of(connection));
+        when(authentication.getFingerprint()).thenReturn("trillian", "dent");
+
+        mockTokenResponse("ac-42", "ac-42");
+
+        assertPong(client());
+        assertPong(client());
+
+        assertThat(tokenRequests).hasValue(2);
+    }
+
+    @Test
+    public void shouldRetryOnceWithNewTokenIfUnauthorized() throws IOException, InterruptedException {
+        when(connectionFactory.create("ssh://scm.hitchhiker.com")).thenReturn(Optional.of(connection));
+
+        mockTokenResponse("ac-42", "ac-21", "ac-7");
+
+        SshApiClient apiClient = client();
+        CompletableFuture<Ping> future = apiClient.get("/api/v2/unauthorized", "application/json", Ping.class);
+
+        assertThatThrownBy(future::get).hasCauseInstanceOf(IllegalReturnStatusException.class);
+        assertThat(tokenRequests).hasValue(2);
+    }
+
+    private SshApiClient client() {
+        return new SshApiClient(getClient(), connectionFactory, "ssh://scm.hitchhiker.com", authentication, tokens);
+    }
+
+    private void mockTokenResponse(String... bearer) {
+        when(connection.connectAsync(authentication)).thenReturn(CompletableFuture.completedFuture(null));
         when(connection
                         .command(SshApiClient.ACCESS_TOKEN_COMMAND)
                         .withOutput(SshApiClient.AccessToken.class)
-                        .json())
-                .thenAnswer(ic -> createAccessToken(bearer[callCount.incrementAndGet()]));
+                        .jsonAsync())
+                .thenAnswer(ic -> CompletableFuture.completedFuture(
+                        createAccessToken(bearer[tokenRequests.getAndIncrement()])));
     }
 
     private SshApiClient.AccessToken createAccessToken(String bearer) {
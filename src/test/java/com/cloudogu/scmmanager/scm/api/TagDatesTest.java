@@ -0,0 +1,110 @@
+package com.cloudogu.scmmanager.scm.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TagDatesTest {
+
+    private static final Date DATE = new Date(1592827048000L);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @Test
+    public void shouldRequestChangesetOnlyOnce() throws ExecutionException, InterruptedException {
+        TagDates tagDates = new TagDates(2, 10, null);
+
+        assertThat(tagDates.resolve("hitchhiker/heart-of-gold", "42", this::changeset).get())
+                .isEqualTo(DATE);
+        assertThat(tagDates.resolve("hitchhiker/heart-of-gold", "42", this::changeset).get())
+                .isEqualTo(DATE);
+
+        assertThat(requests).hasValue(1);
+    }
+
+    @Test
+    public void shouldSeparateRepositories() throws ExecutionException, InterruptedException {
+        TagDates tagDates = new TagDates(2, 10, null);
+
+        tagDates.resolve("hitchhiker/heart-of-gold", "42", this::changeset).get();
+        tagDates.resolve("hitchhiker/restaurant", "42", this::changeset).get();
+
+        assertThat(requests).hasValue(2);
+    }
+
+    @Test
+    public void shouldLimitConcurrentRequests() {
+        TagDates tagDates = new TagDates(2, 10, null);
+        List<CompletableFuture<Changeset>> pending = new ArrayList<>();
+
+        for (int i = 0; i < 5; i++) {
+            tagDates.resolve("hitchhiker/heart-of-gold", String.valueOf(i), () -> {
+                CompletableFuture<Changeset> future = new CompletableFuture<>();
+                pending.add(future);
+                return future;
+            });
+        }
+        assertThat(pending).hasSize(2);
+
+        pending.get(0).complete(new Changeset("0", DATE));
+        assertThat(pending).hasSize(3);
+    }
+
+    @Test
+    public void shouldReadPersistedDates() throws ExecutionException, InterruptedException, IOException {
+        File directory = temporaryFolder.newFolder();
+        TagDates tagDates = new TagDates(2, 10, () -> directory);
+        tagDates.resolve("hitchhiker/heart-of-gold", "42", this::changeset).get();
+        tagDates.save("hitchhiker/heart-of-gold");
+
+        TagDates restarted = new TagDates(2, 10, () -> directory);
+        assertThat(restarted.resolve("hitchhiker/heart-of-gold", "42", this::changeset).get())
+                .isEqualTo(DATE);
+
+        assertThat(requests).hasValue(1);
+    }
+
+    @Test
+    public void shouldWriteDatesOfEvictedRepositories() throws ExecutionException, InterruptedException, IOException {
+        File directory = temporaryFolder.newFolder();
+        TagDates tagDates = new TagDates(2, 1, () -> directory);
+        tagDates.resolve("hitchhiker/heart-of-gold", "42", this::changeset).get();
+        tagDates.resolve("hitchhiker/restaurant", "42", this::changeset).get();
+
+        assertThat(tagDates.resolve("hitchhiker/heart-of-gold", "42", this::changeset).get())
+                .isEqualTo(DATE);
+
+        assertThat(requests).hasValue(2);
+    }
+
+    @Test
+    public void shouldNotCacheFailedRequests() throws InterruptedException {
+        TagDates tagDates = new TagDates(2, 10, null);
+
+        CompletableFuture<Date> failed = tagDates.resolve(
+                "hitchhiker/heart-of-gold",
+                "42",
+                () -> CompletableFuture.failedFuture(new IllegalStateException("vogons")));
+
+        assertThat(failed).isCompletedExceptionally();
+        assertThat(tagDates.size("hitchhiker/heart-of-gold")).isZero();
+    }
+
+    private CompletableFuture<Changeset> changeset() {
+        requests.incrementAndGet();
+        return CompletableFuture.completedFuture(new Changeset("42", DATE));
+    }
+}